@@ -32,4 +32,12 @@ CREATE TABLE `agent_behavior_log` (
   INDEX idx_conversation (conversation_id),
   INDEX idx_behavior_type (behavior_type),
   INDEX idx_created_at (created_at)
-) ENGINE=INNODB DEFAULT CHARSET=utf8mb4 COMMENT='Agent行为日志';
\ No newline at end of file
+) ENGINE=INNODB DEFAULT CHARSET=utf8mb4 COMMENT='Agent行为日志';
+
+-- 视频元数据读穿存储：按字段记录新鲜度，避免重复抓取详情页
+ALTER TABLE video
+    ADD COLUMN author VARCHAR(255) COMMENT 'UP主' AFTER url,
+    ADD COLUMN play_count BIGINT COMMENT '播放量' AFTER author,
+    ADD COLUMN comment_count BIGINT COMMENT '评论数' AFTER play_count,
+    ADD COLUMN detail_updated_at DATETIME COMMENT '标签/简介最近抓取时间' AFTER created_at,
+    ADD COLUMN stats_updated_at DATETIME COMMENT '播放量/评论数最近刷新时间' AFTER detail_updated_at;
@@ -307,6 +307,15 @@ public class PlaylistAgent {
             // 执行状态图
             graph.execute(context);
         } finally {
+            // 流式检索：执行结束（含异常）时确保后台检索停止
+            if (context.getVideoStream() != null) {
+                context.getVideoStream().cancel();
+            }
+            // 投机检索：在检索节点认领前结束（失败 / Debug 停止）时取消，释放检索线程与浏览器实例
+            if (context.getSpeculativeSearch() != null) {
+                context.getSpeculativeSearch().cancel();
+                context.setSpeculativeSearch(null);
+            }
             // 执行后保存（无论成功或失败）
             contextPersistenceService.updateContext(playlistId, context);
         }
@@ -48,6 +48,13 @@ public interface AgentNode {
             return new NodeResult(true, nextNode, data);
         }
         
+        /**
+         * 返回局部状态更新（由图引擎应用，并行分支中按声明顺序合并）
+         */
+        public static NodeResult update(StateUpdate update) {
+            return new NodeResult(true, null, update);
+        }
+        
         public static NodeResult failure() {
             return new NodeResult(false, null, null);
         }
@@ -0,0 +1,96 @@
+package com.example.bilibilimusic.agent.graph;
+
+import com.example.bilibilimusic.agent.graph.edges.AfterRetrievalEdge;
+import com.example.bilibilimusic.agent.graph.edges.ContinueJudgeEdge;
+import com.example.bilibilimusic.agent.graph.nodes.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 批量判断策略：
+ * - 检索与准备阶段与默认策略一致
+ * - 判断循环子图（content_analysis → … → loop_control）替换为单个 batch_judgement 节点，
+ *   每批候选只经过一跳，接受 / 拒绝语义与推送事件不变
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BatchJudgementPlaylistAgentPolicy implements PlaylistAgentPolicy {
+
+    @Override
+    public void configure(GraphDefinition graph, PlaylistAgentGraphBuilder builder) {
+        // 1. 添加所有节点
+        graph.addNode("intent_understanding",
+            new IntentUnderstandingNode(builder.getMessagingTemplate()));
+
+        graph.addNode("keyword_extraction",
+            new KeywordExtractionNode(builder.getKeywordExtractionSkill(), builder.getMessagingTemplate(), builder.getCacheService()));
+
+        graph.addNode("preference_loading",
+            new PreferenceLoadingNode(builder.getPreferenceService()));
+
+        // 并行分组：关键词提取（LLM）与偏好加载（数据库）相互独立，fork 后并发执行，join 时合并
+        graph.addParallel("parallel_preparation",
+            List.of("keyword_extraction", "preference_loading"));
+
+        graph.addNode("video_retrieval",
+            new VideoRetrievalNode(builder.getRetrievalSkill(), builder.getMessagingTemplate(), builder.getCacheService(),
+                builder.getSearchCoalescer(), builder.getSpeculativeRetrieval()));
+
+        graph.addNode("pre_sort_videos",
+            new PreSortVideosNode(builder.getPreferenceService(), builder.getCacheService()));
+        graph.addNode("detail_enrichment",
+            new DetailEnrichmentNode(builder.getRelevanceScorer(), builder.getDetailEnricher(), builder.getPreferenceService(), builder.getMessagingTemplate()));
+
+        // 批量判断节点：内部复用逐个循环节点的状态写入与推送逻辑
+        graph.addNode("batch_judgement",
+            new BatchJudgementNode(
+                new ContentAnalysisNode(builder.getMessagingTemplate()),
+                new RelevanceDecisionNode(builder.getRelevanceScorer(), builder.getPreferenceService(), builder.getCacheService()),
+                new VideoAcceptedNode(builder.getDatabaseService(), builder.getMessagingTemplate()),
+                new ProgressUpdateNode(builder.getMessagingTemplate()),
+                new LoopControlNode(),
+                builder.getCacheService(),
+                builder.getJudgementChunkSize()));
+
+        graph.addNode("target_evaluation",
+            new TargetEvaluationNode(builder.getMessagingTemplate()));
+
+        graph.addNode("generate_summary",
+            new GenerateSummaryNode(builder.getSummarySkill(), builder.getMessagingTemplate()));
+
+        // 2. 添加条件边
+        graph.addEdge("intent_understanding",
+            (state, result) -> "parallel_preparation", "parallel_preparation");
+
+        graph.addEdge("parallel_preparation",
+            (state, result) -> "video_retrieval", "video_retrieval");
+
+        graph.addEdge("video_retrieval",
+            new AfterRetrievalEdge(), "pre_sort_videos");
+
+        graph.addEdge("pre_sort_videos",
+            (state, result) -> "detail_enrichment", "detail_enrichment");
+
+        // detail_enrichment -> batch_judgement（固定边）
+        graph.addEdge("detail_enrichment",
+            (state, result) -> "batch_judgement", "batch_judgement");
+
+        // batch_judgement -> batch_judgement（下一批）/ target_evaluation
+        graph.addEdge("batch_judgement",
+            new ContinueJudgeEdge("batch_judgement"), "batch_judgement", "target_evaluation");
+
+        graph.addEdge("target_evaluation",
+            (state, result) -> "generate_summary", "generate_summary");
+
+        // generate_summary -> END（终止节点，无边）
+
+        // 3. 设置起始节点
+        graph.setStart("intent_understanding");
+
+        log.info("[GraphPolicy-BatchJudge] 批量判断状态图构建完成");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bilibilimusic.agent.graph;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 编译后的状态图（不可变，按策略在启动时构建一次，所有请求共享）
+ *
+ * 节点、条件边、并行分支按 int ID 存放在数组中；ID 与节点名一一对应。
+ * 节点与条件边实例被并发执行共享，必须无状态（只持有注入的依赖）。
+ * 每次执行的可变数据（执行追踪、Debug 停止节点）放在 PlaylistAgentGraph 中。
+ */
+public final class CompiledGraph {
+
+    @Getter
+    private final String policyName;
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final AgentNode[] nodes;
+    private final ConditionalEdge[] edges;
+    private final int[][] branches;
+    private final String[][] targets;
+    private final int[][] loopTargets;
+    @Getter
+    private final int startId;
+
+    CompiledGraph(String policyName, String[] names, Map<String, Integer> ids, AgentNode[] nodes,
+                  ConditionalEdge[] edges, int[][] branches, String[][] targets, int[][] loopTargets, int startId) {
+        this.policyName = policyName;
+        this.names = names;
+        this.ids = Map.copyOf(ids);
+        this.nodes = nodes;
+        this.edges = edges;
+        this.branches = branches;
+        this.targets = targets;
+        this.loopTargets = loopTargets;
+        this.startId = startId;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * 节点名对应的 ID，不存在时返回 -1
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * 节点实例（并行分组为 null）
+     */
+    public AgentNode node(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * 出边（终止节点为 null）
+     */
+    public ConditionalEdge edge(int id) {
+        return edges[id];
+    }
+
+    /**
+     * 并行分组的分支节点 ID（普通节点为 null）
+     */
+    public int[] branches(int id) {
+        return branches[id];
+    }
+
+    /**
+     * from -> to 是否为回边（循环）
+     *
+     * 声明了目标的边在编译时计算；未声明目标的动态边只能识别自环。
+     */
+    public boolean isLoop(int fromId, int toId) {
+        if (loopTargets[fromId] == null) {
+            return fromId == toId;
+        }
+        for (int target : loopTargets[fromId]) {
+            if (target == toId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取图的可视化表示（用于调试）
+     */
+    public String visualize() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("PlaylistAgent 状态图 (").append(policyName).append("):\n");
+        sb.append("起始节点: ").append(names[startId]).append("\n\n");
+        sb.append("节点列表:\n");
+        for (int id = 0; id < names.length; id++) {
+            if (branches[id] == null) {
+                sb.append("  - [").append(id).append("] ").append(names[id]).append("\n");
+            }
+        }
+        sb.append("\n并行分组:\n");
+        for (int id = 0; id < names.length; id++) {
+            if (branches[id] != null) {
+                sb.append("  [").append(id).append("] ").append(names[id]).append(" => fork[");
+                for (int i = 0; i < branches[id].length; i++) {
+                    sb.append(i > 0 ? ", " : "").append(names[branches[id][i]]);
+                }
+                sb.append("] -> join\n");
+            }
+        }
+        sb.append("\n边列表:\n");
+        for (int id = 0; id < names.length; id++) {
+            if (edges[id] != null) {
+                sb.append("  ").append(names[id]).append(" -> ");
+                if (targets[id] == null) {
+                    sb.append("[条件边]");
+                }
+                for (int i = 0; targets[id] != null && i < targets[id].length; i++) {
+                    sb.append(i > 0 ? " / " : "").append(targets[id][i])
+                        .append(isLoop(id, idOf(targets[id][i])) ? "（循环）" : "");
+                }
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
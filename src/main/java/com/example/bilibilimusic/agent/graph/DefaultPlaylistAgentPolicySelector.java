@@ -20,6 +20,7 @@ public class DefaultPlaylistAgentPolicySelector implements PlaylistAgentPolicySe
     private final DefaultPlaylistAgentPolicy defaultPlaylistAgentPolicy;
     private final LowCostPlaylistAgentPolicy lowCostPlaylistAgentPolicy;
     private final NoSummaryPlaylistAgentPolicy noSummaryPlaylistAgentPolicy;
+    private final BatchJudgementPlaylistAgentPolicy batchJudgementPlaylistAgentPolicy;
 
     @Override
     public PlaylistAgentPolicy selectPolicy(PlaylistRequest request) {
@@ -34,11 +35,15 @@ public class DefaultPlaylistAgentPolicySelector implements PlaylistAgentPolicySe
 
         boolean lowCost = tags.contains("low_cost");
         boolean noSummary = tags.contains("no_summary");
+        boolean batchJudge = tags.contains("batch_judge");
         
         PlaylistAgentPolicy policy;
         if (noSummary) {
             // “无摘要”场景优先于成本维度：结构差异更大
             policy = noSummaryPlaylistAgentPolicy;
+        } else if (batchJudge) {
+            // 批量判断只替换判断循环，low_cost 的降级仍由 Skill 按 mode 生效
+            policy = batchJudgementPlaylistAgentPolicy;
         } else if (lowCost) {
             policy = lowCostPlaylistAgentPolicy;
         } else {
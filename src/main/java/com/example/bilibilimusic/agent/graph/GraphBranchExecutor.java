@@ -0,0 +1,66 @@
+package com.example.bilibilimusic.agent.graph;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 状态图并行分支的执行线程池
+ *
+ * 所有请求共享一个有界线程池；线程用满时分支退回调用线程执行（不排队），
+ * 关闭并行时全部分支在调用线程内按声明顺序执行。
+ */
+@Component
+@Slf4j
+public class GraphBranchExecutor {
+
+    /**
+     * 是否并行执行分支
+     */
+    @Value("${agent.graph.parallel.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同时执行的分支线程上限（所有请求共享）
+     */
+    @Value("${agent.graph.parallel.threads:8}")
+    private int threads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(0, Math.max(1, threads), 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "graph-branch-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("[GraphBranch] enabled={}, threads={}", enabled, threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 分支使用的 Executor（关闭并行时为调用线程）
+     */
+    public Executor executor() {
+        return enabled ? executor : Runnable::run;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.bilibilimusic.agent.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 状态图定义（可变，仅在启动时由 PlaylistAgentPolicy 填充）
+ *
+ * 策略通过 addNode / addEdge / addParallel / setStart 描述图结构，
+ * compile 时校验并生成不可变的 CompiledGraph，之后所有请求共享同一份编译结果。
+ *
+ * 条件边可以声明可能的目标节点（addEdge 的 targets 参数），用于启动时检查
+ * 目标节点是否存在、是否有从起始节点不可达的节点；编译时还据此标记回边（循环边）。
+ */
+public class GraphDefinition {
+
+    private final Map<String, AgentNode> nodes = new LinkedHashMap<>();
+    private final Map<String, ConditionalEdge> edges = new LinkedHashMap<>();
+    private final Map<String, List<String>> edgeTargets = new LinkedHashMap<>();
+    private final Map<String, List<String>> parallelGroups = new LinkedHashMap<>();
+    private String startNode;
+
+    /**
+     * 添加节点
+     */
+    public GraphDefinition addNode(String name, AgentNode node) {
+        nodes.put(name, node);
+        return this;
+    }
+
+    /**
+     * 添加条件边
+     *
+     * @param targets 条件边可能返回的目标节点（不含 null 结束），用于启动校验；
+     *                不声明时该边视为动态边，跳过可达性检查
+     */
+    public GraphDefinition addEdge(String fromNode, ConditionalEdge edge, String... targets) {
+        edges.put(fromNode, edge);
+        if (targets.length > 0) {
+            edgeTargets.put(fromNode, List.of(targets));
+        } else {
+            edgeTargets.remove(fromNode);
+        }
+        return this;
+    }
+
+    /**
+     * 添加并行分组（fork/join）
+     *
+     * 分组名作为图中的一个节点参与条件边：执行到分组时并发执行所有分支节点，
+     * 全部结束后按分支声明顺序合并状态，再由分组的出边决定下一个节点。
+     * 分支节点需通过 addNode 注册，且不应再配置出边。
+     */
+    public GraphDefinition addParallel(String groupName, List<String> branches) {
+        parallelGroups.put(groupName, List.copyOf(branches));
+        return this;
+    }
+
+    /**
+     * 设置起始节点
+     */
+    public GraphDefinition setStart(String nodeName) {
+        this.startNode = nodeName;
+        return this;
+    }
+
+    /**
+     * 校验并编译为不可变图
+     *
+     * @throws IllegalStateException 图结构存在问题（列出全部问题）
+     */
+    public CompiledGraph compile(String policyName) {
+        List<String> problems = validate();
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("状态图 " + policyName + " 校验失败:\n  - " + String.join("\n  - ", problems));
+        }
+
+        // 分配 ID：普通节点在前、并行分组在后，均按声明顺序
+        List<String> names = new ArrayList<>(nodes.keySet());
+        names.addAll(parallelGroups.keySet());
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            ids.put(names.get(i), i);
+        }
+
+        int size = names.size();
+        Map<String, Set<String>> loopEdges = findLoopEdges();
+        AgentNode[] nodeTable = new AgentNode[size];
+        ConditionalEdge[] edgeTable = new ConditionalEdge[size];
+        int[][] branchTable = new int[size][];
+        String[][] targetTable = new String[size][];
+        int[][] loopTable = new int[size][];
+        for (int id = 0; id < size; id++) {
+            String name = names.get(id);
+            nodeTable[id] = nodes.get(name);
+            edgeTable[id] = edges.get(name);
+            List<String> branches = parallelGroups.get(name);
+            if (branches != null) {
+                branchTable[id] = branches.stream().mapToInt(ids::get).toArray();
+            }
+            List<String> targets = edgeTargets.get(name);
+            if (targets != null) {
+                targetTable[id] = targets.toArray(new String[0]);
+                loopTable[id] = loopEdges.getOrDefault(name, Set.of()).stream().mapToInt(ids::get).toArray();
+            }
+        }
+        return new CompiledGraph(policyName, names.toArray(new String[0]), ids, nodeTable, edgeTable,
+            branchTable, targetTable, loopTable, ids.get(startNode));
+    }
+
+    /**
+     * 找出回边：沿声明的目标深度优先遍历，指向仍在遍历栈上的节点的边即构成循环
+     *
+     * @return 起点 -> 回边目标
+     */
+    private Map<String, Set<String>> findLoopEdges() {
+        Map<String, Set<String>> loopEdges = new HashMap<>();
+        Set<String> visited = new HashSet<>();
+        List<String> roots = new ArrayList<>();
+        if (startNode != null) {
+            roots.add(startNode);
+        }
+        roots.addAll(edgeTargets.keySet());
+        for (String root : roots) {
+            markLoopEdges(root, visited, new HashSet<>(), loopEdges);
+        }
+        return loopEdges;
+    }
+
+    private void markLoopEdges(String node, Set<String> visited, Set<String> onStack,
+                               Map<String, Set<String>> loopEdges) {
+        if (!visited.add(node)) {
+            return;
+        }
+        onStack.add(node);
+        for (String target : edgeTargets.getOrDefault(node, List.of())) {
+            if (onStack.contains(target)) {
+                loopEdges.computeIfAbsent(node, k -> new HashSet<>()).add(target);
+            } else {
+                markLoopEdges(target, visited, onStack, loopEdges);
+            }
+        }
+        onStack.remove(node);
+    }
+
+    private List<String> validate() {
+        List<String> problems = new ArrayList<>();
+        if (startNode == null) {
+            problems.add("起始节点未设置");
+        } else if (!exists(startNode)) {
+            problems.add("起始节点不存在: " + startNode);
+        }
+
+        Set<String> branchNodes = new HashSet<>();
+        parallelGroups.forEach((group, branches) -> {
+            if (nodes.containsKey(group)) {
+                problems.add("并行分组与节点重名: " + group);
+            }
+            if (branches.isEmpty()) {
+                problems.add("并行分组没有分支: " + group);
+            }
+            for (String branch : branches) {
+                if (!nodes.containsKey(branch)) {
+                    problems.add("并行分组 " + group + " 的分支节点不存在: " + branch);
+                }
+                if (edges.containsKey(branch)) {
+                    problems.add("并行分支 " + branch + " 配置了出边（分支结束后由分组出边决定去向，该边永远不会执行）");
+                }
+                if (!branchNodes.add(branch)) {
+                    problems.add("节点属于多个并行分组: " + branch);
+                }
+            }
+        });
+
+        edges.keySet().forEach(from -> {
+            if (!exists(from)) {
+                problems.add("条件边的起点不存在: " + from);
+            }
+        });
+        edgeTargets.forEach((from, targets) -> {
+            for (String target : targets) {
+                if (!exists(target)) {
+                    problems.add("条件边 " + from + " 的目标节点不存在: " + target);
+                }
+            }
+        });
+
+        // 所有边都声明了目标时，检查从起始节点不可达的节点
+        boolean fullyDeclared = edgeTargets.keySet().containsAll(edges.keySet());
+        if (startNode != null && exists(startNode) && fullyDeclared) {
+            Set<String> reachable = reachableFrom(startNode);
+            for (String name : nodes.keySet()) {
+                if (!reachable.contains(name)) {
+                    problems.add("节点从起始节点不可达: " + name);
+                }
+            }
+            for (String group : parallelGroups.keySet()) {
+                if (!reachable.contains(group)) {
+                    problems.add("并行分组从起始节点不可达: " + group);
+                }
+            }
+        }
+        return problems;
+    }
+
+    private Set<String> reachableFrom(String start) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            queue.addAll(parallelGroups.getOrDefault(current, List.of()));
+            queue.addAll(edgeTargets.getOrDefault(current, List.of()));
+        }
+        return visited;
+    }
+
+    private boolean exists(String name) {
+        return nodes.containsKey(name) || parallelGroups.containsKey(name);
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bilibilimusic.agent.graph;
+
+import com.example.bilibilimusic.agent.graph.edges.ContinueJudgeEdge;
+import com.example.bilibilimusic.agent.graph.nodes.*;
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.context.UserIntent;
+import com.example.bilibilimusic.dto.VideoInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 判断循环的离线基准：逐个视频循环 vs 批量判断
+ *
+ * 启动时（agent.judgement.benchmark.enabled=true）对同一批候选分别用两种子图执行，
+ * 走真实的图引擎（行为日志、节点快照、指标照常写入），比较：
+ * - 耗时与图跳数
+ * - 接受的视频序列与累计数量是否一致（语义一致性）
+ *
+ * 候选优先取查询缓存中的真实检索结果，没有时按查询生成合成候选。
+ * 视频入库被跳过（两种方式相同，且避免写入播放列表），WebSocket 事件照常推送。
+ * 首轮作为预热（同时填充判断缓存）不计入统计，之后每轮交替两种方式的执行顺序。
+ */
+@Component
+@ConditionalOnProperty(name = "agent.judgement.benchmark.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class JudgementLoopBenchmarkRunner implements ApplicationRunner {
+
+    private final PlaylistAgentGraphBuilder builder;
+
+    /**
+     * 基准查询（同时作为关键词来源）
+     */
+    @Value("${agent.judgement.benchmark.query:周杰伦 稻香}")
+    private String query;
+
+    /**
+     * 无缓存检索结果时生成的合成候选数
+     */
+    @Value("${agent.judgement.benchmark.candidates:50}")
+    private int candidates;
+
+    /**
+     * 计时轮数（不含预热）
+     */
+    @Value("${agent.judgement.benchmark.rounds:5}")
+    private int rounds;
+
+    /**
+     * 快照 / 行为日志使用的播放列表 ID（不关联真实播放列表）
+     */
+    @Value("${agent.judgement.benchmark.playlist-id:-1}")
+    private long playlistId;
+
+    /**
+     * 逐轮结果输出文件
+     */
+    @Value("${agent.judgement.benchmark.output:judgement-benchmark.tsv}")
+    private String outputPath;
+
+    private CompiledGraph perVideoGraph;
+    private CompiledGraph batchGraph;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        GraphDefinition perVideoDefinition = new GraphDefinition();
+        configurePerVideo(perVideoDefinition);
+        perVideoGraph = perVideoDefinition.compile("benchmark_per_video");
+        GraphDefinition batchDefinition = new GraphDefinition();
+        configureBatch(batchDefinition);
+        batchGraph = batchDefinition.compile("benchmark_batch");
+
+        List<VideoInfo> videos = loadCandidates();
+        log.info("[JudgeBench] 开始基准: query={}, 候选 {} 个, 批大小 {}, 轮数 {}",
+            query, videos.size(), builder.getJudgementChunkSize(), rounds);
+
+        // 预热：填充判断缓存、JIT，结果不计入
+        Run warmLoop = runOnce("per_video", videos);
+        Run warmBatch = runOnce("batch", videos);
+        boolean consistent = warmLoop.sameDecisions(warmBatch);
+
+        long loopTotal = 0;
+        long batchTotal = 0;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(outputPath), StandardCharsets.UTF_8))) {
+            out.println("round\tmode\tduration_ms\thops\tevaluated\taccepted\taccumulated");
+            for (int round = 1; round <= rounds; round++) {
+                // 交替执行顺序，抵消缓存 / GC 的先后影响
+                boolean loopFirst = round % 2 == 1;
+                Run first = runOnce(loopFirst ? "per_video" : "batch", videos);
+                Run second = runOnce(loopFirst ? "batch" : "per_video", videos);
+                Run loop = loopFirst ? first : second;
+                Run batch = loopFirst ? second : first;
+                consistent &= loop.sameDecisions(batch);
+                loopTotal += loop.durationMs;
+                batchTotal += batch.durationMs;
+                write(out, round, loop);
+                write(out, round, batch);
+            }
+        }
+
+        log.info("[JudgeBench] 逐个循环: 平均 {}ms, {} 跳；批量判断: 平均 {}ms, {} 跳；加速 {}x",
+            loopTotal / Math.max(1, rounds), warmLoop.hops,
+            batchTotal / Math.max(1, rounds), warmBatch.hops,
+            batchTotal > 0 ? String.format("%.2f", (double) loopTotal / batchTotal) : "-");
+        log.info("[JudgeBench] 接受结果{}，明细: {}", consistent ? "一致" : "不一致",
+            Path.of(outputPath).toAbsolutePath());
+    }
+
+    private Run runOnce(String mode, List<VideoInfo> videos) {
+        PlaylistAgentGraph graph = builder.newExecution("batch".equals(mode) ? batchGraph : perVideoGraph);
+
+        PlaylistContext state = newContext(videos);
+        long start = System.nanoTime();
+        graph.execute(state);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+
+        List<String> accepted = state.getSelectedVideos().stream().map(VideoInfo::getBvid).toList();
+        return new Run(mode, durationMs, graph.getExecutionTrace().getNodeTraces().size(),
+            state.getCurrentVideoIndex(), accepted, state.getAccumulatedCount());
+    }
+
+    /**
+     * 与默认策略相同的逐个视频判断循环子图
+     */
+    private void configurePerVideo(GraphDefinition graph) {
+        graph.addNode("content_analysis", new ContentAnalysisNode(builder.getMessagingTemplate()));
+        graph.addNode("quantity_estimation", new QuantityEstimationNode());
+        graph.addNode("relevance_decision",
+            new RelevanceDecisionNode(builder.getRelevanceScorer(), builder.getPreferenceService(), builder.getCacheService()));
+        graph.addNode("video_accepted", acceptedNode());
+        graph.addNode("progress_update", new ProgressUpdateNode(builder.getMessagingTemplate()));
+        graph.addNode("loop_control", new LoopControlNode());
+        graph.addNode("target_evaluation", state -> AgentNode.NodeResult.success());
+
+        graph.addEdge("content_analysis",
+            (state, result) -> state.isCurrentUnderstandable() ? "quantity_estimation" : "progress_update",
+            "quantity_estimation", "progress_update");
+        graph.addEdge("quantity_estimation", (state, result) -> "relevance_decision", "relevance_decision");
+        graph.addEdge("relevance_decision", (state, result) -> {
+            if (state.getLastDecisionInfo() != null && Boolean.TRUE.equals(state.getLastDecisionInfo().get("accepted"))) {
+                return "video_accepted";
+            }
+            return "progress_update";
+        }, "video_accepted", "progress_update");
+        graph.addEdge("video_accepted", (state, result) -> "progress_update", "progress_update");
+        graph.addEdge("progress_update", (state, result) -> "loop_control", "loop_control");
+        graph.addEdge("loop_control", new ContinueJudgeEdge(), "content_analysis", "target_evaluation");
+        graph.setStart("content_analysis");
+    }
+
+    /**
+     * 与批量判断策略相同的判断子图
+     */
+    private void configureBatch(GraphDefinition graph) {
+        graph.addNode("batch_judgement",
+            new BatchJudgementNode(
+                new ContentAnalysisNode(builder.getMessagingTemplate()),
+                new RelevanceDecisionNode(builder.getRelevanceScorer(), builder.getPreferenceService(), builder.getCacheService()),
+                acceptedNode(),
+                new ProgressUpdateNode(builder.getMessagingTemplate()),
+                new LoopControlNode(),
+                builder.getCacheService(),
+                builder.getJudgementChunkSize()));
+        graph.addNode("target_evaluation", state -> AgentNode.NodeResult.success());
+        graph.addEdge("batch_judgement", new ContinueJudgeEdge("batch_judgement"), "batch_judgement", "target_evaluation");
+        graph.setStart("batch_judgement");
+    }
+
+    /**
+     * 跳过入库的接受节点（只保留推送）
+     */
+    private VideoAcceptedNode acceptedNode() {
+        return new VideoAcceptedNode(builder.getDatabaseService(), builder.getMessagingTemplate()) {
+            @Override
+            protected void persist(PlaylistContext state, VideoInfo video, String summary, int position) {
+            }
+        };
+    }
+
+    private PlaylistContext newContext(List<VideoInfo> videos) {
+        PlaylistContext context = new PlaylistContext();
+        context.setPlaylistId(playlistId);
+        context.setIntent(UserIntent.builder()
+            .query(query)
+            .targetCount(0)
+            .limit(videos.size())
+            .keywords(Arrays.stream(query.trim().split("\\s+")).toList())
+            .build());
+        List<VideoInfo> copies = new ArrayList<>(videos.size());
+        for (VideoInfo video : videos) {
+            copies.add(video.toBuilder().build());
+        }
+        context.setSearchResults(copies);
+        context.setCurrentVideoIndex(0);
+        context.setAccumulatedCount(0);
+        context.setTargetReached(false);
+        context.setShouldContinue(true);
+        // 两种方式使用相同的空偏好，避免查库耗时混入
+        context.setArtistPreferences(Map.of());
+        context.setKeywordPreferences(Map.of());
+        return context;
+    }
+
+    private List<VideoInfo> loadCandidates() {
+        List<VideoInfo> cached = builder.getCacheService().getCachedSearchResults(query);
+        if (cached != null && !cached.isEmpty()) {
+            return cached;
+        }
+        String[] keywords = query.trim().split("\\s+");
+        String[] suffixes = {"官方MV", "live现场", "钢琴版", "翻唱", "歌词版", "无损音质", "合集", "reaction"};
+        String[] durations = {"3:45", "4:12", "2:58", "5:30", "1:02:10", "0:45", "3:20", "12:08"};
+        List<VideoInfo> videos = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            String keyword = keywords[i % keywords.length];
+            // 每 7 个插入一个无标题信息的视频，覆盖不可理解分支
+            boolean blank = i % 7 == 6;
+            videos.add(VideoInfo.builder()
+                .bvid(String.format("BVbench%05d", i))
+                .title(blank ? "" : keyword + " " + suffixes[i % suffixes.length])
+                .author(i % 3 == 0 ? keyword : "up主" + i)
+                .duration(durations[i % durations.length])
+                .tags(blank ? null : keyword + ",音乐")
+                .playCount((long) (100000 - i * 1000))
+                .commentCount((long) (1000 - i * 10))
+                .url("https://www.bilibili.com/video/BVbench" + i)
+                .build());
+        }
+        return videos;
+    }
+
+    private void write(PrintWriter out, int round, Run run) {
+        out.printf("%d\t%s\t%d\t%d\t%d\t%d\t%d%n", round, run.mode, run.durationMs, run.hops,
+            run.evaluated, run.accepted.size(), run.accumulated);
+    }
+
+    private record Run(String mode, long durationMs, int hops, int evaluated, List<String> accepted, int accumulated) {
+
+        boolean sameDecisions(Run other) {
+            return accepted.equals(other.accepted) && accumulated == other.accumulated;
+        }
+    }
+}
@@ -7,6 +7,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * 低成本模式策略：
  * - 使用与默认策略相同的节点与边拓扑
@@ -18,7 +20,7 @@ import org.springframework.stereotype.Component;
 public class LowCostPlaylistAgentPolicy implements PlaylistAgentPolicy {
 
     @Override
-    public void configure(PlaylistAgentGraph graph, PlaylistAgentGraphBuilder builder) {
+    public void configure(GraphDefinition graph, PlaylistAgentGraphBuilder builder) {
         // 与默认策略保持相同的图结构，区别由 Skill 内根据 mode=low_cost 走降级路径实现
 
         // 1. 添加所有节点
@@ -28,12 +30,22 @@ public class LowCostPlaylistAgentPolicy implements PlaylistAgentPolicy {
         graph.addNode("keyword_extraction",
             new KeywordExtractionNode(builder.getKeywordExtractionSkill(), builder.getMessagingTemplate(), builder.getCacheService()));
 
+        graph.addNode("preference_loading",
+            new PreferenceLoadingNode(builder.getPreferenceService()));
+
+        // 并行分组：关键词提取（LLM）与偏好加载（数据库）相互独立，fork 后并发执行，join 时合并
+        graph.addParallel("parallel_preparation",
+            List.of("keyword_extraction", "preference_loading"));
+
         graph.addNode("video_retrieval",
-            new VideoRetrievalNode(builder.getRetrievalSkill(), builder.getMessagingTemplate(), builder.getCacheService()));
+            new VideoRetrievalNode(builder.getRetrievalSkill(), builder.getMessagingTemplate(), builder.getCacheService(),
+                builder.getSearchCoalescer(), builder.getSpeculativeRetrieval()));
 
         // Video Judgement Loop 子图节点
         graph.addNode("pre_sort_videos",
             new PreSortVideosNode(builder.getPreferenceService(), builder.getCacheService()));
+        graph.addNode("detail_enrichment",
+            new DetailEnrichmentNode(builder.getRelevanceScorer(), builder.getDetailEnricher(), builder.getPreferenceService(), builder.getMessagingTemplate()));
         graph.addNode("content_analysis",
             new ContentAnalysisNode(builder.getMessagingTemplate()));
         graph.addNode("quantity_estimation",
@@ -54,17 +66,21 @@ public class LowCostPlaylistAgentPolicy implements PlaylistAgentPolicy {
             new GenerateSummaryNode(builder.getSummarySkill(), builder.getMessagingTemplate()));
 
         // 2. 添加条件边（与默认策略一致）
+        // intent_understanding -> parallel_preparation（固定边）
         graph.addEdge("intent_understanding",
-            (state, result) -> "keyword_extraction");
+            (state, result) -> "parallel_preparation", "parallel_preparation");
 
-        graph.addEdge("keyword_extraction",
-            (state, result) -> "video_retrieval");
+        // parallel_preparation（join）-> video_retrieval（固定边）
+        graph.addEdge("parallel_preparation",
+            (state, result) -> "video_retrieval", "video_retrieval");
 
         graph.addEdge("video_retrieval",
-            new AfterRetrievalEdge());
+            new AfterRetrievalEdge(), "pre_sort_videos");
 
         graph.addEdge("pre_sort_videos",
-            (state, result) -> "content_analysis");
+            (state, result) -> "detail_enrichment", "detail_enrichment");
+        graph.addEdge("detail_enrichment",
+            (state, result) -> "content_analysis", "content_analysis");
 
         graph.addEdge("content_analysis",
             (state, result) -> {
@@ -72,10 +88,10 @@ public class LowCostPlaylistAgentPolicy implements PlaylistAgentPolicy {
                     return "progress_update";
                 }
                 return "quantity_estimation";
-            });
+            }, "progress_update", "quantity_estimation");
 
         graph.addEdge("quantity_estimation",
-            (state, result) -> "relevance_decision");
+            (state, result) -> "relevance_decision", "relevance_decision");
 
         graph.addEdge("relevance_decision",
             (state, result) -> {
@@ -86,23 +102,25 @@ public class LowCostPlaylistAgentPolicy implements PlaylistAgentPolicy {
                     }
                 }
                 return "progress_update";
-            });
+            }, "video_accepted", "progress_update");
 
         graph.addEdge("video_accepted",
-            (state, result) -> "progress_update");
+            (state, result) -> "progress_update", "progress_update");
 
         graph.addEdge("progress_update",
-            (state, result) -> "loop_control");
+            (state, result) -> "loop_control", "loop_control");
 
         graph.addEdge("loop_control",
-            new ContinueJudgeEdge());
+            new ContinueJudgeEdge(), "content_analysis", "target_evaluation");
 
         graph.addEdge("target_evaluation",
-            (state, result) -> "generate_summary");
+            (state, result) -> "generate_summary", "generate_summary");
 
         // generate_summary -> END（终止节点，无边）
 
+        // 3. 设置起始节点
+        graph.setStart("intent_understanding");
+
         log.info("[GraphPolicy-LowCost] 低成本状态图构建完成");
-        log.debug("[GraphPolicy-LowCost] 图结构:\n{}", graph.visualize());
     }
 }
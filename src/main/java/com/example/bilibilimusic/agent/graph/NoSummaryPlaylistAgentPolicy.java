@@ -7,6 +7,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * 无摘要场景策略：
  * - 图结构与默认策略基本一致，但在目标评估后直接结束，不再进入 generate_summary 节点。
@@ -18,7 +20,7 @@ import org.springframework.stereotype.Component;
 public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
 
     @Override
-    public void configure(PlaylistAgentGraph graph, PlaylistAgentGraphBuilder builder) {
+    public void configure(GraphDefinition graph, PlaylistAgentGraphBuilder builder) {
         // 1. 添加所有节点（除了 generate_summary）
         graph.addNode("intent_understanding",
             new IntentUnderstandingNode(builder.getMessagingTemplate()));
@@ -26,12 +28,22 @@ public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
         graph.addNode("keyword_extraction",
             new KeywordExtractionNode(builder.getKeywordExtractionSkill(), builder.getMessagingTemplate(), builder.getCacheService()));
 
+        graph.addNode("preference_loading",
+            new PreferenceLoadingNode(builder.getPreferenceService()));
+
+        // 并行分组：关键词提取（LLM）与偏好加载（数据库）相互独立，fork 后并发执行，join 时合并
+        graph.addParallel("parallel_preparation",
+            List.of("keyword_extraction", "preference_loading"));
+
         graph.addNode("video_retrieval",
-            new VideoRetrievalNode(builder.getRetrievalSkill(), builder.getMessagingTemplate(), builder.getCacheService()));
+            new VideoRetrievalNode(builder.getRetrievalSkill(), builder.getMessagingTemplate(), builder.getCacheService(),
+                builder.getSearchCoalescer(), builder.getSpeculativeRetrieval()));
 
         // Video Judgement Loop 子图节点
         graph.addNode("pre_sort_videos",
             new PreSortVideosNode(builder.getPreferenceService(), builder.getCacheService()));
+        graph.addNode("detail_enrichment",
+            new DetailEnrichmentNode(builder.getRelevanceScorer(), builder.getDetailEnricher(), builder.getPreferenceService(), builder.getMessagingTemplate()));
         graph.addNode("content_analysis",
             new ContentAnalysisNode(builder.getMessagingTemplate()));
         graph.addNode("quantity_estimation",
@@ -50,21 +62,25 @@ public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
 
         // 2. 添加条件边
 
-        // intent_understanding -> keyword_extraction（固定边）
+        // intent_understanding -> parallel_preparation（固定边）
         graph.addEdge("intent_understanding",
-            (state, result) -> "keyword_extraction");
+            (state, result) -> "parallel_preparation", "parallel_preparation");
 
-        // keyword_extraction -> video_retrieval（固定边）
-        graph.addEdge("keyword_extraction",
-            (state, result) -> "video_retrieval");
+        // parallel_preparation（join）-> video_retrieval（固定边）
+        graph.addEdge("parallel_preparation",
+            (state, result) -> "video_retrieval", "video_retrieval");
 
         // video_retrieval -> pre_sort_videos / END
         graph.addEdge("video_retrieval",
-            new AfterRetrievalEdge());
+            new AfterRetrievalEdge(), "pre_sort_videos");
 
-        // pre_sort_videos -> content_analysis（固定边）
+        // pre_sort_videos -> detail_enrichment（固定边）
         graph.addEdge("pre_sort_videos",
-            (state, result) -> "content_analysis");
+            (state, result) -> "detail_enrichment", "detail_enrichment");
+
+        // detail_enrichment -> content_analysis（固定边）
+        graph.addEdge("detail_enrichment",
+            (state, result) -> "content_analysis", "content_analysis");
 
         // content_analysis -> quantity_estimation / progress_update（Conditional Edge：不可理解直接进入流式反馈）
         graph.addEdge("content_analysis",
@@ -73,11 +89,11 @@ public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
                     return "progress_update";
                 }
                 return "quantity_estimation";
-            });
+            }, "progress_update", "quantity_estimation");
 
         // quantity_estimation -> relevance_decision
         graph.addEdge("quantity_estimation",
-            (state, result) -> "relevance_decision");
+            (state, result) -> "relevance_decision", "relevance_decision");
 
         // relevance_decision -> video_accepted / progress_update（条件边：如果 accepted 则先执行持久化）
         graph.addEdge("relevance_decision",
@@ -89,19 +105,19 @@ public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
                     }
                 }
                 return "progress_update";
-            });
+            }, "video_accepted", "progress_update");
 
         // video_accepted -> progress_update（固定边）
         graph.addEdge("video_accepted",
-            (state, result) -> "progress_update");
+            (state, result) -> "progress_update", "progress_update");
 
         // progress_update -> loop_control（固定边）
         graph.addEdge("progress_update",
-            (state, result) -> "loop_control");
+            (state, result) -> "loop_control", "loop_control");
 
         // loop_control -> content_analysis / target_evaluation（循环边）
         graph.addEdge("loop_control",
-            new ContinueJudgeEdge());
+            new ContinueJudgeEdge(), "content_analysis", "target_evaluation");
 
         // 注意：这里不再添加 target_evaluation -> generate_summary 的边
         // target_evaluation 成为终止节点，执行结束后直接返回，形成“无摘要”流程。
@@ -110,6 +126,5 @@ public class NoSummaryPlaylistAgentPolicy implements PlaylistAgentPolicy {
         graph.setStart("intent_understanding");
 
         log.info("[GraphPolicy-NoSummary] 无摘要状态图构建完成");
-        log.debug("[GraphPolicy-NoSummary] 图结构:\n{}", graph.visualize());
     }
 }
@@ -4,29 +4,39 @@ import com.example.bilibilimusic.context.PlaylistContext;
 import com.example.bilibilimusic.dto.EdgeTrace;
 import com.example.bilibilimusic.dto.ExecutionTrace;
 import com.example.bilibilimusic.dto.NodeTrace;
-import com.example.bilibilimusic.service.AgentBehaviorLogService;
-import com.example.bilibilimusic.service.AgentMetricsService;
 import com.example.bilibilimusic.service.ContextPersistenceService;
+import com.example.bilibilimusic.service.TelemetryPipeline;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * PlaylistAgent 的状态图
+ * PlaylistAgent 的状态图（单次执行）
  * 
  * 将原有的过程式控制流重构为状态驱动的图结构
+ * 
+ * 图结构由 CompiledGraph 描述（按策略在启动时编译一次、所有请求共享），
+ * 本类只持有单次执行的可变数据：执行追踪、Debug 停止节点。
+ * 
+ * 支持并行分组（fork/join）：相互独立的节点在分支线程池中并发执行，
+ * join 后按声明顺序合并局部状态更新，ExecutionTrace 中保留重叠的分支 span。
+ * 
+ * 行为日志、节点计数与节点快照经 TelemetryPipeline 入队，由后台线程批量写入，
+ * 执行线程不等待 MySQL / Redis。
  */
 @Slf4j
 @RequiredArgsConstructor
 public class PlaylistAgentGraph {
     
-    private final AgentBehaviorLogService behaviorLogService;
-    private final AgentMetricsService metricsService;
+    private final CompiledGraph graph;
+    private final TelemetryPipeline telemetry;
     private final ContextPersistenceService contextPersistenceService;
+    private final GraphBranchExecutor branchExecutor;
         
     /**
      * Debug 模式下的停止节点名称（命中后立即停止执行）
@@ -40,16 +50,9 @@ public class PlaylistAgentGraph {
     /**
      * 本次执行使用的策略名（Policy），用于 A/B 分析
      */
-    @Getter
-    private String policyName;
-        
-    public void setPolicyName(String policyName) {
-        this.policyName = policyName;
+    public String getPolicyName() {
+        return graph.getPolicyName();
     }
-        
-    private final Map<String, AgentNode> nodes = new HashMap<>();
-    private final Map<String, ConditionalEdge> edges = new HashMap<>();
-    private String startNode;
     
     /**
      * 执行追踪记录
@@ -57,38 +60,10 @@ public class PlaylistAgentGraph {
     @Getter
     private ExecutionTrace executionTrace;
     
-    /**
-     * 添加节点
-     */
-    public PlaylistAgentGraph addNode(String name, AgentNode node) {
-        nodes.put(name, node);
-        return this;
-    }
-    
-    /**
-     * 添加条件边
-     */
-    public PlaylistAgentGraph addEdge(String fromNode, ConditionalEdge edge) {
-        edges.put(fromNode, edge);
-        return this;
-    }
-    
-    /**
-     * 设置起始节点
-     */
-    public PlaylistAgentGraph setStart(String nodeName) {
-        this.startNode = nodeName;
-        return this;
-    }
-    
     /**
      * 执行图
      */
     public void execute(PlaylistContext state) {
-        if (startNode == null) {
-            throw new IllegalStateException("起始节点未设置");
-        }
-        
         // 初始化执行追踪
         executionTrace = ExecutionTrace.builder()
             .executionId(UUID.randomUUID().toString())
@@ -98,123 +73,51 @@ public class PlaylistAgentGraph {
             .status("RUNNING")
             .build();
         
-        String currentNode = startNode;
+        int currentId = graph.getStartId();
         AgentNode.NodeResult lastResult = null;
         int maxIterations = 1000; // 防止无限循环
         int iterations = 0;
         
         try {
-            while (currentNode != null && iterations < maxIterations) {
+            while (currentId >= 0 && iterations < maxIterations) {
                 iterations++;
+                String currentNode = graph.name(currentId);
                 
                 log.debug("[Graph] 执行节点: {}", currentNode);
                 
-                // 记录行为日志：节点进入
-                behaviorLogService.logNodeEnter(
-                    state.getPlaylistId(), 
-                    state.getConversationId(), 
-                    currentNode
-                );
-                
-                // 执行当前节点
-                AgentNode node = nodes.get(currentNode);
-                if (node == null) {
-                    log.error("[Graph] 节点不存在: {}", currentNode);
-                    break;
+                int[] branches = graph.branches(currentId);
+                if (branches != null) {
+                    // 并行分组：fork 出所有分支，join 后按声明顺序合并局部状态更新
+                    lastResult = executeParallel(currentNode, branches, state);
+                } else {
+                    NodeRun run = executeNode(currentNode, graph.node(currentId), state, null);
+                    executionTrace.addNodeTrace(run.trace());
+                    if (run.error() != null) {
+                        executionTrace.setStatus("FAILED");
+                        throw run.error();
+                    }
+                    lastResult = run.result();
+                    applyUpdate(state, lastResult);
                 }
                 
-                // 记录节点开始时间
-                long nodeStartTime = System.currentTimeMillis();
-                
-                try {
-                    lastResult = node.execute(state);
-                    
-                    // 记录节点执行追踪
-                    long nodeEndTime = System.currentTimeMillis();
-                    long nodeDuration = nodeEndTime - nodeStartTime;
-                    
-                    NodeTrace nodeTrace = NodeTrace.builder()
-                        .nodeName(currentNode)
-                        .startTime(nodeStartTime)
-                        .endTime(nodeEndTime)
-                        .durationMs(nodeDuration)
-                        .success(true)
-                        .output(lastResult != null ? lastResult.getNextNode() : null)
-                        .build();
-                    executionTrace.addNodeTrace(nodeTrace);
-                    
-                    // 记录行为日志：节点退出
-                    behaviorLogService.logNodeExit(
-                        state.getPlaylistId(), 
-                        state.getConversationId(), 
-                        currentNode, 
-                        nodeDuration, 
-                        true, 
-                        null
-                    );
-                    
-                    // 记录 Metrics：节点执行
-                    metricsService.recordNodeExecution(
-                        state.getPlaylistId(), 
-                        currentNode, 
-                        nodeDuration
-                    );
-                    
-                    // 在每个节点成功执行后保存一次核心状态快照（支持回放与断点分析）
-                    int step = executionTrace.getNodeTraces() != null ? executionTrace.getNodeTraces().size() : 0;
-                    contextPersistenceService.saveNodeSnapshot(
-                        state.getPlaylistId(),
-                        executionTrace.getExecutionId(),
-                        step,
-                        state
-                    );
-                } catch (Exception e) {
-                    // 记录节点失败
-                    long nodeEndTime = System.currentTimeMillis();
-                    long nodeDuration = nodeEndTime - nodeStartTime;
-                    
-                    NodeTrace nodeTrace = NodeTrace.builder()
-                        .nodeName(currentNode)
-                        .startTime(nodeStartTime)
-                        .endTime(nodeEndTime)
-                        .durationMs(nodeDuration)
-                        .success(false)
-                        .error(e.getMessage())
-                        .build();
-                    executionTrace.addNodeTrace(nodeTrace);
-                    
-                    // 记录行为日志：错误
-                    behaviorLogService.logError(
-                        state.getPlaylistId(), 
-                        state.getConversationId(), 
-                        currentNode,
-                        e.getMessage(),
-                        getStackTrace(e)
-                    );
-                    
-                    // 记录行为日志：节点退出（失败）
-                    behaviorLogService.logNodeExit(
-                        state.getPlaylistId(), 
-                        state.getConversationId(), 
-                        currentNode, 
-                        nodeDuration, 
-                        false, 
-                        e.getMessage()
-                    );
-                    
-                    log.error("[Graph] 节点执行失败: {}", currentNode, e);
-                    executionTrace.setStatus("FAILED");
-                    throw e;
-                }
+                // 在每个节点（或并行分组 join）成功执行后保存一次核心状态快照（支持回放与断点分析）
+                int step = executionTrace.getNodeTraces() != null ? executionTrace.getNodeTraces().size() : 0;
+                telemetry.saveNodeSnapshot(
+                    state.getPlaylistId(),
+                    executionTrace.getExecutionId(),
+                    step,
+                    state
+                );
                 
-                // Debug 模式：如果命中停止节点，则提前终止执行
-                if (debugStopNodeName != null && debugStopNodeName.equals(currentNode)) {
-                    log.info("[Graph][Debug] 命中停止节点 {}，提前结束执行", currentNode);
+                // Debug 模式：如果命中停止节点（含并行分支），则提前终止执行
+                if (debugStopNodeName != null
+                        && (debugStopNodeName.equals(currentNode) || isBranch(branches, debugStopNodeName))) {
+                    log.info("[Graph][Debug] 命中停止节点 {}，提前结束执行", debugStopNodeName);
                     break;
                 }
                 
                 // 根据条件边决定下一个节点
-                ConditionalEdge edge = edges.get(currentNode);
+                ConditionalEdge edge = graph.edge(currentId);
                 if (edge == null) {
                     // 没有边，说明是终止节点
                     log.debug("[Graph] 节点 {} 没有出边，执行结束", currentNode);
@@ -225,7 +128,7 @@ public class PlaylistAgentGraph {
                 
                 // 记录边决策追踪
                 if (nextNode != null) {
-                    boolean isLoop = nextNode.equals("content_analysis"); // 判断是否是循环边
+                    boolean isLoop = graph.isLoop(currentId, graph.idOf(nextNode)); // 回边在编译时按策略的图结构标记
                     EdgeTrace edgeTrace = EdgeTrace.builder()
                         .fromNode(currentNode)
                         .toNode(nextNode)
@@ -236,7 +139,7 @@ public class PlaylistAgentGraph {
                     executionTrace.addEdgeTrace(edgeTrace);
                     
                     // 记录行为日志：边转移
-                    behaviorLogService.logEdgeTransition(
+                    telemetry.logEdgeTransition(
                         state.getPlaylistId(), 
                         state.getConversationId(), 
                         "conditional_edge",
@@ -250,8 +153,14 @@ public class PlaylistAgentGraph {
                     break;
                 }
                 
+                int nextId = graph.idOf(nextNode);
+                if (nextId < 0) {
+                    log.error("[Graph] 节点不存在: {}", nextNode);
+                    break;
+                }
+                
                 log.debug("[Graph] 从 {} -> {}", currentNode, nextNode);
-                currentNode = nextNode;
+                currentId = nextId;
             }
             
             if (iterations >= maxIterations) {
@@ -280,21 +189,200 @@ public class PlaylistAgentGraph {
     }
     
     /**
-     * 获取图的可视化表示（用于调试）
+     * 执行并行分组（fork/join）
+     *
+     * 除最后一个分支外都提交到分支线程池，最后一个分支在调用线程执行（线程池满时 CallerRunsPolicy
+     * 会让先提交的分支在调用线程内联执行，后续分支要等它结束才能提交，并行退化为串行），
+     * 等待全部结束后（join）：
+     * 1. 分支追踪按声明顺序写入 ExecutionTrace（span 可能重叠）
+     * 2. 任一分支失败时按声明顺序抛出第一个失败
+     * 3. 分支返回的 StateUpdate 按声明顺序在调用线程应用，合并结果与完成先后无关
+     *
+     * 分支之间只能读取 fork 前已有的状态；需要写共享字段的分支应返回 StateUpdate，
+     * 直接写入的字段必须只归一个分支所有。
      */
-    public String visualize() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("PlaylistAgent 状态图:\n");
-        sb.append("起始节点: ").append(startNode).append("\n\n");
-        sb.append("节点列表:\n");
-        for (String nodeName : nodes.keySet()) {
-            sb.append("  - ").append(nodeName).append("\n");
+    private AgentNode.NodeResult executeParallel(String groupName, int[] branches, PlaylistContext state) {
+        long forkTime = System.currentTimeMillis();
+        telemetry.logNodeEnter(state.getPlaylistId(), state.getConversationId(), groupName);
+        
+        List<CompletableFuture<NodeRun>> futures = new ArrayList<>(branches.length);
+        List<String> branchNames = new ArrayList<>(branches.length);
+        for (int i = 0; i < branches.length; i++) {
+            String branch = graph.name(branches[i]);
+            AgentNode node = graph.node(branches[i]);
+            branchNames.add(branch);
+            if (i == branches.length - 1) {
+                futures.add(CompletableFuture.completedFuture(executeNode(branch, node, state, groupName)));
+            } else {
+                futures.add(CompletableFuture.supplyAsync(
+                    () -> executeNode(branch, node, state, groupName), branchExecutor.executor()));
+            }
         }
-        sb.append("\n边列表:\n");
-        for (String from : edges.keySet()) {
-            sb.append("  ").append(from).append(" -> [条件边]\n");
+        
+        List<NodeRun> runs = new ArrayList<>(futures.size());
+        for (CompletableFuture<NodeRun> future : futures) {
+            runs.add(future.join());
         }
-        return sb.toString();
+        
+        // 分支 Metrics 在 join 后由调用线程记录（AgentRuntimeMetrics 的计数不是线程安全的）
+        RuntimeException failure = null;
+        for (NodeRun run : runs) {
+            executionTrace.addNodeTrace(run.trace());
+            if (run.error() == null) {
+                telemetry.recordNodeExecution(state.getPlaylistId(), run.trace().getNodeName(), run.trace().getDurationMs());
+            } else if (failure == null) {
+                failure = run.error();
+            }
+        }
+        
+        long joinTime = System.currentTimeMillis();
+        long duration = joinTime - forkTime;
+        NodeTrace.NodeTraceBuilder groupTrace = NodeTrace.builder()
+            .nodeName(groupName)
+            .startTime(forkTime)
+            .endTime(joinTime)
+            .durationMs(duration)
+            .threadName(Thread.currentThread().getName());
+        
+        if (failure != null) {
+            executionTrace.addNodeTrace(groupTrace.success(false).error(failure.getMessage()).build());
+            telemetry.logNodeExit(state.getPlaylistId(), state.getConversationId(), groupName, duration, false, failure.getMessage());
+            executionTrace.setStatus("FAILED");
+            throw failure;
+        }
+        
+        for (NodeRun run : runs) {
+            applyUpdate(state, run.result());
+        }
+        executionTrace.addNodeTrace(groupTrace.success(true).output("join:" + String.join(",", branchNames)).build());
+        telemetry.logNodeExit(state.getPlaylistId(), state.getConversationId(), groupName, duration, true, null);
+        telemetry.recordNodeExecution(state.getPlaylistId(), groupName, duration);
+        
+        long serialMs = runs.stream().mapToLong(run -> run.trace().getDurationMs()).sum();
+        log.info("[Graph] 并行分组 {} 完成: 分支={}, 耗时 {}ms（串行合计 {}ms）", groupName, branchNames, duration, serialMs);
+        return AgentNode.NodeResult.success();
+    }
+    
+    /**
+     * 执行单个节点并记录追踪 / 行为日志（不抛出异常，失败放在返回值中由调用方处理）
+     *
+     * @param group 所属并行分组，顺序执行时为 null
+     */
+    private NodeRun executeNode(String nodeName, AgentNode node, PlaylistContext state, String group) {
+        // 记录行为日志：节点进入
+        telemetry.logNodeEnter(
+            state.getPlaylistId(), 
+            state.getConversationId(), 
+            nodeName
+        );
+        
+        // 记录节点开始时间
+        long nodeStartTime = System.currentTimeMillis();
+        String threadName = Thread.currentThread().getName();
+        
+        try {
+            AgentNode.NodeResult result = node.execute(state);
+            
+            // 记录节点执行追踪
+            long nodeEndTime = System.currentTimeMillis();
+            long nodeDuration = nodeEndTime - nodeStartTime;
+            
+            NodeTrace nodeTrace = NodeTrace.builder()
+                .nodeName(nodeName)
+                .startTime(nodeStartTime)
+                .endTime(nodeEndTime)
+                .durationMs(nodeDuration)
+                .success(true)
+                .output(result != null ? result.getNextNode() : null)
+                .threadName(threadName)
+                .parallelGroup(group)
+                .build();
+            
+            // 记录行为日志：节点退出
+            telemetry.logNodeExit(
+                state.getPlaylistId(), 
+                state.getConversationId(), 
+                nodeName, 
+                nodeDuration, 
+                true, 
+                null
+            );
+            
+            // 记录 Metrics：节点执行（并行分支由 join 在调用线程记录）
+            if (group == null) {
+                telemetry.recordNodeExecution(
+                    state.getPlaylistId(), 
+                    nodeName, 
+                    nodeDuration
+                );
+            }
+            
+            return new NodeRun(result, nodeTrace, null);
+        } catch (RuntimeException e) {
+            // 记录节点失败
+            long nodeEndTime = System.currentTimeMillis();
+            long nodeDuration = nodeEndTime - nodeStartTime;
+            
+            NodeTrace nodeTrace = NodeTrace.builder()
+                .nodeName(nodeName)
+                .startTime(nodeStartTime)
+                .endTime(nodeEndTime)
+                .durationMs(nodeDuration)
+                .success(false)
+                .error(e.getMessage())
+                .threadName(threadName)
+                .parallelGroup(group)
+                .build();
+            
+            // 记录行为日志：错误
+            telemetry.logError(
+                state.getPlaylistId(), 
+                state.getConversationId(), 
+                nodeName,
+                e.getMessage(),
+                getStackTrace(e)
+            );
+            
+            // 记录行为日志：节点退出（失败）
+            telemetry.logNodeExit(
+                state.getPlaylistId(), 
+                state.getConversationId(), 
+                nodeName, 
+                nodeDuration, 
+                false, 
+                e.getMessage()
+            );
+            
+            log.error("[Graph] 节点执行失败: {}", nodeName, e);
+            return new NodeRun(null, nodeTrace, e);
+        }
+    }
+    
+    /**
+     * 应用节点返回的局部状态更新
+     */
+    private void applyUpdate(PlaylistContext state, AgentNode.NodeResult result) {
+        if (result != null && result.getData() instanceof StateUpdate update) {
+            update.apply(state);
+        }
+    }
+    
+    /**
+     * 单个节点的执行结果与追踪
+     */
+    private record NodeRun(AgentNode.NodeResult result, NodeTrace trace, RuntimeException error) {
+    }
+    
+    private boolean isBranch(int[] branches, String nodeName) {
+        if (branches == null) {
+            return false;
+        }
+        for (int branchId : branches) {
+            if (graph.name(branchId).equals(nodeName)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -4,23 +4,32 @@ import com.example.bilibilimusic.agent.graph.edges.AfterRetrievalEdge;
 import com.example.bilibilimusic.agent.graph.edges.ContinueJudgeEdge;
 import com.example.bilibilimusic.agent.graph.nodes.*;
 import com.example.bilibilimusic.dto.PlaylistRequest;
-import com.example.bilibilimusic.service.AgentBehaviorLogService;
-import com.example.bilibilimusic.service.AgentMetricsService;
 import com.example.bilibilimusic.service.CacheService;
 import com.example.bilibilimusic.service.ContextPersistenceService;
 import com.example.bilibilimusic.service.DatabaseService;
+import com.example.bilibilimusic.service.TelemetryPipeline;
 import com.example.bilibilimusic.service.UserPreferenceService;
+import com.example.bilibilimusic.service.search.SearchCoalescer;
+import com.example.bilibilimusic.service.search.VideoDetailEnricher;
 import com.example.bilibilimusic.skill.*;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * PlaylistAgent 图构建器
  * 
- * 负责组装状态机的所有节点和边
+ * 负责组装状态机的所有节点和边：启动时为每个策略编译一次 CompiledGraph（校验失败则启动失败），
+ * 每次请求只创建轻量的 PlaylistAgentGraph 执行对象，共享编译后的节点与边。
  */
 @Slf4j
 @Component
@@ -32,27 +41,68 @@ public class PlaylistAgentGraphBuilder {
     private final RetrievalSkill retrievalSkill;
     private final CurationSkill curationSkill;
     private final VideoRelevanceScorer relevanceScorer;
+    private final VideoDetailEnricher detailEnricher;
     private final SummarySkill summarySkill;
     private final SimpMessagingTemplate messagingTemplate;
     private final DatabaseService databaseService;
     private final UserPreferenceService preferenceService;
     private final CacheService cacheService;
-    private final AgentBehaviorLogService behaviorLogService;
-    private final AgentMetricsService metricsService;
+    private final SearchCoalescer searchCoalescer;
+    private final SpeculativeRetrieval speculativeRetrieval;
+    private final TelemetryPipeline telemetry;
     private final ContextPersistenceService contextPersistenceService;
     private final PlaylistAgentPolicySelector policySelector;
+    private final GraphBranchExecutor branchExecutor;
+    @Getter(AccessLevel.NONE)
+    private final List<PlaylistAgentPolicy> policies;
+    
+    /**
+     * 批量判断节点每批处理的候选数
+     */
+    @Value("${agent.judgement.chunk-size:10}")
+    private int judgementChunkSize;
+    
+    /**
+     * 按策略缓存的编译结果
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<PlaylistAgentPolicy, CompiledGraph> compiledGraphs = new ConcurrentHashMap<>();
+    
+    /**
+     * 启动时编译并校验所有策略的状态图
+     */
+    @PostConstruct
+    public void compileAll() {
+        for (PlaylistAgentPolicy policy : policies) {
+            compiledGraphs.computeIfAbsent(policy, this::compile);
+        }
+        log.info("[GraphBuilder] 已编译 {} 个策略的状态图", compiledGraphs.size());
+    }
+    
+    /**
+     * 编译单个策略的状态图
+     */
+    public CompiledGraph compile(PlaylistAgentPolicy policy) {
+        GraphDefinition definition = new GraphDefinition();
+        policy.configure(definition, this);
+        CompiledGraph compiled = definition.compile(policy.getClass().getSimpleName());
+        log.debug("[GraphBuilder] 图结构:\n{}", compiled.visualize());
+        return compiled;
+    }
+    
+    /**
+     * 基于编译后的图创建一次执行
+     */
+    public PlaylistAgentGraph newExecution(CompiledGraph compiled) {
+        return new PlaylistAgentGraph(compiled, telemetry, contextPersistenceService, branchExecutor);
+    }
     
     /**
      * 构建 PlaylistAgent 状态图（根据请求选择策略）
      */
     public PlaylistAgentGraph build(PlaylistRequest request) {
-        PlaylistAgentGraph graph = new PlaylistAgentGraph(behaviorLogService, metricsService, contextPersistenceService);
-                
         PlaylistAgentPolicy policy = policySelector.selectPolicy(request);
-        graph.setPolicyName(policy.getClass().getSimpleName());
-        policy.configure(graph, this);
-                
-        return graph;
+        return newExecution(compiledGraphs.computeIfAbsent(policy, this::compile));
     }
     
     /**
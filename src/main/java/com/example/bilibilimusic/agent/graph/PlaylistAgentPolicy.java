@@ -8,8 +8,10 @@ public interface PlaylistAgentPolicy {
     /**
      * 根据策略配置状态图：添加节点、条件边并设置起始节点。
      *
-     * @param graph   要配置的 PlaylistAgentGraph 实例
+     * 启动时每个策略只调用一次，编译结果被所有请求共享，节点必须无状态。
+     *
+     * @param graph   要配置的图定义
      * @param builder 依赖提供方（访问各类 Skill / Service）
      */
-    void configure(PlaylistAgentGraph graph, PlaylistAgentGraphBuilder builder);
+    void configure(GraphDefinition graph, PlaylistAgentGraphBuilder builder);
 }
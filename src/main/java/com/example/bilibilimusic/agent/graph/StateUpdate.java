@@ -0,0 +1,19 @@
+package com.example.bilibilimusic.agent.graph;
+
+import com.example.bilibilimusic.context.PlaylistContext;
+
+/**
+ * 节点返回的局部状态更新
+ *
+ * 并行分支不直接写共享字段，而是把更新放在 NodeResult 中返回，
+ * 由 join 在所有分支结束后按分支声明顺序依次应用（调用线程内执行，结果确定）。
+ * 顺序执行的节点返回的更新在节点结束后立即应用。
+ */
+@FunctionalInterface
+public interface StateUpdate {
+
+    /**
+     * 将更新应用到状态
+     */
+    void apply(PlaylistContext state);
+}
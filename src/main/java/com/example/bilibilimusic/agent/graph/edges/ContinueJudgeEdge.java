@@ -9,12 +9,22 @@ import lombok.extern.slf4j.Slf4j;
  * 继续判断条件边（循环控制）
  * 
  * 决策逻辑：
- * - 如果shouldContinue=true 且未达标 -> judge_video（回环）
+ * - 如果shouldContinue=true 且未达标 -> 循环入口节点（回环，默认 content_analysis，批量判断为 batch_judgement）
  * - 否则 -> target_evaluation（跳出循环）
  */
 @Slf4j
 public class ContinueJudgeEdge implements ConditionalEdge {
     
+    private final String loopNode;
+    
+    public ContinueJudgeEdge() {
+        this("content_analysis");
+    }
+    
+    public ContinueJudgeEdge(String loopNode) {
+        this.loopNode = loopNode;
+    }
+    
     @Override
     public String decide(PlaylistContext state, AgentNode.NodeResult lastResult) {
         // 检查是否应该继续
@@ -23,7 +33,7 @@ public class ContinueJudgeEdge implements ConditionalEdge {
             if (state.getCurrentVideoIndex() < state.getSearchResults().size()) {
                 log.debug("[ContinueJudgeEdge] 继续判断，当前进度: {}/{}", 
                     state.getCurrentVideoIndex(), state.getSearchResults().size());
-                return "content_analysis";  // 回环
+                return loopNode;  // 回环
             }
         }
         
@@ -0,0 +1,105 @@
+package com.example.bilibilimusic.agent.graph.nodes;
+
+import com.example.bilibilimusic.agent.graph.AgentNode;
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.CacheService;
+import com.example.bilibilimusic.skill.VideoRelevanceScorer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量判断节点（替代逐个视频的判断循环子图）
+ *
+ * 逐个视频的循环每个视频要经过 content_analysis → quantity_estimation → relevance_decision
+ * → video_accepted → progress_update → loop_control 5~6 跳，每跳都会写行为日志、Redis 快照和指标。
+ * 本节点一次处理一批候选（chunkSize 个），一批只算一跳：
+ * 1. 纯函数阶段：整批做可理解性分析、数量估算
+ * 2. 批量 IO：可理解的视频一次 MGET 查询判断缓存
+ * 3. 顺序折叠：按候选顺序逐个打分、写入状态、推送事件并推进循环，
+ *    复用循环节点的同一套方法，接受 / 拒绝语义与 WebSocket 事件与逐个循环一致；
+ *    达到目标即停止，批内剩余视频不再处理
+ *
+ * 一批处理完后由 ContinueJudgeEdge 回到本节点处理下一批或跳出循环。
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BatchJudgementNode implements AgentNode {
+
+    private final ContentAnalysisNode contentAnalysisNode;
+    private final RelevanceDecisionNode relevanceDecisionNode;
+    private final VideoAcceptedNode videoAcceptedNode;
+    private final ProgressUpdateNode progressUpdateNode;
+    private final LoopControlNode loopControlNode;
+    private final CacheService cacheService;
+    private final int chunkSize;
+
+    @Override
+    public NodeResult execute(PlaylistContext state) {
+        List<VideoInfo> results = state.getSearchResults();
+        int start = state.getCurrentVideoIndex();
+        if (start >= results.size()) {
+            log.info("[BatchJudge] 已无更多视频可处理");
+            state.setShouldContinue(false);
+            return NodeResult.success();
+        }
+
+        // 复制一份：流式模式下循环控制会向 searchResults 追加新到达的视频
+        List<VideoInfo> chunk = new ArrayList<>(results.subList(start, Math.min(start + Math.max(1, chunkSize), results.size())));
+
+        // 1. 纯函数阶段
+        List<Map<String, Object>> analyses = chunk.stream().map(JudgementFunctions::analyzeContent).toList();
+        List<Map<String, Object>> quantities = chunk.stream().map(JudgementFunctions::estimateQuantity).toList();
+
+        // 2. 批量查询判断缓存
+        List<VideoInfo> understandable = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (JudgementFunctions.isUnderstandable(analyses.get(i))) {
+                understandable.add(chunk.get(i));
+            }
+        }
+        Map<String, VideoRelevanceScorer.ScoringResult> cached =
+            cacheService.getCachedLLMJudgements(understandable, state.getIntent());
+
+        // 3. 顺序折叠（与逐个循环相同的状态写入与事件顺序）
+        int processed = 0;
+        int accepted = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            VideoInfo video = chunk.get(i);
+            Map<String, Object> analysis = analyses.get(i);
+            boolean isUnderstandable = JudgementFunctions.isUnderstandable(analysis);
+
+            state.setCurrentStage(PlaylistContext.Stage.CONTENT_ANALYSIS);
+            state.setLastContentAnalysis(analysis);
+            state.setCurrentUnderstandable(isUnderstandable);
+            if (!isUnderstandable) {
+                contentAnalysisNode.markNotUnderstandable(state, video, analysis);
+            } else {
+                state.setLastQuantityEstimation(quantities.get(i));
+                state.setCurrentStage(PlaylistContext.Stage.CANDIDATE_DECISION);
+                VideoRelevanceScorer.ScoringResult scoringResult =
+                    relevanceDecisionNode.score(state, video, cached.get(video.getBvid()));
+                if (relevanceDecisionNode.applyDecision(state, video, scoringResult)) {
+                    videoAcceptedNode.accept(state, video);
+                    accepted++;
+                }
+            }
+            progressUpdateNode.pushProgress(state, video);
+            loopControlNode.execute(state);
+            processed++;
+
+            if (!state.isShouldContinue() || state.isTargetReached()) {
+                break;
+            }
+        }
+
+        log.info("[BatchJudge] 处理 {} 个视频（批大小 {}，缓存命中 {}），接受 {}，累计 {}/{}",
+            processed, chunk.size(), cached.size(), accepted,
+            state.getAccumulatedCount(), state.getIntent().getTargetCount());
+        return NodeResult.success();
+    }
+}
@@ -31,42 +31,41 @@ public class ContentAnalysisNode implements AgentNode {
         VideoInfo video = state.getSearchResults().get(index);
         state.setCurrentStage(PlaylistContext.Stage.CONTENT_ANALYSIS);
 
-        boolean hasTitle = video.getTitle() != null && !video.getTitle().isBlank();
-        boolean hasTags = video.getTags() != null && !video.getTags().isBlank();
-        boolean hasDescription = video.getDescription() != null && !video.getDescription().isBlank();
-        boolean understandable = hasTitle || hasTags || hasDescription;
-
-        Map<String, Object> analysis = new HashMap<>();
-        analysis.put("hasTitle", hasTitle);
-        analysis.put("hasTags", hasTags);
-        analysis.put("hasDescription", hasDescription);
-        analysis.put("understandable", understandable);
+        Map<String, Object> analysis = JudgementFunctions.analyzeContent(video);
+        boolean understandable = JudgementFunctions.isUnderstandable(analysis);
         state.setLastContentAnalysis(analysis);
         state.setCurrentUnderstandable(understandable);
 
         if (!understandable) {
-            log.debug("[ContentAnalysis] 视频缺少标题/标签/简介，暂存为候选: {}", video.getTitle());
-            state.getTrashVideos().add(video);
-
-            // 发送一次 CONTENT_ANALYSIS 阶段的流式反馈（与原 runVideoJudgementLoop 保持一致）
-            Map<String, Object> payload = new HashMap<>();
-            Map<String, Object> v = new HashMap<>();
-            v.put("title", video.getTitle());
-            v.put("author", video.getAuthor());
-            v.put("duration", video.getDuration());
-            v.put("url", video.getUrl());
-            payload.put("video", v);
-            payload.put("contentAnalysis", analysis);
-
-            com.example.bilibilimusic.dto.ChatMessage msg = com.example.bilibilimusic.dto.ChatMessage.builder()
-                .type("stream_update")
-                .stage("CONTENT_ANALYSIS")
-                .content("视频缺少标题/标签/简介，暂存为候选")
-                .payload(payload)
-                .build();
-            messagingTemplate.convertAndSend("/topic/messages", msg);
+            markNotUnderstandable(state, video, analysis);
         }
 
         return NodeResult.success("quantity_estimation");
     }
+
+    /**
+     * 不可理解的视频暂存为候选，并推送一次 CONTENT_ANALYSIS 阶段的流式反馈
+     */
+    public void markNotUnderstandable(PlaylistContext state, VideoInfo video, Map<String, Object> analysis) {
+        log.debug("[ContentAnalysis] 视频缺少标题/标签/简介，暂存为候选: {}", video.getTitle());
+        state.getTrashVideos().add(video);
+
+        // 发送一次 CONTENT_ANALYSIS 阶段的流式反馈（与原 runVideoJudgementLoop 保持一致）
+        Map<String, Object> payload = new HashMap<>();
+        Map<String, Object> v = new HashMap<>();
+        v.put("title", video.getTitle());
+        v.put("author", video.getAuthor());
+        v.put("duration", video.getDuration());
+        v.put("url", video.getUrl());
+        payload.put("video", v);
+        payload.put("contentAnalysis", analysis);
+
+        com.example.bilibilimusic.dto.ChatMessage msg = com.example.bilibilimusic.dto.ChatMessage.builder()
+            .type("stream_update")
+            .stage("CONTENT_ANALYSIS")
+            .content("视频缺少标题/标签/简介，暂存为候选")
+            .payload(payload)
+            .build();
+        messagingTemplate.convertAndSend("/topic/messages", msg);
+    }
 }
@@ -0,0 +1,135 @@
+package com.example.bilibilimusic.agent.graph.nodes;
+
+import com.example.bilibilimusic.agent.graph.AgentNode;
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.context.UserIntent;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.UserPreferenceService;
+import com.example.bilibilimusic.service.search.VideoDetailEnricher;
+import com.example.bilibilimusic.skill.VideoRelevanceScorer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 详情按需补充节点（懒加载详情）
+ *
+ * 检索阶段只返回搜索卡片（标题 / 作者 / 时长），本节点在预排序之后：
+ * 1. 用卡片字段打分，负关键词直接拒绝的视频不抓详情
+ * 2. 卡片分 + 详情最大增益 + 探索加成上界仍低于接受阈值的视频不抓详情
+ * 3. 其余候选按预排序顺序并发补充详情，补充后可确定接受的数量达到 targetCount 即停止
+ *
+ * 已带详情的视频（JSON 接口 / 缓存命中 / 流式检索）不会重复抓取。
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DetailEnrichmentNode implements AgentNode {
+
+    private final VideoRelevanceScorer scorer;
+    private final VideoDetailEnricher detailEnricher;
+    private final UserPreferenceService preferenceService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Override
+    public NodeResult execute(PlaylistContext state) {
+        List<VideoInfo> videos = state.getSearchResults();
+        if (videos == null || videos.isEmpty() || state.getVideoStream() != null) {
+            // 流式检索在生产端已补充详情
+            return NodeResult.success("content_analysis");
+        }
+
+        UserIntent intent = state.getIntent();
+        Long conversationId = state.getConversationId();
+        Long userId = state.getUserId();
+        // 优先使用并行分支预加载的偏好权重，未预加载时查库
+        Map<String, Integer> artistPrefs = state.getArtistPreferences() != null
+            ? state.getArtistPreferences()
+            : userId != null
+                ? preferenceService.getUserArtistPreferences(userId)
+                : preferenceService.getArtistPreferences(conversationId);
+        Map<String, Integer> keywordPrefs = state.getKeywordPreferences() != null
+            ? state.getKeywordPreferences()
+            : userId != null
+                ? preferenceService.getUserKeywordPreferences(userId)
+                : preferenceService.getKeywordPreferences(conversationId);
+        int explorationBound = conversationId != null ? scorer.maxExplorationBonus(intent) : 0;
+
+        int alreadyDetailed = 0;
+        int rejectedByCard = 0;
+        int unreachable = 0;
+        AtomicInteger confidentAccepts = new AtomicInteger();
+        List<VideoInfo> candidates = new ArrayList<>();
+
+        for (VideoInfo video : videos) {
+            VideoRelevanceScorer.ScoringResult cardResult = scorer.scoreVideo(video, intent, artistPrefs, keywordPrefs);
+            if (!needsDetail(video)) {
+                alreadyDetailed++;
+                if (cardResult.isAccepted()) {
+                    confidentAccepts.incrementAndGet();
+                }
+            } else if (cardResult.getFeatures().isNegativeKeywordHit()) {
+                rejectedByCard++;
+            } else if (cardResult.getScore() + scorer.maxDetailGain(video, intent, keywordPrefs) + explorationBound
+                    < cardResult.getAcceptThreshold()) {
+                unreachable++;
+            } else {
+                candidates.add(video);
+            }
+        }
+
+        int target = intent.getTargetCount() > 0 ? intent.getTargetCount() : videos.size();
+        VideoDetailEnricher.EnrichmentReport report = null;
+        if (!candidates.isEmpty() && confidentAccepts.get() < target) {
+            report = detailEnricher.enrich(candidates,
+                video -> {
+                    if (scorer.scoreVideo(video, intent, artistPrefs, keywordPrefs).isAccepted()) {
+                        confidentAccepts.incrementAndGet();
+                    }
+                },
+                () -> confidentAccepts.get() >= target);
+        }
+
+        int fetched = report != null ? report.getSucceeded() + report.getTimedOut() + report.getFailed() : 0;
+        int fromStore = report != null ? report.getCacheHits() : 0;
+        int stoppedEarly = candidates.size() - fetched - fromStore;
+        // 相对于全量补充（每个缺详情的视频都打开详情页）省下的抓取次数
+        int skipped = rejectedByCard + unreachable + fromStore + stoppedEarly;
+
+        log.info("[DetailEnrichment] 共 {} 个视频: 已有详情={}, 卡片拒绝={}, 无法达到阈值={}, 元数据命中={}, 抓取详情={}, 达标提前停止={}, 跳过详情抓取 {} 次",
+            videos.size(), alreadyDetailed, rejectedByCard, unreachable, fromStore, fetched, stoppedEarly, skipped);
+
+        if (fetched > 0 || skipped > 0) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("fetched", fetched);
+            payload.put("skipped", skipped);
+            payload.put("rejectedByCard", rejectedByCard);
+            payload.put("unreachable", unreachable);
+            payload.put("fromStore", fromStore);
+            payload.put("stoppedEarly", stoppedEarly);
+            payload.put("alreadyDetailed", alreadyDetailed);
+
+            com.example.bilibilimusic.dto.ChatMessage msg = com.example.bilibilimusic.dto.ChatMessage.builder()
+                .type("status")
+                .stage("VIDEO_RETRIEVAL")
+                .content(String.format("📄 按需补充详情：抓取 %d 个，跳过 %d 个", fetched, skipped))
+                .payload(payload)
+                .build();
+            messagingTemplate.convertAndSend("/topic/messages", msg);
+        }
+
+        return NodeResult.success("content_analysis");
+    }
+
+    /**
+     * 只有搜索卡片字段（标签与简介都缺失）的视频需要补充详情
+     */
+    private boolean needsDetail(VideoInfo video) {
+        return video.getTags() == null && video.getDescription() == null;
+    }
+}
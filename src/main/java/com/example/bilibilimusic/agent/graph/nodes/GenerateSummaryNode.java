@@ -26,8 +26,10 @@ public class GenerateSummaryNode implements AgentNode {
         
         state.setCurrentStage(PlaylistContext.Stage.SUMMARY_GENERATION);
         
-        // 调用SummarySkill生成总结
-        summarySkill.execute(state);
+        // 调用SummarySkill流式生成总结，增量按小段推送
+        SummaryDeltaPublisher publisher = new SummaryDeltaPublisher();
+        summarySkill.execute(state, publisher::append);
+        publisher.flush();
         
         // 推送最终总结
         pushFinalSummary(state);
@@ -36,6 +38,50 @@ public class GenerateSummaryNode implements AgentNode {
         return NodeResult.success(null); // null表示结束
     }
     
+    /**
+     * 总结增量推送：逐 token 推送消息过多，攒到 MIN_DELTA_CHARS 字或距上次推送超过 MAX_DELTA_INTERVAL_MS 再推送
+     */
+    private class SummaryDeltaPublisher {
+        private static final int MIN_DELTA_CHARS = 16;
+        private static final long MAX_DELTA_INTERVAL_MS = 150;
+        
+        private final StringBuilder pending = new StringBuilder();
+        private final long start = System.currentTimeMillis();
+        private long lastPushAt = start;
+        private int seq = 0;
+        
+        void append(String delta) {
+            pending.append(delta);
+            long now = System.currentTimeMillis();
+            // 首段立即推送，让用户尽早看到内容
+            if (seq == 0 || pending.length() >= MIN_DELTA_CHARS || now - lastPushAt >= MAX_DELTA_INTERVAL_MS) {
+                flush();
+            }
+        }
+        
+        void flush() {
+            if (pending.length() == 0) {
+                return;
+            }
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("delta", pending.toString());
+            payload.put("seq", seq);
+            if (seq == 0) {
+                payload.put("firstTokenMs", System.currentTimeMillis() - start);
+            }
+            com.example.bilibilimusic.dto.ChatMessage msg = com.example.bilibilimusic.dto.ChatMessage.builder()
+                .type("summary_delta")
+                .stage("SUMMARY_GENERATION")
+                .content(pending.toString())
+                .payload(payload)
+                .build();
+            messagingTemplate.convertAndSend("/topic/messages", msg);
+            pending.setLength(0);
+            lastPushAt = System.currentTimeMillis();
+            seq++;
+        }
+    }
+    
     private void pushFinalSummary(PlaylistContext context) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("summary", context.getSummary());
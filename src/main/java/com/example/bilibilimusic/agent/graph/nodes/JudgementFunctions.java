@@ -0,0 +1,133 @@
+package com.example.bilibilimusic.agent.graph.nodes;
+
+import com.example.bilibilimusic.dto.MusicUnit;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.skill.VideoRelevanceScorer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 视频判断循环中的纯函数（不读写 State、无副作用）
+ *
+ * 逐个视频的循环节点（ContentAnalysis / QuantityEstimation / RelevanceDecision）与
+ * 批量判断节点共用，保证两种判断方式的接受 / 拒绝语义一致。
+ */
+public final class JudgementFunctions {
+
+    private JudgementFunctions() {
+    }
+
+    /**
+     * 内容可理解性分析：有标题、标签、简介之一即视为可理解
+     */
+    public static Map<String, Object> analyzeContent(VideoInfo video) {
+        boolean hasTitle = video.getTitle() != null && !video.getTitle().isBlank();
+        boolean hasTags = video.getTags() != null && !video.getTags().isBlank();
+        boolean hasDescription = video.getDescription() != null && !video.getDescription().isBlank();
+
+        Map<String, Object> analysis = new HashMap<>();
+        analysis.put("hasTitle", hasTitle);
+        analysis.put("hasTags", hasTags);
+        analysis.put("hasDescription", hasDescription);
+        analysis.put("understandable", hasTitle || hasTags || hasDescription);
+        return analysis;
+    }
+
+    public static boolean isUnderstandable(Map<String, Object> analysis) {
+        return analysis != null && Boolean.TRUE.equals(analysis.get("understandable"));
+    }
+
+    /**
+     * 数量估算：合集按 1 首处理，其余按时长约 4 分钟一首估算
+     */
+    public static Map<String, Object> estimateQuantity(VideoInfo video) {
+        boolean isPlaylist = isPlaylistStyle(video);
+        int estimatedCount = isPlaylist ? 1 : estimateSongCount(video);
+
+        Map<String, Object> quantity = new HashMap<>();
+        quantity.put("estimatedCount", estimatedCount);
+        quantity.put("isPlaylist", isPlaylist);
+        quantity.put("method", isPlaylist ? "playlist_treated_as_single" : "approx_by_duration_or_title");
+        return quantity;
+    }
+
+    /**
+     * 相关性决策信息（推送给前端的 decision 字段）
+     */
+    public static Map<String, Object> decisionInfo(VideoRelevanceScorer.ScoringResult scoringResult) {
+        Map<String, Object> decisionInfo = new HashMap<>();
+        decisionInfo.put("accepted", scoringResult.isAccepted());
+        decisionInfo.put("score", scoringResult.getScore());
+        decisionInfo.put("reason", scoringResult.getReason());
+        return decisionInfo;
+    }
+
+    /**
+     * 被接受视频对应的音乐单元（数量取自数量估算结果，缺失时按 1 首）
+     */
+    public static MusicUnit musicUnit(VideoInfo video, String reason, Map<String, Object> quantity) {
+        int estimatedCount = 1;
+        boolean isPlaylist = false;
+        if (quantity != null) {
+            Object ec = quantity.get("estimatedCount");
+            if (ec instanceof Number) {
+                estimatedCount = ((Number) ec).intValue();
+            }
+            Object ip = quantity.get("isPlaylist");
+            if (ip instanceof Boolean) {
+                isPlaylist = (Boolean) ip;
+            }
+        }
+        return MusicUnit.builder()
+            .title(video.getTitle())
+            .artist(video.getAuthor())
+            .sourceVideo(video)
+            .estimatedCount(estimatedCount)
+            .reason(reason)
+            .playlistStyle(isPlaylist)
+            .build();
+    }
+
+    private static int estimateSongCount(VideoInfo video) {
+        int seconds = parseDurationToSeconds(video.getDuration());
+        if (seconds <= 0) {
+            return 1;
+        }
+        double minutes = seconds / 60.0;
+        int approx = (int) Math.max(1, Math.round(minutes / 4.0));
+        if (isPlaylistStyle(video) && approx < 3) {
+            approx = 3;
+        }
+        return approx;
+    }
+
+    private static int parseDurationToSeconds(String duration) {
+        if (duration == null || duration.isBlank()) {
+            return 0;
+        }
+        String[] parts = duration.trim().split(":");
+        try {
+            if (parts.length == 3) {
+                int h = Integer.parseInt(parts[0]);
+                int m = Integer.parseInt(parts[1]);
+                int s = Integer.parseInt(parts[2]);
+                return h * 3600 + m * 60 + s;
+            } else if (parts.length == 2) {
+                int m = Integer.parseInt(parts[0]);
+                int s = Integer.parseInt(parts[1]);
+                return m * 60 + s;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        return 0;
+    }
+
+    private static boolean isPlaylistStyle(VideoInfo video) {
+        String title = video.getTitle();
+        if (title == null) return false;
+        String t = title.toLowerCase();
+        return t.contains("合集") || t.contains("歌单") || t.contains("串烧")
+            || t.contains("mix") || t.contains("playlist") || t.contains("连播");
+    }
+}
@@ -2,15 +2,20 @@ package com.example.bilibilimusic.agent.graph.nodes;
 
 import com.example.bilibilimusic.agent.graph.AgentNode;
 import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.search.VideoStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.List;
+
 /**
  * 循环控制节点（LoopControlNode）
  *
  * 职责：
  * - 推进 currentVideoIndex
  * - 根据 accumulatedCount / targetCount 和索引位置设置 shouldContinue
+ * - 流式检索时从 VideoStream 拉取新到达的视频，目标达成后发出停止信号
  * - 不做任何 WebSocket/DB 副作用
  */
 @Slf4j
@@ -31,6 +36,7 @@ public class LoopControlNode implements AgentNode {
             shouldContinue = false;
             targetReached = true;
         }
+        pullFromStream(state, nextIndex, targetReached);
         if (nextIndex >= state.getSearchResults().size()) {
             shouldContinue = false;
         }
@@ -43,4 +49,26 @@ public class LoopControlNode implements AgentNode {
 
         return NodeResult.success(); // 下一个节点由 ContinueJudgeEdge 决定
     }
+
+    /**
+     * 流式模式：目标达成时通知生产者停止；候选池用尽时等待下一个视频到达
+     */
+    private void pullFromStream(PlaylistContext state, int nextIndex, boolean targetReached) {
+        VideoStream stream = state.getVideoStream();
+        if (stream == null) {
+            return;
+        }
+        if (targetReached) {
+            stream.cancel();
+            return;
+        }
+        List<VideoInfo> results = state.getSearchResults();
+        if (nextIndex >= results.size() && !stream.isExhausted()) {
+            VideoInfo next = stream.next();
+            if (next != null) {
+                results.add(next);
+            }
+        }
+        results.addAll(stream.drainAvailable());
+    }
 }
@@ -22,6 +22,8 @@ import java.util.Map;
  * - 3-5 分钟时长优先
  * - 播放量高优先
  * - 评论数高优先
+ *
+ * 流式检索时只对首批到达的视频排序，后续到达的视频按到达顺序追加。
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -44,12 +46,17 @@ public class PreSortVideosNode implements AgentNode {
         // 从数据库获取用户偏好权重（个性化推荐，含时间衰减）
         Long conversationId = state.getConversationId();
         Long userId = state.getUserId();
-        Map<String, Integer> artistPrefs = userId != null 
-            ? preferenceService.getUserArtistPreferences(userId)
-            : preferenceService.getArtistPreferences(conversationId);
-        Map<String, Integer> keywordPrefs = userId != null 
-            ? preferenceService.getUserKeywordPreferences(userId)
-            : preferenceService.getKeywordPreferences(conversationId);
+        // 优先使用并行分支预加载的偏好权重，未预加载时查库
+        Map<String, Integer> artistPrefs = state.getArtistPreferences() != null
+            ? state.getArtistPreferences()
+            : userId != null
+                ? preferenceService.getUserArtistPreferences(userId)
+                : preferenceService.getArtistPreferences(conversationId);
+        Map<String, Integer> keywordPrefs = state.getKeywordPreferences() != null
+            ? state.getKeywordPreferences()
+            : userId != null
+                ? preferenceService.getUserKeywordPreferences(userId)
+                : preferenceService.getKeywordPreferences(conversationId);
                         
         log.info("[PreSort] 加载偏好权重 - userId={}, 艺人: {}, 关键词: {}", userId, artistPrefs.size(), keywordPrefs.size());
         
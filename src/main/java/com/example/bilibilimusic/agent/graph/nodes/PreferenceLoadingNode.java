@@ -0,0 +1,42 @@
+package com.example.bilibilimusic.agent.graph.nodes;
+
+import com.example.bilibilimusic.agent.graph.AgentNode;
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.service.UserPreferenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * 偏好预加载节点
+ *
+ * 与关键词提取并行执行：读取用户（或会话）的艺人 / 关键词偏好权重，
+ * 以局部状态更新返回，由 join 写入上下文，供预排序、详情补充、相关性判断复用，
+ * 不再在判断循环中逐个视频查库。
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PreferenceLoadingNode implements AgentNode {
+
+    private final UserPreferenceService preferenceService;
+
+    @Override
+    public NodeResult execute(PlaylistContext state) {
+        Long conversationId = state.getConversationId();
+        Long userId = state.getUserId();
+        Map<String, Integer> artistPrefs = userId != null
+            ? preferenceService.getUserArtistPreferences(userId)
+            : preferenceService.getArtistPreferences(conversationId);
+        Map<String, Integer> keywordPrefs = userId != null
+            ? preferenceService.getUserKeywordPreferences(userId)
+            : preferenceService.getKeywordPreferences(conversationId);
+
+        log.info("[PreferenceNode] 预加载偏好权重 - userId={}, 艺人: {}, 关键词: {}",
+            userId, artistPrefs.size(), keywordPrefs.size());
+        return NodeResult.update(s -> {
+            s.setArtistPreferences(artistPrefs);
+            s.setKeywordPreferences(keywordPrefs);
+        });
+    }
+}
@@ -28,7 +28,15 @@ public class ProgressUpdateNode implements AgentNode {
             return NodeResult.success("loop_control");
         }
 
-        VideoInfo video = state.getSearchResults().get(index);
+        pushProgress(state, state.getSearchResults().get(index));
+
+        return NodeResult.success("loop_control");
+    }
+
+    /**
+     * 推送当前视频的分析 / 估算 / 决策与整体进度（批量判断节点复用）
+     */
+    public void pushProgress(PlaylistContext state, VideoInfo video) {
         state.setCurrentStage(PlaylistContext.Stage.STREAM_FEEDBACK);
 
         Map<String, Object> payload = new HashMap<>();
@@ -65,7 +73,5 @@ public class ProgressUpdateNode implements AgentNode {
             .payload(payload)
             .build();
         messagingTemplate.convertAndSend("/topic/messages", msg);
-
-        return NodeResult.success("loop_control");
     }
 }
@@ -11,8 +11,6 @@ import com.example.bilibilimusic.skill.VideoRelevanceScorer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,79 +36,71 @@ public class RelevanceDecisionNode implements AgentNode {
         VideoInfo video = state.getSearchResults().get(index);
         state.setCurrentStage(PlaylistContext.Stage.CANDIDATE_DECISION);
 
+        // 尝试从 Redis 缓存获取 LLM 判断结果
+        VideoRelevanceScorer.ScoringResult cached = cacheService.getCachedLLMJudgement(video.getBvid(), state.getIntent());
+        VideoRelevanceScorer.ScoringResult scoringResult = score(state, video, cached);
+        boolean accepted = applyDecision(state, video, scoringResult);
+
+        return NodeResult.success(accepted ? "video_accepted" : "progress_update");
+    }
+
+    /**
+     * 打分（缓存命中直接使用，未命中时打分并写入缓存）
+     *
+     * @param cached 已查询到的缓存结果，可为 null
+     */
+    public VideoRelevanceScorer.ScoringResult score(PlaylistContext state, VideoInfo video,
+                                                    VideoRelevanceScorer.ScoringResult cached) {
+        if (cached != null) {
+            log.debug("[RelDecision] 命中 LLM 缓存: bvid={}, score={}", video.getBvid(), cached.getScore());
+            return cached;
+        }
         UserIntent intent = state.getIntent();
         Long conversationId = state.getConversationId();
         Long userId = state.getUserId();
-                
-        // 尝试从 Redis 缓存获取 LLM 判断结果
-        VideoRelevanceScorer.ScoringResult scoringResult = cacheService.getCachedLLMJudgement(video.getBvid(), intent);
-                
-        if (scoringResult != null) {
-            log.debug("[RelDecision] 命中 LLM 缓存: bvid={}, score={}", video.getBvid(), scoringResult.getScore());
-        } else {
-            // 缓存未命中，从数据库获取偏好权重（含时间衰减）
-            Map<String, Integer> artistPrefs = userId != null 
+
+        // 缓存未命中，从数据库获取偏好权重（含时间衰减）
+        // 优先使用并行分支预加载的偏好权重，未预加载时查库
+        Map<String, Integer> artistPrefs = state.getArtistPreferences() != null
+            ? state.getArtistPreferences()
+            : userId != null
                 ? preferenceService.getUserArtistPreferences(userId)
                 : preferenceService.getArtistPreferences(conversationId);
-            Map<String, Integer> keywordPrefs = userId != null 
+        Map<String, Integer> keywordPrefs = state.getKeywordPreferences() != null
+            ? state.getKeywordPreferences()
+            : userId != null
                 ? preferenceService.getUserKeywordPreferences(userId)
                 : preferenceService.getKeywordPreferences(conversationId);
-                                
-            // 使用打分制判断相关性（含偏好加成 & 探索/冷启动策略）
-            scoringResult = scorer.scoreVideo(video, intent, artistPrefs, keywordPrefs, conversationId);
-                    
-            // 缓存 LLM 判断结果
-            cacheService.cacheLLMJudgement(video.getBvid(), intent, scoringResult);
-        }
-        boolean accepted = scoringResult.isAccepted();
-        int score = scoringResult.getScore();
-        String decisionReason = scoringResult.getReason();
+                            
+        // 使用打分制判断相关性（含偏好加成 & 探索/冷启动策略）
+        VideoRelevanceScorer.ScoringResult scoringResult = scorer.scoreVideo(video, intent, artistPrefs, keywordPrefs, conversationId);
+                
+        // 缓存 LLM 判断结果
+        cacheService.cacheLLMJudgement(video.getBvid(), intent, scoringResult);
+        return scoringResult;
+    }
 
-        Map<String, Object> decisionInfo = new HashMap<>();
-        decisionInfo.put("accepted", accepted);
-        decisionInfo.put("score", score);
-        decisionInfo.put("reason", decisionReason);
-        state.setLastDecisionInfo(decisionInfo);
+    /**
+     * 将打分结果写入状态：接受则生成音乐单元并累加数量，拒绝则放入候选垃圾桶
+     *
+     * @return 是否接受
+     */
+    public boolean applyDecision(PlaylistContext state, VideoInfo video, VideoRelevanceScorer.ScoringResult scoringResult) {
+        boolean accepted = scoringResult.isAccepted();
+        state.setLastDecisionInfo(JudgementFunctions.decisionInfo(scoringResult));
         
         log.debug("[RelDecision] {} - 评分: {}, 结果: {}", 
-            video.getTitle(), score, accepted ? "接受" : "拒绝");
+            video.getTitle(), scoringResult.getScore(), accepted ? "接受" : "拒绝");
 
         if (accepted) {
             // 从数量估算中读取估算结果
-            Map<String, Object> quantity = state.getLastQuantityEstimation();
-            int estimatedCount = 1;
-            boolean isPlaylist = false;
-            if (quantity != null) {
-                Object ec = quantity.get("estimatedCount");
-                if (ec instanceof Number) {
-                    estimatedCount = ((Number) ec).intValue();
-                }
-                Object ip = quantity.get("isPlaylist");
-                if (ip instanceof Boolean) {
-                    isPlaylist = (Boolean) ip;
-                }
-            }
-
-            MusicUnit unit = MusicUnit.builder()
-                .title(video.getTitle())
-                .artist(video.getAuthor())
-                .sourceVideo(video)
-                .estimatedCount(estimatedCount)
-                .reason(decisionReason)
-                .playlistStyle(isPlaylist)
-                .build();
+            MusicUnit unit = JudgementFunctions.musicUnit(video, scoringResult.getReason(), state.getLastQuantityEstimation());
             state.getMusicUnits().add(unit);
             state.getSelectedVideos().add(video);
-            state.setAccumulatedCount(state.getAccumulatedCount() + estimatedCount);
-
-            // 记录当前视频被接受，以便 VideoAcceptedNode 可以读取
-            Map<String, Object> acceptedMeta = new HashMap<>();
-            acceptedMeta.put("estimatedCount", estimatedCount);
-            state.setLastDecisionInfo(decisionInfo);
+            state.setAccumulatedCount(state.getAccumulatedCount() + unit.getEstimatedCount());
         } else {
             state.getTrashVideos().add(video);
         }
-
-        return NodeResult.success(accepted ? "video_accepted" : "progress_update");
+        return accepted;
     }
 }
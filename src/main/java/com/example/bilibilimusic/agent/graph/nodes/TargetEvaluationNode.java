@@ -28,6 +28,11 @@ public class TargetEvaluationNode implements AgentNode {
         
         state.setCurrentStage(PlaylistContext.Stage.TARGET_EVALUATION);
         
+        // 流式检索：判断循环已结束，通知生产者停止
+        if (state.getVideoStream() != null) {
+            state.getVideoStream().cancel();
+        }
+        
         int targetCount = state.getIntent().getTargetCount();
         int finalCount = state.getAccumulatedCount();
         int trashCount = state.getTrashVideos().size();
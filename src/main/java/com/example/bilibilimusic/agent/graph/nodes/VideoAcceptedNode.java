@@ -36,6 +36,15 @@ public class VideoAcceptedNode implements AgentNode {
         }
 
         VideoInfo video = state.getSearchResults().get(index);
+        accept(state, video);
+
+        return NodeResult.success("progress_update");
+    }
+
+    /**
+     * 持久化已接受的视频并推送 video_accepted（批量判断节点复用）
+     */
+    public void accept(PlaylistContext state, VideoInfo video) {
         int accumulatedCount = state.getAccumulatedCount();
         int targetCount = state.getIntent().getTargetCount();
 
@@ -45,26 +54,7 @@ public class VideoAcceptedNode implements AgentNode {
             video.getAuthor() != null ? video.getAuthor() : "未知",
             accumulatedCount);
 
-        // 数据库持久化：保存视频和歌曲到播放列表
-        try {
-            // 1. 保存或更新视频信息
-            Video videoEntity = databaseService.saveOrUpdateVideo(video);
-
-            if (videoEntity != null && state.getPlaylistId() != null) {
-                // 2. 添加到播放列表
-                databaseService.addMusicToPlaylist(
-                    state.getPlaylistId(),
-                    video.getTitle(),
-                    video.getAuthor() != null ? video.getAuthor() : "未知",
-                    videoEntity,
-                    summary, // 使用摘要作为加入原因
-                    accumulatedCount // 位置
-                );
-                log.debug("[Database] 已保存视频到数据库: {} - {}", video.getTitle(), video.getAuthor());
-            }
-        } catch (Exception e) {
-            log.error("[Database] 保存视频到数据库失败: {}", e.getMessage(), e);
-        }
+        persist(state, video, summary, accumulatedCount);
 
         // 发送流式结果（video_accepted）
         Map<String, Object> payload = new HashMap<>();
@@ -85,7 +75,30 @@ public class VideoAcceptedNode implements AgentNode {
 
         log.info("[流式发送] 立即发送视频：{} - {} （{}/{})",
             video.getTitle(), video.getAuthor(), accumulatedCount, targetCount);
+    }
 
-        return NodeResult.success("progress_update");
+    /**
+     * 数据库持久化：保存视频和歌曲到播放列表
+     */
+    protected void persist(PlaylistContext state, VideoInfo video, String summary, int position) {
+        try {
+            // 1. 保存或更新视频信息
+            Video videoEntity = databaseService.saveOrUpdateVideo(video);
+
+            if (videoEntity != null && state.getPlaylistId() != null) {
+                // 2. 添加到播放列表
+                databaseService.addMusicToPlaylist(
+                    state.getPlaylistId(),
+                    video.getTitle(),
+                    video.getAuthor() != null ? video.getAuthor() : "未知",
+                    videoEntity,
+                    summary, // 使用摘要作为加入原因
+                    position // 位置
+                );
+                log.debug("[Database] 已保存视频到数据库: {} - {}", video.getTitle(), video.getAuthor());
+            }
+        } catch (Exception e) {
+            log.error("[Database] 保存视频到数据库失败: {}", e.getMessage(), e);
+        }
     }
 }
@@ -4,7 +4,9 @@ import com.example.bilibilimusic.agent.graph.AgentNode;
 import com.example.bilibilimusic.context.PlaylistContext;
 import com.example.bilibilimusic.dto.VideoInfo;
 import com.example.bilibilimusic.service.CacheService;
+import com.example.bilibilimusic.service.search.SearchCoalescer;
 import com.example.bilibilimusic.skill.RetrievalSkill;
+import com.example.bilibilimusic.skill.SpeculativeRetrieval;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -15,7 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * 视频检索节点（集成缓存）
+ * 视频检索节点（集成投机检索、缓存与并发检索合并）
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -24,6 +26,8 @@ public class VideoRetrievalNode implements AgentNode {
     private final RetrievalSkill retrievalSkill;
     private final SimpMessagingTemplate messagingTemplate;
     private final CacheService cacheService;
+    private final SearchCoalescer searchCoalescer;
+    private final SpeculativeRetrieval speculativeRetrieval;
     
     @Override
     public NodeResult execute(PlaylistContext state) {
@@ -33,14 +37,26 @@ public class VideoRetrievalNode implements AgentNode {
         
         String query = state.getIntent().getQuery();
         
+        // 关键词提取期间已提前开始的检索：查询一致则直接复用，否则取消
+        List<VideoInfo> speculativeResults = null;
+        if (state.getSpeculativeSearch() != null) {
+            retrievalSkill.applyPredictedLimit(state);
+            speculativeResults = speculativeRetrieval.claim(state);
+        }
+        
         // 尝试从缓存获取搜索结果
-        List<VideoInfo> cachedResults = cacheService.getCachedSearchResults(query);
+        List<VideoInfo> cachedResults = speculativeResults == null ? cacheService.getCachedSearchResults(query) : null;
         
-        if (cachedResults != null && !cachedResults.isEmpty()) {
+        if (speculativeResults != null) {
+            log.info("[RetrievalNode] 复用投机检索结果，视频数: {}", speculativeResults.size());
+            state.setSearchResults(speculativeResults);
+            state.setCurrentStage(PlaylistContext.Stage.VIDEO_JUDGEMENT_LOOP);
+            cacheService.cacheSearchResults(query, speculativeResults);
+        } else if (cachedResults != null && !cachedResults.isEmpty()) {
             log.info("[RetrievalNode] 命中搜索缓存，视频数: {}", cachedResults.size());
             state.setSearchResults(cachedResults);
-        } else {
-            // 缓存未命中，调用Skill检索
+        } else if (retrievalSkill.isStreaming(state)) {
+            // 流式模式：每个请求各自消费自己的流，不参与合并
             boolean success = retrievalSkill.execute(state);
             
             if (!success || state.getSearchResults().isEmpty()) {
@@ -48,8 +64,23 @@ public class VideoRetrievalNode implements AgentNode {
                 return NodeResult.failure("no_results");
             }
             
-            // 缓存搜索结果
-            cacheService.cacheSearchResults(query, state.getSearchResults());
+            // 只有完整检索（未被提前停止）的结果才写入缓存
+            state.getVideoStream().onComplete(videos -> cacheService.cacheSearchResults(query, videos));
+        } else {
+            // 缓存未命中，同查询的并发检索合并为一次（检索方负责写入缓存）
+            List<VideoInfo> videos = searchCoalescer.execute(query,
+                () -> retrievalSkill.execute(state) ? state.getSearchResults() : List.of());
+            
+            if (videos == null || videos.isEmpty()) {
+                log.warn("[RetrievalNode] 检索失败或无结果");
+                return NodeResult.failure("no_results");
+            }
+            
+            if (videos != state.getSearchResults()) {
+                // 合并到其它请求的检索结果
+                state.setSearchResults(videos);
+                state.setCurrentStage(PlaylistContext.Stage.VIDEO_JUDGEMENT_LOOP);
+            }
         }
         
         // 推送搜索结果
@@ -77,10 +108,15 @@ public class VideoRetrievalNode implements AgentNode {
             payload.put("samples", samples);
         }
         
+        boolean streaming = context.getVideoStream() != null;
+        payload.put("streaming", streaming);
+        
         com.example.bilibilimusic.dto.ChatMessage msg = com.example.bilibilimusic.dto.ChatMessage.builder()
             .type("search_results")
             .stage("VIDEO_RETRIEVAL")
-            .content(String.format("🔍 搜索到 %d 个视频", context.getSearchResults().size()))
+            .content(streaming
+                ? String.format("🔍 流式检索中，已到达 %d 个视频", context.getSearchResults().size())
+                : String.format("🔍 搜索到 %d 个视频", context.getSearchResults().size()))
             .payload(payload)
             .build();
         messagingTemplate.convertAndSend("/topic/messages", msg);
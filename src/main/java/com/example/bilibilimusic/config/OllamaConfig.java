@@ -1,17 +1,51 @@
 package com.example.bilibilimusic.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class OllamaConfig {
 
+    /**
+     * Ollama 专用连接池（与其它 WebClient 隔离，容量与本地推理并发匹配）
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider ollamaConnectionProvider(
+            @Value("${ollama.pool.max-connections:16}") int maxConnections,
+            @Value("${ollama.pool.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+            @Value("${ollama.pool.max-idle-time-ms:30000}") long maxIdleTimeMs,
+            @Value("${ollama.pool.max-life-time-ms:300000}") long maxLifeTimeMs) {
+        return ConnectionProvider.builder("ollama")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxConnections * 4)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofSeconds(30))
+                .build();
+    }
+
     @Bean
-    public WebClient ollamaWebClient(@Value("${ollama.base-url}") String baseUrl) {
+    public WebClient ollamaWebClient(@Value("${ollama.base-url}") String baseUrl,
+                                     @Value("${ollama.connect-timeout-ms:3000}") int connectTimeoutMs,
+                                     ConnectionProvider ollamaConnectionProvider) {
+        // 不设置全局 responseTimeout：生成耗时差异大，截止时间由 LlmClient 按调用设置
+        HttpClient httpClient = HttpClient.create(ollamaConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .keepAlive(true);
         return WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                // 总结等长输出可能超过默认 256KB 缓冲
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(4 * 1024 * 1024))
                 .build();
     }
 }
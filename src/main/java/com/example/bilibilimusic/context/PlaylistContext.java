@@ -2,6 +2,9 @@ package com.example.bilibilimusic.context;
 
 import com.example.bilibilimusic.dto.MusicUnit;
 import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.search.SpeculativeSearch;
+import com.example.bilibilimusic.service.search.VideoStream;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.List;
@@ -94,6 +97,22 @@ public class PlaylistContext {
     public String getSelectionReason() { return memory.getSelectionReason(); }
     public void setSelectionReason(String reason) { memory.setSelectionReason(reason); }
     
+    @JsonIgnore
+    public VideoStream getVideoStream() { return memory.getVideoStream(); }
+    public void setVideoStream(VideoStream stream) { memory.setVideoStream(stream); }
+    
+    @JsonIgnore
+    public SpeculativeSearch getSpeculativeSearch() { return memory.getSpeculativeSearch(); }
+    public void setSpeculativeSearch(SpeculativeSearch search) { memory.setSpeculativeSearch(search); }
+    
+    @JsonIgnore
+    public Map<String, Integer> getArtistPreferences() { return memory.getArtistPreferences(); }
+    public void setArtistPreferences(Map<String, Integer> preferences) { memory.setArtistPreferences(preferences); }
+    
+    @JsonIgnore
+    public Map<String, Integer> getKeywordPreferences() { return memory.getKeywordPreferences(); }
+    public void setKeywordPreferences(Map<String, Integer> preferences) { memory.setKeywordPreferences(preferences); }
+    
     // Control 字段的便捷访问
     public int getCurrentVideoIndex() { return control.getCurrentVideoIndex(); }
     public void setCurrentVideoIndex(int index) { control.setCurrentVideoIndex(index); }
@@ -2,10 +2,14 @@ package com.example.bilibilimusic.context;
 
 import com.example.bilibilimusic.dto.MusicUnit;
 import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.search.SpeculativeSearch;
+import com.example.bilibilimusic.service.search.VideoStream;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 工作内存（运行时数据）
@@ -58,4 +62,28 @@ public class WorkingMemory {
      * 筛选理由/策略说明（用于前端显示）
      */
     private String selectionReason;
+
+    /**
+     * 流式检索通道（仅流式模式下存在，尚未到达的视频会陆续追加到 searchResults）
+     */
+    @JsonIgnore
+    private VideoStream videoStream;
+
+    /**
+     * 投机检索（关键词提取期间提前开始，检索节点认领或取消后清空）
+     */
+    @JsonIgnore
+    private SpeculativeSearch speculativeSearch;
+
+    /**
+     * 预加载的艺人偏好权重（并行分支在关键词提取期间加载，判断循环内复用）
+     */
+    @JsonIgnore
+    private Map<String, Integer> artistPreferences;
+
+    /**
+     * 预加载的关键词偏好权重
+     */
+    @JsonIgnore
+    private Map<String, Integer> keywordPreferences;
 }
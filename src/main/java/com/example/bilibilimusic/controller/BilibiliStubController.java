@@ -0,0 +1,67 @@
+package com.example.bilibilimusic.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Pattern;
+
+/**
+ * B 站 JSON 接口本地桩（离线测试用）
+ *
+ * 仅在 bilibili-stub profile 下启用，返回 classpath:stub/bilibili/ 下录制的响应：
+ * - search-page{N}.json：搜索接口第 N 页（任意关键词）
+ * - view-{bvid}.json：详情接口
+ *
+ * 启动方式：--spring.profiles.active=bilibili-stub
+ */
+@RestController
+@RequestMapping("/stub/bilibili/x/web-interface")
+@Profile("bilibili-stub")
+@Slf4j
+public class BilibiliStubController {
+
+    private static final String FIXTURE_DIR = "stub/bilibili/";
+    private static final Pattern BVID = Pattern.compile("^BV[0-9A-Za-z]+$");
+    private static final String EMPTY_SEARCH = "{\"code\":0,\"message\":\"0\",\"data\":{\"result\":[]}}";
+    private static final String NOT_FOUND = "{\"code\":-404,\"message\":\"啥都木有\",\"data\":null}";
+
+    @GetMapping("/search/type")
+    public ResponseEntity<byte[]> search(@RequestParam String keyword,
+                                         @RequestParam(defaultValue = "1") int page) throws IOException {
+        log.debug("[Stub] search keyword={}, page={}", keyword, page);
+        return fixture("search-page" + page + ".json", EMPTY_SEARCH);
+    }
+
+    @GetMapping("/view")
+    public ResponseEntity<byte[]> view(@RequestParam String bvid) throws IOException {
+        log.debug("[Stub] view bvid={}", bvid);
+        // bvid 参与拼接 classpath 路径，只接受合法的 BV 号
+        if (!BVID.matcher(bvid).matches()) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(NOT_FOUND.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        }
+        return fixture("view-" + bvid + ".json", NOT_FOUND);
+    }
+
+    private ResponseEntity<byte[]> fixture(String name, String fallback) throws IOException {
+        ClassPathResource resource = new ClassPathResource(FIXTURE_DIR + name);
+        byte[] body;
+        if (resource.exists()) {
+            try (InputStream in = resource.getInputStream()) {
+                body = in.readAllBytes();
+            }
+        } else {
+            body = fallback.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+}
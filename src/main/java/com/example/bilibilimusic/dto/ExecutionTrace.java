@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -84,13 +85,38 @@ public class ExecutionTrace {
         edgeTraces.add(trace);
     }
     
+    /**
+     * 并行分支的峰值并发数（重叠 span 的最大数量，无并行分支时为 1）
+     */
+    public int getPeakConcurrency() {
+        if (nodeTraces == null) {
+            return 1;
+        }
+        List<long[]> events = new ArrayList<>();
+        for (NodeTrace trace : nodeTraces) {
+            if (trace.getParallelGroup() != null && trace.getStartTime() != null && trace.getEndTime() != null) {
+                events.add(new long[] {trace.getStartTime(), 1});
+                events.add(new long[] {trace.getEndTime(), -1});
+            }
+        }
+        // 同一时刻先结束再开始，首尾相接的 span 不算重叠
+        events.sort(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        int running = 0;
+        int peak = 1;
+        for (long[] event : events) {
+            running += (int) event[1];
+            peak = Math.max(peak, running);
+        }
+        return peak;
+    }
+    
     /**
      * 获取执行摘要
      */
     public String getSummary() {
         int nodeCount = nodeTraces != null ? nodeTraces.size() : 0;
         int edgeCount = edgeTraces != null ? edgeTraces.size() : 0;
-        return String.format("执行: %d个节点, %d次跳转, 总耗时%dms", 
-            nodeCount, edgeCount, totalDurationMs);
+        return String.format("执行: %d个节点, %d次跳转, 并行峰值%d, 总耗时%dms", 
+            nodeCount, edgeCount, getPeakConcurrency(), totalDurationMs);
     }
 }
@@ -48,4 +48,14 @@ public class NodeTrace {
      * 节点输出简要（可选）
      */
     private String output;
+    
+    /**
+     * 执行线程名（并行分支的 span 可能相互重叠）
+     */
+    private String threadName;
+    
+    /**
+     * 所属并行分组（仅并行分支有值，分组本身的 fork/join span 为空）
+     */
+    private String parallelGroup;
 }
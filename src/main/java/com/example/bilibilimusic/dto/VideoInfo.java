@@ -3,8 +3,10 @@ package com.example.bilibilimusic.dto;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class VideoInfo {
     private String bvid;  // B站视频BV号
     private String title;
@@ -15,4 +17,5 @@ public class VideoInfo {
     private String description;  // 新增：视频描述（可选）
     private Long playCount;  // 新增：播放量
     private Long commentCount;  // 新增：评论数
+    private List<String> sourceQueries;  // 检索来源（子查询#页码），扇出检索时记录
 }
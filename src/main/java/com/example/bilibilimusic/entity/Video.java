@@ -31,5 +31,15 @@ public class Video {
     
     private String url;
     
+    private String author;
+    
+    private Long playCount;
+    
+    private Long commentCount;
+    
     private LocalDateTime createdAt;
+    
+    private LocalDateTime detailUpdatedAt; // 标签 / 简介最近一次抓取时间
+    
+    private LocalDateTime statsUpdatedAt; // 播放量 / 评论数最近一次刷新时间
 }
@@ -2,11 +2,30 @@ package com.example.bilibilimusic.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.bilibilimusic.entity.AgentBehaviorLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * Agent 行为日志 Mapper
  */
 @Mapper
 public interface AgentBehaviorLogMapper extends BaseMapper<AgentBehaviorLog> {
+    
+    /**
+     * 多行 INSERT（一条语句写入一批日志）
+     */
+    @Insert("<script>"
+        + "INSERT INTO agent_behavior_log (playlist_id, conversation_id, behavior_type, node_name, edge_name, "
+        + "source_node, target_node, description, input_data, output_data, duration_ms, success, error_message, "
+        + "prompt_version, created_at) VALUES "
+        + "<foreach collection='rows' item='r' separator=','>"
+        + "(#{r.playlistId}, #{r.conversationId}, #{r.behaviorType}, #{r.nodeName}, #{r.edgeName}, "
+        + "#{r.sourceNode}, #{r.targetNode}, #{r.description}, #{r.inputData}, #{r.outputData}, #{r.durationMs}, "
+        + "#{r.success}, #{r.errorMessage}, #{r.promptVersion}, #{r.createdAt})"
+        + "</foreach>"
+        + "</script>")
+    int insertBatch(@Param("rows") List<AgentBehaviorLog> rows);
 }
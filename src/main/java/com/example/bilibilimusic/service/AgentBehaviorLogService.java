@@ -8,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Agent 行为日志服务
@@ -30,17 +31,7 @@ public class AgentBehaviorLogService {
      */
     public void logNodeEnter(Long playlistId, Long conversationId, String nodeName) {
         try {
-            AgentBehaviorLog log = AgentBehaviorLog.builder()
-                .playlistId(playlistId)
-                .conversationId(conversationId)
-                .behaviorType("NODE_ENTER")
-                .nodeName(nodeName)
-                .description("进入节点: " + nodeName)
-                .success(true)
-                .createdAt(LocalDateTime.now())
-                .build();
-            
-            behaviorLogMapper.insert(log);
+            behaviorLogMapper.insert(nodeEnterRow(playlistId, conversationId, nodeName));
         } catch (Exception e) {
             log.error("[BehaviorLog] 记录节点进入失败: nodeName={}", nodeName, e);
         }
@@ -52,19 +43,7 @@ public class AgentBehaviorLogService {
     public void logNodeExit(Long playlistId, Long conversationId, String nodeName, 
                            long durationMs, boolean success, String errorMessage) {
         try {
-            AgentBehaviorLog log = AgentBehaviorLog.builder()
-                .playlistId(playlistId)
-                .conversationId(conversationId)
-                .behaviorType("NODE_EXIT")
-                .nodeName(nodeName)
-                .description("退出节点: " + nodeName)
-                .durationMs(durationMs)
-                .success(success)
-                .errorMessage(errorMessage)
-                .createdAt(LocalDateTime.now())
-                .build();
-            
-            behaviorLogMapper.insert(log);
+            behaviorLogMapper.insert(nodeExitRow(playlistId, conversationId, nodeName, durationMs, success, errorMessage));
         } catch (Exception e) {
             log.error("[BehaviorLog] 记录节点退出失败: nodeName={}", nodeName, e);
         }
@@ -76,24 +55,91 @@ public class AgentBehaviorLogService {
     public void logEdgeTransition(Long playlistId, Long conversationId, String edgeName,
                                   String sourceNode, String targetNode) {
         try {
-            AgentBehaviorLog log = AgentBehaviorLog.builder()
-                .playlistId(playlistId)
-                .conversationId(conversationId)
-                .behaviorType("EDGE_TRANSITION")
-                .edgeName(edgeName)
-                .sourceNode(sourceNode)
-                .targetNode(targetNode)
-                .description(String.format("边转移: %s -> %s (%s)", sourceNode, targetNode, edgeName))
-                .success(true)
-                .createdAt(LocalDateTime.now())
-                .build();
-            
-            behaviorLogMapper.insert(log);
+            behaviorLogMapper.insert(edgeTransitionRow(playlistId, conversationId, edgeName, sourceNode, targetNode));
         } catch (Exception e) {
             log.error("[BehaviorLog] 记录边转移失败: edge={}", edgeName, e);
         }
     }
     
+    /**
+     * 批量写入（单条多行 INSERT，供 TelemetryPipeline 的写线程使用）
+     */
+    public void saveBatch(List<AgentBehaviorLog> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        behaviorLogMapper.insertBatch(rows);
+    }
+    
+    /**
+     * 节点进入日志行
+     */
+    public AgentBehaviorLog nodeEnterRow(Long playlistId, Long conversationId, String nodeName) {
+        return AgentBehaviorLog.builder()
+            .playlistId(playlistId)
+            .conversationId(conversationId)
+            .behaviorType("NODE_ENTER")
+            .nodeName(nodeName)
+            .description("进入节点: " + nodeName)
+            .success(true)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
+    /**
+     * 节点退出日志行
+     */
+    public AgentBehaviorLog nodeExitRow(Long playlistId, Long conversationId, String nodeName,
+                                        long durationMs, boolean success, String errorMessage) {
+        return AgentBehaviorLog.builder()
+            .playlistId(playlistId)
+            .conversationId(conversationId)
+            .behaviorType("NODE_EXIT")
+            .nodeName(nodeName)
+            .description("退出节点: " + nodeName)
+            .durationMs(durationMs)
+            .success(success)
+            .errorMessage(errorMessage)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
+    /**
+     * 边转移日志行
+     */
+    public AgentBehaviorLog edgeTransitionRow(Long playlistId, Long conversationId, String edgeName,
+                                              String sourceNode, String targetNode) {
+        return AgentBehaviorLog.builder()
+            .playlistId(playlistId)
+            .conversationId(conversationId)
+            .behaviorType("EDGE_TRANSITION")
+            .edgeName(edgeName)
+            .sourceNode(sourceNode)
+            .targetNode(targetNode)
+            .description(String.format("边转移: %s -> %s (%s)", sourceNode, targetNode, edgeName))
+            .success(true)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
+    /**
+     * 错误日志行
+     */
+    public AgentBehaviorLog errorRow(Long playlistId, Long conversationId, String nodeName,
+                                     String errorMessage, String stackTrace) {
+        return AgentBehaviorLog.builder()
+            .playlistId(playlistId)
+            .conversationId(conversationId)
+            .behaviorType("ERROR")
+            .nodeName(nodeName)
+            .description("执行错误: " + nodeName)
+            .errorMessage(errorMessage)
+            .outputData(stackTrace)
+            .success(false)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+    
     /**
      * 记录 LLM 调用
      */
@@ -153,19 +199,7 @@ public class AgentBehaviorLogService {
     public void logError(Long playlistId, Long conversationId, String nodeName,
                         String errorMessage, String stackTrace) {
         try {
-            AgentBehaviorLog log = AgentBehaviorLog.builder()
-                .playlistId(playlistId)
-                .conversationId(conversationId)
-                .behaviorType("ERROR")
-                .nodeName(nodeName)
-                .description("执行错误: " + nodeName)
-                .errorMessage(errorMessage)
-                .outputData(stackTrace)
-                .success(false)
-                .createdAt(LocalDateTime.now())
-                .build();
-            
-            behaviorLogMapper.insert(log);
+            behaviorLogMapper.insert(errorRow(playlistId, conversationId, nodeName, errorMessage, stackTrace));
         } catch (Exception e) {
             log.error("[BehaviorLog] 记录错误失败: nodeName={}", nodeName, e);
         }
@@ -4,9 +4,13 @@ import com.example.bilibilimusic.dto.AgentRuntimeMetrics;
 import com.example.bilibilimusic.dto.ExecutionMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -82,18 +86,178 @@ public class AgentMetricsService {
      * 记录节点执行
      */
     public void recordNodeExecution(Long playlistId, String nodeName, long durationMs) {
-        AgentRuntimeMetrics metrics = metricsStore.get(playlistId);
-        if (metrics != null) {
-            metrics.recordNodeExecution(nodeName, durationMs);
-            log.debug("[Metrics] 节点执行: playlistId={}, node={}, duration={}ms", 
-                playlistId, nodeName, durationMs);
-            
+        if (recordNodeExecutionLocal(playlistId, nodeName, durationMs)) {
             // 更新 Redis 计数器
             incrementRedisCounter("agent:metrics:node:" + nodeName + ":executions");
             addToRedisTimer("agent:metrics:node:" + nodeName + ":duration", durationMs);
         }
     }
     
+    /**
+     * 只更新内存中的节点执行指标（Redis 计数器由 TelemetryPipeline 批量累加）
+     *
+     * @return 该歌单是否有运行中的 Metrics（没有时不需要累加 Redis 计数器）
+     */
+    public boolean recordNodeExecutionLocal(Long playlistId, String nodeName, long durationMs) {
+        AgentRuntimeMetrics metrics = metricsStore.get(playlistId);
+        if (metrics == null) {
+            return false;
+        }
+        metrics.recordNodeExecution(nodeName, durationMs);
+        log.debug("[Metrics] 节点执行: playlistId={}, node={}, duration={}ms", 
+            playlistId, nodeName, durationMs);
+        return true;
+    }
+    
+    /**
+     * 批量累加节点执行计数器（同一批内按节点合并，一次 Redis pipeline 写入）
+     *
+     * @param totals 节点名 -> {执行次数, 总耗时毫秒}
+     */
+    public void recordNodeExecutionTotals(Map<String, long[]> totals) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        long ttlSeconds = TimeUnit.DAYS.toSeconds(7);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            totals.forEach((nodeName, total) -> {
+                String executionsKey = "agent:metrics:node:" + nodeName + ":executions";
+                String durationKey = "agent:metrics:node:" + nodeName + ":duration";
+                redis.incrBy(executionsKey, total[0]);
+                redis.expire(executionsKey, ttlSeconds);
+                redis.incrBy(durationKey, total[1]);
+                redis.expire(durationKey, ttlSeconds);
+            });
+            return null;
+        });
+    }
+    
+    /**
+     * 记录一次页面就绪等待（按场景累计实际等待时长、命中的选择器、network idle 回退与未就绪次数）
+     *
+     * 在浏览器属主线程上调用，一次 pipeline 写入，不拖慢后续页面操作。
+     */
+    public void recordPageReadiness(String scene, long waitedMs, String matchedSelector,
+                                    boolean networkIdleFallback, boolean ready) {
+        String prefix = "agent:metrics:browser:readiness:" + scene + ":";
+        Map<String, Long> increments = new LinkedHashMap<>();
+        increments.put(prefix + "count", 1L);
+        increments.put(prefix + "wait", waitedMs);
+        increments.put(prefix + "selector:" + (matchedSelector != null ? matchedSelector : "(none)"), 1L);
+        if (networkIdleFallback) {
+            increments.put(prefix + "idle_fallback", 1L);
+        }
+        if (!ready) {
+            increments.put(prefix + "not_ready", 1L);
+        }
+        incrementRedisCountersPipelined(increments);
+    }
+    
+    /**
+     * 记录一个页面的请求拦截结果（页面关闭时调用，节省的字节数为估算值）
+     *
+     * @param blockedByType 资源类型 -> 被中止的请求数
+     */
+    public void recordPageResourceBlock(long allowed, long blocked, long bytesSaved, Map<String, Long> blockedByType) {
+        String prefix = "agent:metrics:browser:blocked:";
+        Map<String, Long> increments = new LinkedHashMap<>();
+        increments.put(prefix + "pages", 1L);
+        increments.put(prefix + "allowed", allowed);
+        increments.put(prefix + "requests", blocked);
+        increments.put(prefix + "bytes_saved", bytesSaved);
+        blockedByType.forEach((type, count) -> increments.put(prefix + "type:" + type, count));
+        incrementRedisCountersPipelined(increments);
+    }
+    
+    /**
+     * 记录 LLM 响应缓存查询（按 Prompt 类型 / 节点，outcome: local / redis / miss）
+     */
+    public void recordLlmCacheLookup(String promptName, String outcome) {
+        incrementRedisCounter("agent:metrics:llm:cache:" + promptName + ":" + outcome);
+    }
+    
+    /**
+     * 记录结构化输出解码结果（outcome: invalid / repaired / failed）
+     */
+    public void recordStructuredOutput(String purpose, String outcome) {
+        incrementRedisCounter("agent:metrics:llm:structured:" + purpose + ":" + outcome);
+    }
+    
+    /**
+     * 记录一次 LLM 调用的输入规模与耗时（按用途累计，观察 Prompt 大小对 prefill 延迟的影响）
+     */
+    public void recordLlmPromptCost(String purpose, long promptTokens, Long prefillMs, long durationMs) {
+        String prefix = "agent:metrics:llm:prompt:" + purpose + ":";
+        incrementRedisCounter(prefix + "calls");
+        incrementRedisCounterBy(prefix + "tokens", promptTokens);
+        if (prefillMs != null) {
+            addToRedisTimer(prefix + "prefill", prefillMs);
+        }
+        addToRedisTimer(prefix + "duration", durationMs);
+    }
+    
+    /**
+     * 记录一次边界视频的 LLM 判断调用（mode: batch / single），用于对比批量与单条判断的每视频 token 与耗时
+     */
+    public void recordJudgementCall(String mode, int items, long tokens, long latencyMs) {
+        String prefix = "agent:metrics:judgement:" + mode + ":";
+        Map<String, Long> increments = new LinkedHashMap<>();
+        increments.put(prefix + "calls", 1L);
+        increments.put(prefix + "items", (long) items);
+        increments.put(prefix + "tokens", tokens);
+        increments.put(prefix + "latency", latencyMs);
+        incrementRedisCountersPipelined(increments);
+    }
+    
+    /**
+     * 记录批量判断退回单条判断的视频数（结果缺项或调用失败）
+     */
+    public void recordJudgementBatchFallback(int items) {
+        incrementRedisCounterBy("agent:metrics:judgement:batch:fallback_items", items);
+    }
+    
+    /**
+     * 记录一次 LLM 准入拒绝（reason: queue_full / queue_timeout）
+     */
+    public void recordLlmShed(String priority, String reason) {
+        incrementRedisCounter("agent:metrics:llm:admission:" + priority + ":shed:" + reason);
+    }
+    
+    /**
+     * 记录 LLM 调用的排队等待时间（仅统计实际排过队的调用）
+     */
+    public void recordLlmQueueWait(String priority, long waitMs) {
+        incrementRedisCounter("agent:metrics:llm:admission:" + priority + ":queued");
+        addToRedisTimer("agent:metrics:llm:admission:" + priority + ":wait", waitMs);
+    }
+    
+    /**
+     * 记录一次实际执行的检索（single-flight 中的检索方）
+     */
+    public void recordSearchLeader() {
+        incrementRedisCounter("agent:metrics:search:leaders");
+    }
+    
+    /**
+     * 记录一次被合并的检索（等待同查询的在途检索，未重复抓取）
+     */
+    public void recordSearchCoalesced(boolean remote) {
+        incrementRedisCounter(remote
+            ? "agent:metrics:search:coalesced:remote"
+            : "agent:metrics:search:coalesced:local");
+    }
+    
+    /**
+     * 记录一次投机检索结果（outcome: hit / miss / failed，命中时累计节省的毫秒数）
+     */
+    public void recordSpeculativeSearch(String outcome, long savedMs) {
+        incrementRedisCounter("agent:metrics:search:speculative:" + outcome);
+        if (savedMs > 0) {
+            addToRedisTimer("agent:metrics:search:speculative:saved_ms", savedMs);
+        }
+    }
+    
     /**
      * 完成 Metrics 记录
      */
@@ -146,7 +310,22 @@ public class AgentMetricsService {
             ? (double) totalCacheHits / totalCacheQueries * 100 
             : 0.0;
         
-        return new GlobalMetrics(totalLLMCalls, totalCacheQueries, totalCacheHits, cacheHitRatio);
+        Long searchLeaders = getRedisCounter("agent:metrics:search:leaders");
+        Long coalescedLocal = getRedisCounter("agent:metrics:search:coalesced:local");
+        Long coalescedRemote = getRedisCounter("agent:metrics:search:coalesced:remote");
+        
+        Long speculativeHits = getRedisCounter("agent:metrics:search:speculative:hit");
+        long speculativeClaims = speculativeHits
+            + getRedisCounter("agent:metrics:search:speculative:miss")
+            + getRedisCounter("agent:metrics:search:speculative:failed");
+        double speculativeHitRatio = speculativeClaims > 0
+            ? (double) speculativeHits / speculativeClaims * 100
+            : 0.0;
+        Long speculativeSavedMs = getRedisCounter("agent:metrics:search:speculative:saved_ms");
+        
+        return new GlobalMetrics(totalLLMCalls, totalCacheQueries, totalCacheHits, cacheHitRatio,
+            searchLeaders, coalescedLocal, coalescedRemote,
+            speculativeHits, speculativeHitRatio, speculativeSavedMs);
     }
         
     /**
@@ -203,6 +382,25 @@ public class AgentMetricsService {
         }
     }
     
+    /**
+     * 一次 pipeline 累加多个 Redis 计数器
+     */
+    private void incrementRedisCountersPipelined(Map<String, Long> increments) {
+        long ttlSeconds = TimeUnit.DAYS.toSeconds(7);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                increments.forEach((key, delta) -> {
+                    redis.incrBy(key, delta);
+                    redis.expire(key, ttlSeconds);
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("[Metrics] Redis 计数器批量累加失败: keys={}", increments.keySet(), e);
+        }
+    }
+    
     /**
      * Redis 计数器获取
      */
@@ -236,13 +434,27 @@ public class AgentMetricsService {
         public final long totalCacheQueries;
         public final long totalCacheHits;
         public final double cacheHitRatio;
+        public final long searchLeaders;
+        public final long searchCoalescedLocal;
+        public final long searchCoalescedRemote;
+        public final long speculativeHits;
+        public final double speculativeHitRatio;
+        public final long speculativeSavedMs;
         
         public GlobalMetrics(long totalLLMCalls, long totalCacheQueries, 
-                           long totalCacheHits, double cacheHitRatio) {
+                           long totalCacheHits, double cacheHitRatio,
+                           long searchLeaders, long searchCoalescedLocal, long searchCoalescedRemote,
+                           long speculativeHits, double speculativeHitRatio, long speculativeSavedMs) {
             this.totalLLMCalls = totalLLMCalls;
             this.totalCacheQueries = totalCacheQueries;
             this.totalCacheHits = totalCacheHits;
             this.cacheHitRatio = cacheHitRatio;
+            this.searchLeaders = searchLeaders;
+            this.searchCoalescedLocal = searchCoalescedLocal;
+            this.searchCoalescedRemote = searchCoalescedRemote;
+            this.speculativeHits = speculativeHits;
+            this.speculativeHitRatio = speculativeHitRatio;
+            this.speculativeSavedMs = speculativeSavedMs;
         }
     }
 }
@@ -53,6 +53,13 @@ public class CacheService {
         return "query:cache:" + md5(normalized);
     }
     
+    /**
+     * 归一化查询的摘要（用于按查询聚合的统计 Key）
+     */
+    public String hashQuery(String query) {
+        return md5(normalizeQuery(query));
+    }
+    
     /**
      * 缓存搜索结果
      */
@@ -183,6 +190,45 @@ public class CacheService {
         return null;
     }
     
+    /**
+     * 批量获取缓存的 LLM 判断结果（一次 MGET）
+     *
+     * @return bvid -> 判断结果，只包含命中的视频
+     */
+    public Map<String, VideoRelevanceScorer.ScoringResult> getCachedLLMJudgements(List<VideoInfo> videos, UserIntent intent) {
+        Map<String, VideoRelevanceScorer.ScoringResult> hits = new HashMap<>();
+        List<String> bvids = videos.stream()
+            .map(VideoInfo::getBvid)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+        if (bvids.isEmpty()) {
+            return hits;
+        }
+        try {
+            List<String> keys = bvids.stream().map(bvid -> generateLLMCacheKey(bvid, intent)).collect(Collectors.toList());
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return hits;
+            }
+            for (int i = 0; i < bvids.size() && i < values.size(); i++) {
+                String json = values.get(i);
+                if (json == null) {
+                    continue;
+                }
+                try {
+                    hits.put(bvids.get(i), objectMapper.readValue(json, VideoRelevanceScorer.ScoringResult.class));
+                } catch (Exception e) {
+                    log.warn("[Cache] 反序列化LLM判断结果失败: bvid={}, {}", bvids.get(i), e.getMessage());
+                }
+            }
+            log.debug("[Cache] 批量查询LLM判断缓存: {} 个视频, 命中 {}", bvids.size(), hits.size());
+        } catch (Exception e) {
+            log.warn("[Cache] 批量读取LLM判断缓存失败: {}", e.getMessage());
+        }
+        return hits;
+    }
+    
     // ==================== 3. 用户偏好 ZSet 缓存 ====================
     
     /**
@@ -7,10 +7,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
 import org.redisson.api.RBucket;
 import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -126,22 +128,56 @@ public class ContextPersistenceService {
      * 2. 手动 Resume：从某个节点快照恢复 AgentState 后重新执行图
      */
     public void saveNodeSnapshot(Long playlistId, String executionId, int step, PlaylistContext context) {
+        SerializedSnapshot snapshot = serializeNodeSnapshot(playlistId, executionId, step, context);
+        if (snapshot == null) {
+            return;
+        }
+        RBucket<String> bucket = redissonClient.getBucket(snapshot.key());
+        bucket.set(snapshot.json(), SNAPSHOT_TTL_HOURS, TimeUnit.HOURS);
+        log.debug("[ContextPersist] 保存节点快照: playlistId={}, executionId={}, step={}, stage={}",
+            playlistId, executionId, step, context.getCurrentStage());
+    }
+    
+    /**
+     * 序列化节点快照（必须在执行线程调用：之后的节点会继续修改状态）
+     *
+     * @return 快照 Key 与 JSON；缺少标识或序列化失败时返回 null
+     */
+    public SerializedSnapshot serializeNodeSnapshot(Long playlistId, String executionId, int step, PlaylistContext context) {
+        if (playlistId == null || executionId == null) {
+            return null;
+        }
         try {
-            if (playlistId == null || executionId == null) {
-                return;
-            }
-            String key = getSnapshotKey(playlistId, executionId, step);
-            String json = objectMapper.writeValueAsString(context.getState());
-            RBucket<String> bucket = redissonClient.getBucket(key);
-            bucket.set(json, SNAPSHOT_TTL_HOURS, TimeUnit.HOURS);
-            log.debug("[ContextPersist] 保存节点快照: playlistId={}, executionId={}, step={}, stage={}",
-                playlistId, executionId, step, context.getCurrentStage());
+            return new SerializedSnapshot(getSnapshotKey(playlistId, executionId, step),
+                objectMapper.writeValueAsString(context.getState()));
         } catch (JsonProcessingException e) {
             log.error("[ContextPersist] 序列化节点快照失败: playlistId={}, executionId={}, step={}",
                 playlistId, executionId, step, e);
+            return null;
         }
     }
     
+    /**
+     * 批量写入已序列化的节点快照（Redisson RBatch，一次往返）
+     */
+    public void saveNodeSnapshots(List<SerializedSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        RBatch batch = redissonClient.createBatch();
+        for (SerializedSnapshot snapshot : snapshots) {
+            batch.<String>getBucket(snapshot.key()).setAsync(snapshot.json(), SNAPSHOT_TTL_HOURS, TimeUnit.HOURS);
+        }
+        batch.execute();
+        log.debug("[ContextPersist] 批量保存节点快照: {} 条", snapshots.size());
+    }
+    
+    /**
+     * 已序列化的节点快照
+     */
+    public record SerializedSnapshot(String key, String json) {
+    }
+    
     /**
      * 加载节点快照（用于 Debug Replay）
      */
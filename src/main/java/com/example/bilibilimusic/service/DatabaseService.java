@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.example.bilibilimusic.dto.VideoInfo;
 import com.example.bilibilimusic.entity.*;
 import com.example.bilibilimusic.mapper.*;
+import com.example.bilibilimusic.service.search.VideoMetadataStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,6 +25,7 @@ public class DatabaseService {
     private final VideoMapper videoMapper;
     private final MusicUnitMapper musicUnitMapper;
     private final PlaylistItemMapper playlistItemMapper;
+    private final VideoMetadataStore metadataStore;
 
     /**
      * 创建或获取当前活跃会话
@@ -104,18 +106,24 @@ public class DatabaseService {
             video.setDescription(videoInfo.getDescription());
             video.setDurationSec(parseDurationToSeconds(videoInfo.getDuration()));
             video.setUrl(videoInfo.getUrl());
+            video.setAuthor(videoInfo.getAuthor());
             video.setCreatedAt(LocalDateTime.now());
             
             videoMapper.insert(video);
             log.debug("保存新视频到数据库: {} - {}", bvid, videoInfo.getTitle());
         } else {
-            // 已存在，更新信息
+            // 已存在，更新信息（未补充详情的卡片不覆盖已有的标签 / 简介）
             video.setTitle(videoInfo.getTitle());
-            video.setTags(videoInfo.getTags());
-            video.setDescription(videoInfo.getDescription());
+            if (videoInfo.getTags() != null) {
+                video.setTags(videoInfo.getTags());
+            }
+            if (videoInfo.getDescription() != null) {
+                video.setDescription(videoInfo.getDescription());
+            }
             video.setDurationSec(parseDurationToSeconds(videoInfo.getDuration()));
             
             videoMapper.updateById(video);
+            metadataStore.invalidate(bvid);
             log.debug("更新视频信息: {} - {}", bvid, videoInfo.getTitle());
         }
         
@@ -22,6 +22,7 @@ public class MetricsService {
     
     private final CurationSkill curationSkill;
     private final AgentMetricsService agentMetricsService;
+    private final RetrievalSizingService sizingService;
         
     /**
      * 从执行追踪和上下文中计算指标
@@ -56,6 +57,9 @@ public class MetricsService {
                     
         // 将本次执行指标汇总到按策略粒度的全局计数器，支持 A/B 分析
         agentMetricsService.recordStrategyExecutionMetrics(metrics);
+        
+        // 累计接受率，供下次检索预测候选数量
+        sizingService.record(context.getIntent(), metrics);
                     
         log.info("[Metrics] {}", metrics.getSummary());
                     
@@ -0,0 +1,204 @@
+package com.example.bilibilimusic.service;
+
+import com.example.bilibilimusic.context.UserIntent;
+import com.example.bilibilimusic.dto.ExecutionMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索数量自适应（根据历史接受率预测需要抓取的候选数）
+ *
+ * 学习：每次执行结束后，按三个粒度累计 (接受数, 判断数)，存入 Redis Hash：
+ * - 关键词集合 + 模式（最精确）
+ * - 归一化查询 + 模式
+ * - 模式（兜底）
+ *
+ * 预测：取样本量足够的最精确粒度，用 Wilson 下界估计接受率 p，
+ * 求最小的 N 使 N·p - z·sqrt(N·p·(1-p)) ≥ targetCount（正态近似下以较高概率达标）。
+ * 没有足够历史时返回 -1，由调用方沿用默认公式。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetrievalSizingService {
+
+    private static final String KEY_PREFIX = "agent:sizing:";
+    private static final String FIELD_ACCEPTED = "accepted";
+    private static final String FIELD_EVALUATED = "evaluated";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CacheService cacheService;
+
+    /**
+     * 是否启用自适应数量
+     */
+    @Value("${bilibili.sizing.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 使用某个粒度前至少需要的判断样本数
+     */
+    @Value("${bilibili.sizing.min-samples:20}")
+    private int minSamples;
+
+    /**
+     * 达标概率对应的 z 值（1.645 ≈ 95% 单侧）
+     */
+    @Value("${bilibili.sizing.z:1.645}")
+    private double z;
+
+    /**
+     * 预测数量上限
+     */
+    @Value("${bilibili.sizing.max-limit:150}")
+    private int maxLimit;
+
+    /**
+     * 历史统计保留天数
+     */
+    @Value("${bilibili.sizing.ttl-days:30}")
+    private long ttlDays;
+
+    /**
+     * 预测需要检索的候选数
+     *
+     * @return 预测数量；无足够历史或无目标数量时返回 -1
+     */
+    public int predictLimit(UserIntent intent) {
+        if (!enabled || intent == null || intent.getTargetCount() <= 0) {
+            return -1;
+        }
+        for (String key : keysFor(intent)) {
+            long[] stats = read(key);
+            if (stats[1] < minSamples) {
+                continue;
+            }
+            double p = wilsonLowerBound(stats[0], stats[1]);
+            int limit = requiredCandidates(intent.getTargetCount(), p);
+            log.info("[Sizing] 命中历史: key={}, accepted={}, evaluated={}, p_lower={}, target={} -> limit={}",
+                key, stats[0], stats[1], String.format("%.3f", p), intent.getTargetCount(), limit);
+            return limit;
+        }
+        return -1;
+    }
+
+    /**
+     * 记录一次执行的接受情况（在指标计算后调用）
+     */
+    public void record(UserIntent intent, ExecutionMetrics metrics) {
+        if (!enabled || intent == null || metrics == null) {
+            return;
+        }
+        Integer accepted = metrics.getTotalAccepted();
+        Integer evaluated = metrics.getTotalEvaluated();
+        if (accepted == null || evaluated == null || evaluated <= 0) {
+            return;
+        }
+        try {
+            for (String key : keysFor(intent)) {
+                stringRedisTemplate.opsForHash().increment(key, FIELD_ACCEPTED, accepted);
+                stringRedisTemplate.opsForHash().increment(key, FIELD_EVALUATED, evaluated);
+                stringRedisTemplate.expire(key, ttlDays, TimeUnit.DAYS);
+            }
+        } catch (Exception e) {
+            log.warn("[Sizing] 记录接受率失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从精确到粗略的统计 Key
+     */
+    private List<String> keysFor(UserIntent intent) {
+        String mode = normalizeMode(intent.getMode());
+        List<String> keys = new ArrayList<>(3);
+        if (intent.getKeywords() != null && !intent.getKeywords().isEmpty()) {
+            List<String> sorted = intent.getKeywords().stream()
+                .filter(k -> k != null && !k.isBlank())
+                .map(k -> k.trim().toLowerCase())
+                .distinct()
+                .sorted()
+                .toList();
+            if (!sorted.isEmpty()) {
+                keys.add(KEY_PREFIX + "kw:" + mode + ":" + cacheService.hashQuery(String.join(",", sorted)));
+            }
+        }
+        if (intent.getQuery() != null && !intent.getQuery().isBlank()) {
+            keys.add(KEY_PREFIX + "q:" + mode + ":" + cacheService.hashQuery(intent.getQuery()));
+        }
+        keys.add(KEY_PREFIX + "mode:" + mode);
+        return keys;
+    }
+
+    private String normalizeMode(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return "default";
+        }
+        return String.join("+", Arrays.stream(mode.toLowerCase().split("[,;|+]"))
+            .map(String::trim)
+            .filter(tag -> !tag.isEmpty())
+            .sorted()
+            .toList());
+    }
+
+    private long[] read(String key) {
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+            return new long[] {parseLong(entries.get(FIELD_ACCEPTED)), parseLong(entries.get(FIELD_EVALUATED))};
+        } catch (Exception e) {
+            log.warn("[Sizing] 读取接受率失败: key={}, {}", key, e.getMessage());
+            return new long[] {0, 0};
+        }
+    }
+
+    private long parseLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 接受率的 Wilson 置信下界
+     */
+    double wilsonLowerBound(long accepted, long evaluated) {
+        if (evaluated <= 0) {
+            return 0.0;
+        }
+        double n = evaluated;
+        double phat = Math.min(1.0, (double) accepted / n);
+        double z2 = z * z;
+        double center = phat + z2 / (2 * n);
+        double margin = z * Math.sqrt(phat * (1 - phat) / n + z2 / (4 * n * n));
+        return Math.max(0.0, (center - margin) / (1 + z2 / n));
+    }
+
+    /**
+     * 以接受率 p 抓取 N 个候选时，接受数以较高概率不少于 target 的最小 N
+     */
+    int requiredCandidates(int target, double p) {
+        if (p <= 0.0) {
+            return maxLimit;
+        }
+        for (int n = target; n < maxLimit; n++) {
+            double mean = n * p;
+            double sd = Math.sqrt(n * p * (1 - p));
+            if (mean - z * sd >= target) {
+                return n;
+            }
+        }
+        return maxLimit;
+    }
+}
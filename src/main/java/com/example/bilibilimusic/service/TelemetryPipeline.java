@@ -0,0 +1,331 @@
+package com.example.bilibilimusic.service;
+
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.entity.AgentBehaviorLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 状态图执行遥测的异步写入管道
+ *
+ * 执行线程只负责构造事件并入队（有界队列），单个后台写线程批量落库：
+ * - 行为日志：一批一条多行 INSERT
+ * - 节点执行计数：同一批内按节点合并后一次 Redis pipeline
+ * - 节点快照：Redisson RBatch 一次往返
+ *
+ * 背压：队列满时丢弃新事件并按类型计数，执行线程永不阻塞；
+ * 关闭时停止等待凑批，写完队列中剩余事件后退出（有上限）。
+ *
+ * 内存中的 AgentRuntimeMetrics 与快照序列化仍在执行线程完成：
+ * 前者是执行结束时计算指标的依据，后者必须在后续节点修改状态之前取值。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryPipeline {
+
+    private final AgentBehaviorLogService behaviorLogService;
+    private final AgentMetricsService metricsService;
+    private final ContextPersistenceService contextPersistenceService;
+
+    /**
+     * 是否异步写入（关闭后退回逐条同步写入）
+     */
+    @Value("${agent.telemetry.async:true}")
+    private boolean async;
+
+    /**
+     * 队列容量（事件数），满时丢弃新事件
+     */
+    @Value("${agent.telemetry.capacity:8192}")
+    private int capacity;
+
+    /**
+     * 单批最多写入的事件数
+     */
+    @Value("${agent.telemetry.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 凑批最长等待（毫秒），从一批的第一个事件到达开始计算
+     */
+    @Value("${agent.telemetry.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    /**
+     * 关闭时等待写完剩余事件的上限（毫秒）
+     */
+    @Value("${agent.telemetry.shutdown-timeout-ms:5000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<TelemetryEvent> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<String, LongAdder> dropped = Map.of(
+            "behaviorLog", new LongAdder(),
+            "nodeExecution", new LongAdder(),
+            "nodeSnapshot", new LongAdder());
+
+    @PostConstruct
+    public void init() {
+        if (!async) {
+            log.info("[Telemetry] 异步写入已关闭，遥测同步写入");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        running = true;
+        writer = new Thread(this::drainLoop, "telemetry-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("[Telemetry] capacity={}, batchSize={}, flushInterval={}ms", capacity, batchSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("[Telemetry] 关闭超时，放弃 {} 个未写入事件", queue.size());
+        }
+        log.info("[Telemetry] 已关闭: {}", getStats());
+    }
+
+    /**
+     * 记录节点进入
+     */
+    public void logNodeEnter(Long playlistId, Long conversationId, String nodeName) {
+        if (!async) {
+            behaviorLogService.logNodeEnter(playlistId, conversationId, nodeName);
+            return;
+        }
+        offer(new BehaviorRow(behaviorLogService.nodeEnterRow(playlistId, conversationId, nodeName)));
+    }
+
+    /**
+     * 记录节点退出
+     */
+    public void logNodeExit(Long playlistId, Long conversationId, String nodeName,
+                            long durationMs, boolean success, String errorMessage) {
+        if (!async) {
+            behaviorLogService.logNodeExit(playlistId, conversationId, nodeName, durationMs, success, errorMessage);
+            return;
+        }
+        offer(new BehaviorRow(behaviorLogService.nodeExitRow(
+                playlistId, conversationId, nodeName, durationMs, success, errorMessage)));
+    }
+
+    /**
+     * 记录边转移
+     */
+    public void logEdgeTransition(Long playlistId, Long conversationId, String edgeName,
+                                  String sourceNode, String targetNode) {
+        if (!async) {
+            behaviorLogService.logEdgeTransition(playlistId, conversationId, edgeName, sourceNode, targetNode);
+            return;
+        }
+        offer(new BehaviorRow(behaviorLogService.edgeTransitionRow(
+                playlistId, conversationId, edgeName, sourceNode, targetNode)));
+    }
+
+    /**
+     * 记录节点错误
+     */
+    public void logError(Long playlistId, Long conversationId, String nodeName,
+                         String errorMessage, String stackTrace) {
+        if (!async) {
+            behaviorLogService.logError(playlistId, conversationId, nodeName, errorMessage, stackTrace);
+            return;
+        }
+        offer(new BehaviorRow(behaviorLogService.errorRow(
+                playlistId, conversationId, nodeName, errorMessage, stackTrace)));
+    }
+
+    /**
+     * 记录节点执行（内存指标立即更新，Redis 计数器异步累加）
+     */
+    public void recordNodeExecution(Long playlistId, String nodeName, long durationMs) {
+        if (!async) {
+            metricsService.recordNodeExecution(playlistId, nodeName, durationMs);
+            return;
+        }
+        if (metricsService.recordNodeExecutionLocal(playlistId, nodeName, durationMs)) {
+            offer(new NodeExecution(nodeName, durationMs));
+        }
+    }
+
+    /**
+     * 保存节点快照（执行线程内序列化，写入异步）
+     */
+    public void saveNodeSnapshot(Long playlistId, String executionId, int step, PlaylistContext context) {
+        if (!async) {
+            contextPersistenceService.saveNodeSnapshot(playlistId, executionId, step, context);
+            return;
+        }
+        ContextPersistenceService.SerializedSnapshot snapshot =
+                contextPersistenceService.serializeNodeSnapshot(playlistId, executionId, step, context);
+        if (snapshot != null) {
+            offer(new NodeSnapshot(snapshot));
+        }
+    }
+
+    /**
+     * 非阻塞入队，队列满时丢弃并计数
+     */
+    private void offer(TelemetryEvent event) {
+        if (queue.offer(event)) {
+            enqueued.increment();
+            return;
+        }
+        LongAdder counter = dropped.get(event.type());
+        counter.increment();
+        long total = counter.sum();
+        // 持续丢弃时按指数间隔告警，避免日志本身成为负担
+        if (Long.bitCount(total) == 1) {
+            log.warn("[Telemetry] 队列已满，丢弃 {} 事件（累计 {}）", event.type(), total);
+        }
+    }
+
+    private void drainLoop() {
+        List<TelemetryEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TelemetryEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                failed.add(batch.size());
+                log.error("[Telemetry] 批量写入失败，丢弃 {} 个事件", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 凑批：已有积压时直接取走，否则在 flushInterval 内继续等待；关闭中不再等待
+     */
+    private void fillBatch(List<TelemetryEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            TelemetryEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 按类型分组写入，各类型之间互不影响
+     */
+    private void write(List<TelemetryEvent> batch) {
+        List<AgentBehaviorLog> rows = new ArrayList<>();
+        Map<String, long[]> nodeTotals = new LinkedHashMap<>();
+        List<ContextPersistenceService.SerializedSnapshot> snapshots = new ArrayList<>();
+        for (TelemetryEvent event : batch) {
+            if (event instanceof BehaviorRow row) {
+                rows.add(row.row());
+            } else if (event instanceof NodeExecution execution) {
+                long[] total = nodeTotals.computeIfAbsent(execution.nodeName(), k -> new long[2]);
+                total[0]++;
+                total[1] += execution.durationMs();
+            } else if (event instanceof NodeSnapshot snapshot) {
+                snapshots.add(snapshot.snapshot());
+            }
+        }
+        int nodeExecutions = batch.size() - rows.size() - snapshots.size();
+        writeGroup("behaviorLog", rows.size(), () -> behaviorLogService.saveBatch(rows));
+        writeGroup("nodeExecution", nodeExecutions, () -> metricsService.recordNodeExecutionTotals(nodeTotals));
+        writeGroup("nodeSnapshot", snapshots.size(), () -> contextPersistenceService.saveNodeSnapshots(snapshots));
+        batches.increment();
+    }
+
+    private void writeGroup(String type, int count, Runnable action) {
+        if (count == 0) {
+            return;
+        }
+        try {
+            action.run();
+            written.add(count);
+        } catch (Exception e) {
+            failed.add(count);
+            log.error("[Telemetry] 写入 {} 失败，丢弃 {} 个事件: {}", type, count, e.getMessage());
+        }
+    }
+
+    /**
+     * 管道统计快照
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("enqueued", enqueued.sum());
+        snapshot.put("written", written.sum());
+        snapshot.put("failed", failed.sum());
+        snapshot.put("batches", batches.sum());
+        snapshot.put("queued", queue != null ? (long) queue.size() : 0L);
+        dropped.forEach((type, counter) -> snapshot.put("dropped." + type, counter.sum()));
+        return snapshot;
+    }
+
+    private sealed interface TelemetryEvent permits BehaviorRow, NodeExecution, NodeSnapshot {
+        String type();
+    }
+
+    private record BehaviorRow(AgentBehaviorLog row) implements TelemetryEvent {
+        @Override
+        public String type() {
+            return "behaviorLog";
+        }
+    }
+
+    private record NodeExecution(String nodeName, long durationMs) implements TelemetryEvent {
+        @Override
+        public String type() {
+            return "nodeExecution";
+        }
+    }
+
+    private record NodeSnapshot(ContextPersistenceService.SerializedSnapshot snapshot) implements TelemetryEvent {
+        @Override
+        public String type() {
+            return "nodeSnapshot";
+        }
+    }
+}
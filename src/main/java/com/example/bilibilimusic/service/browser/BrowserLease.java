@@ -0,0 +1,64 @@
+package com.example.bilibilimusic.service.browser;
+
+import com.microsoft.playwright.BrowserContext;
+
+import java.util.function.Function;
+
+/**
+ * 浏览器租约
+ *
+ * 使用方式：
+ * <pre>
+ * try (BrowserLease lease = browserPool.lease()) {
+ *     String title = lease.execute(context -> {
+ *         Page page = context.newPage();
+ *         ...
+ *     });
+ * }
+ * </pre>
+ * 关闭租约即归还实例；租借期间打开的页面会在归还时统一关闭。
+ * Playwright 对象只能在实例的属主线程上使用，因此不直接暴露 Context，
+ * 所有操作经 {@link #execute} 在属主线程上执行，Page 等对象不要带出回调。
+ * 若使用过程中发现浏览器异常，调用 {@link #invalidate()}，归还时实例会被销毁而不是回到池中。
+ */
+public class BrowserLease implements AutoCloseable {
+
+    private final BrowserPool pool;
+    private final PooledBrowser browser;
+    private boolean released;
+
+    BrowserLease(BrowserPool pool, PooledBrowser browser) {
+        this.pool = pool;
+        this.browser = browser;
+    }
+
+    /**
+     * 在实例的属主线程上使用浏览器上下文（调用方阻塞等待结果）
+     */
+    public <T> T execute(Function<BrowserContext, T> action) {
+        return browser.call(() -> action.apply(browser.getContext()));
+    }
+
+    /**
+     * 标记实例损坏（归还时销毁）
+     */
+    public void invalidate() {
+        browser.markBroken();
+    }
+
+    /**
+     * 池化实例 ID（用于日志）
+     */
+    public long browserId() {
+        return browser.getId();
+    }
+
+    @Override
+    public void close() {
+        if (released) {
+            return;
+        }
+        released = true;
+        pool.release(browser);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.bilibilimusic.service.browser;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Playwright 浏览器池
+ *
+ * 职责：
+ * 1. 维护常驻（预热）的 Playwright/Browser 实例，避免每次搜索都冷启动 Chromium
+ * 2. 以租借/归还方式提供可复用的 BrowserContext
+ * 3. 健康检查（断连/损坏即销毁）、最大存活时间与最大使用次数回收
+ * 4. 池大小上限：同时存在的实例（空闲 + 租出）不超过 maxSize
+ * 5. 新实例的 Context 安装请求拦截（见 ResourceBlocker）
+ *
+ * 📌 Playwright 不是线程安全的：一个实例同一时刻只属于一个租借者，
+ *    且实例的创建与所有操作都在它自己的属主线程上执行（租借者经 BrowserLease.execute 提交）
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BrowserPool {
+
+    private final ResourceBlocker resourceBlocker;
+
+    /**
+     * 池中最多同时存在的浏览器实例数
+     */
+    @Value("${bilibili.browser-pool.max-size:4}")
+    private int maxSize;
+
+    /**
+     * 启动时预热的实例数
+     */
+    @Value("${bilibili.browser-pool.warm-up:1}")
+    private int warmUpSize;
+
+    /**
+     * 实例最大存活时间（分钟），超过后归还时回收
+     */
+    @Value("${bilibili.browser-pool.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    /**
+     * 实例最大租借次数，超过后回收（防止 Chromium 内存持续增长）
+     */
+    @Value("${bilibili.browser-pool.max-uses:200}")
+    private int maxUses;
+
+    /**
+     * 租借等待超时（毫秒）
+     */
+    @Value("${bilibili.browser-pool.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    /**
+     * 默认 headless 设置（与搜索页保持一致）
+     */
+    @Value("${bilibili.headless:true}")
+    private boolean defaultHeadless;
+
+    private final Object lock = new Object();
+    private final Deque<PooledBrowser> idle = new ArrayDeque<>();
+    private int leasedCount;
+    private Semaphore leasePermits;
+    private volatile boolean closed;
+
+    private final AtomicLong launchedTotal = new AtomicLong();
+    private final AtomicLong reusedTotal = new AtomicLong();
+    private final AtomicLong recycledTotal = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        maxSize = Math.max(1, maxSize);
+        leasePermits = new Semaphore(maxSize, true);
+        int warmUp = Math.min(Math.max(0, warmUpSize), maxSize);
+        if (warmUp > 0) {
+            Thread warmThread = new Thread(() -> warmUp(warmUp), "browser-pool-warmup");
+            warmThread.setDaemon(true);
+            warmThread.start();
+        }
+        log.info("[BrowserPool] 初始化完成: maxSize={}, warmUp={}, maxAge={}min, maxUses={}",
+                maxSize, warmUp, maxAgeMinutes, maxUses);
+    }
+
+    /**
+     * 预热：提前启动实例放入空闲队列
+     */
+    private void warmUp(int count) {
+        for (int i = 0; i < count && !closed; i++) {
+            try {
+                PooledBrowser browser = PooledBrowser.launch(defaultHeadless, resourceBlocker::install);
+                launchedTotal.incrementAndGet();
+                synchronized (lock) {
+                    if (!closed && idle.size() + leasedCount < maxSize) {
+                        idle.addLast(browser);
+                        browser = null;
+                    }
+                }
+                if (browser != null) {
+                    browser.destroy();
+                }
+            } catch (Exception e) {
+                log.warn("[BrowserPool] 预热浏览器失败（首次租借时再启动）: {}", e.getMessage());
+                return;
+            }
+        }
+        log.info("[BrowserPool] 预热完成: idle={}", idleCount());
+    }
+
+    /**
+     * 按默认 headless 设置租借实例
+     */
+    public BrowserLease lease() {
+        return lease(defaultHeadless);
+    }
+
+    /**
+     * 租借浏览器实例
+     *
+     * @param headless 是否需要 headless 实例
+     * @throws IllegalStateException 池已关闭或等待超时
+     */
+    public BrowserLease lease(boolean headless) {
+        if (closed) {
+            throw new IllegalStateException("浏览器池已关闭");
+        }
+        try {
+            if (!leasePermits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("浏览器池繁忙，等待超时: " + acquireTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待浏览器实例时被中断", e);
+        }
+
+        List<PooledBrowser> toDestroy = new ArrayList<>();
+        PooledBrowser reused = null;
+        while (true) {
+            PooledBrowser candidate = null;
+            synchronized (lock) {
+                Iterator<PooledBrowser> it = idle.iterator();
+                while (it.hasNext()) {
+                    PooledBrowser browser = it.next();
+                    if (isExpired(browser)) {
+                        it.remove();
+                        toDestroy.add(browser);
+                    } else if (candidate == null && browser.isHeadless() == headless) {
+                        it.remove();
+                        candidate = browser;
+                    }
+                }
+                // 没有匹配的空闲实例且容量已满：淘汰一个模式不匹配的空闲实例腾出位置
+                if (candidate == null && idle.size() + leasedCount >= maxSize && !idle.isEmpty()) {
+                    toDestroy.add(idle.pollLast());
+                }
+                leasedCount++;
+            }
+            if (candidate == null) {
+                break;
+            }
+            // 健康检查要切换到实例的属主线程（可能排在未结束的页面操作之后），在锁外执行
+            if (candidate.isHealthy()) {
+                reused = candidate;
+                break;
+            }
+            toDestroy.add(candidate);
+            synchronized (lock) {
+                leasedCount--;
+            }
+        }
+        toDestroy.forEach(this::recycle);
+
+        if (reused != null) {
+            reused.markUsed();
+            reusedTotal.incrementAndGet();
+            log.debug("[BrowserPool] 复用实例: id={}, uses={}", reused.getId(), reused.getUseCount());
+            return new BrowserLease(this, reused);
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            PooledBrowser launched = PooledBrowser.launch(headless, resourceBlocker::install);
+            launched.markUsed();
+            launchedTotal.incrementAndGet();
+            log.info("[BrowserPool] 启动新实例: id={}, headless={}, 耗时={}ms",
+                    launched.getId(), headless, System.currentTimeMillis() - start);
+            return new BrowserLease(this, launched);
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                leasedCount--;
+            }
+            leasePermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还实例（由 BrowserLease.close 调用）
+     */
+    void release(PooledBrowser browser) {
+        browser.resetPages();
+        boolean healthy = browser.isHealthy();
+        boolean keep;
+        synchronized (lock) {
+            leasedCount--;
+            keep = !closed && healthy && !isExpired(browser);
+            if (keep) {
+                // LIFO：最近使用的实例优先复用，冷实例自然老化回收
+                idle.addFirst(browser);
+            }
+        }
+        if (!keep) {
+            recycle(browser);
+        }
+        leasePermits.release();
+    }
+
+    private boolean isExpired(PooledBrowser browser) {
+        return browser.ageMillis() > TimeUnit.MINUTES.toMillis(maxAgeMinutes)
+                || browser.getUseCount() >= maxUses;
+    }
+
+    private void recycle(PooledBrowser browser) {
+        recycledTotal.incrementAndGet();
+        log.info("[BrowserPool] 回收实例: id={}, age={}s, uses={}, healthy={}",
+                browser.getId(), browser.ageMillis() / 1000, browser.getUseCount(), browser.isHealthy());
+        browser.destroy();
+    }
+
+    public int idleCount() {
+        synchronized (lock) {
+            return idle.size();
+        }
+    }
+
+    public int leasedCount() {
+        synchronized (lock) {
+            return leasedCount;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<PooledBrowser> remaining;
+        synchronized (lock) {
+            closed = true;
+            remaining = new ArrayList<>(idle);
+            idle.clear();
+        }
+        remaining.forEach(PooledBrowser::destroy);
+        log.info("[BrowserPool] 已关闭: launched={}, reused={}, recycled={}",
+                launchedTotal.get(), reusedTotal.get(), recycledTotal.get());
+    }
+}
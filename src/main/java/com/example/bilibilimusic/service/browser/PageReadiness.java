@@ -0,0 +1,135 @@
+package com.example.bilibilimusic.service.browser;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.WaitForSelectorState;
+import com.example.bilibilimusic.service.AgentMetricsService;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 页面就绪策略（替代固定 sleep）
+ *
+ * 策略：
+ * 1. 等待任一目标选择器出现（DOM attached 即可），命中后立即返回
+ * 2. 选择器全部未出现时，退化为等待 network idle
+ * 3. 整个等待过程受上限约束，超时后照常继续解析（调用方自行走备用选择器）
+ *
+ * 选择器等待只占总上限的 SELECTOR_SHARE，其余留给 network idle 回退。
+ *
+ * 按场景（search / detail ...）把实际等待时长、命中的选择器与回退次数写入 AgentMetricsService。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PageReadiness {
+
+    private final AgentMetricsService metricsService;
+
+    /**
+     * 选择器等待占总上限的比例（剩余时间用于 network idle 回退）
+     */
+    private static final double SELECTOR_SHARE = 0.7;
+
+    /**
+     * 等待页面就绪
+     *
+     * @param page      已导航的页面
+     * @param scene     统计场景名
+     * @param selectors 按优先级排列的就绪选择器
+     * @param maxWaitMs 总等待上限（毫秒）
+     */
+    public ReadinessResult await(Page page, String scene, List<String> selectors, long maxWaitMs) {
+        long start = System.currentTimeMillis();
+        ReadinessResult result = new ReadinessResult();
+        result.setScene(scene);
+
+        try {
+            // 任一选择器出现即就绪（CSS 选择器列表）
+            page.waitForSelector(String.join(", ", selectors), new Page.WaitForSelectorOptions()
+                    .setState(WaitForSelectorState.ATTACHED)
+                    .setTimeout(Math.max(1, (long) (maxWaitMs * SELECTOR_SHARE))));
+            result.setMatchedSelector(findMatched(page, selectors));
+            result.setReady(true);
+        } catch (TimeoutError e) {
+            long remaining = maxWaitMs - (System.currentTimeMillis() - start);
+            if (remaining > 0) {
+                result.setNetworkIdleFallback(true);
+                try {
+                    page.waitForLoadState(LoadState.NETWORKIDLE,
+                            new Page.WaitForLoadStateOptions().setTimeout(remaining));
+                    result.setReady(true);
+                } catch (TimeoutError ignored) {
+                    // 到达上限，按未就绪继续
+                }
+            }
+            // network idle 之后目标选择器可能已经出现
+            result.setMatchedSelector(findMatched(page, selectors));
+        }
+
+        result.setWaitedMs(System.currentTimeMillis() - start);
+        record(result);
+        log.debug("[Readiness] scene={}, matched={}, idleFallback={}, ready={}, waited={}ms",
+                scene, result.getMatchedSelector(), result.isNetworkIdleFallback(),
+                result.isReady(), result.getWaitedMs());
+        return result;
+    }
+
+    /**
+     * 可选等待：选择器在上限内出现则返回 true，不出现不视为失败
+     */
+    public boolean awaitOptional(Page page, String scene, String selector, long maxWaitMs) {
+        long start = System.currentTimeMillis();
+        boolean found;
+        try {
+            page.waitForSelector(selector, new Page.WaitForSelectorOptions()
+                    .setState(WaitForSelectorState.ATTACHED)
+                    .setTimeout(maxWaitMs));
+            found = true;
+        } catch (TimeoutError e) {
+            found = false;
+        }
+        ReadinessResult result = new ReadinessResult();
+        result.setScene(scene);
+        result.setReady(found);
+        result.setMatchedSelector(found ? selector : null);
+        result.setWaitedMs(System.currentTimeMillis() - start);
+        record(result);
+        return found;
+    }
+
+    private String findMatched(Page page, List<String> selectors) {
+        for (String selector : selectors) {
+            try {
+                if (page.querySelector(selector) != null) {
+                    return selector;
+                }
+            } catch (Exception ignored) {
+                // 页面可能已跳转
+            }
+        }
+        return null;
+    }
+
+    private void record(ReadinessResult result) {
+        metricsService.recordPageReadiness(result.getScene(), result.getWaitedMs(), result.getMatchedSelector(),
+                result.isNetworkIdleFallback(), result.isReady());
+    }
+
+    /**
+     * 单次就绪等待结果
+     */
+    @Data
+    public static class ReadinessResult {
+        private String scene;
+        private boolean ready;
+        private String matchedSelector;
+        private boolean networkIdleFallback;
+        private long waitedMs;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.bilibilimusic.service.browser;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 池化的浏览器实例
+ *
+ * 每个实例独占一个 Playwright + Chromium 进程 + 一个可复用的 BrowserContext。
+ * Playwright 对象不是线程安全的，且只能在创建它的线程上使用：
+ * 每个实例有自己的属主线程，创建、使用、清理、销毁全部在该线程上执行（见 call），
+ * 同时实例同一时刻只会被一个租借者持有。
+ */
+@Slf4j
+class PooledBrowser {
+
+    private static final AtomicLong ID_SEQ = new AtomicLong();
+
+    private final long id;
+    private final boolean headless;
+    private final long createdAt;
+    private final ExecutorService owner;
+    private final Thread ownerThread;
+    private final Playwright playwright;
+    private final Browser browser;
+    private final BrowserContext context;
+
+    private int useCount;
+    private volatile boolean broken;
+
+    private PooledBrowser(long id, boolean headless, ExecutorService owner,
+                          Playwright playwright, Browser browser, BrowserContext context) {
+        this.id = id;
+        this.headless = headless;
+        this.createdAt = System.currentTimeMillis();
+        this.owner = owner;
+        this.ownerThread = Thread.currentThread();
+        this.playwright = playwright;
+        this.browser = browser;
+        this.context = context;
+    }
+
+    /**
+     * 启动一个新的浏览器实例（冷启动，耗时秒级）
+     *
+     * @param contextInitializer 新建 Context 后的初始化（如安装请求拦截）
+     */
+    static PooledBrowser launch(boolean headless, Consumer<BrowserContext> contextInitializer) {
+        long id = ID_SEQ.incrementAndGet();
+        ExecutorService owner = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "browser-pool-" + id);
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            return await(owner.submit(() -> {
+                Playwright playwright = Playwright.create();
+                try {
+                    Browser browser = playwright.chromium().launch(
+                            new BrowserType.LaunchOptions()
+                                    .setHeadless(headless)
+                                    .setSlowMo(headless ? 0 : 100)  // 非 headless 模式时放慢操作，便于观察
+                    );
+                    BrowserContext context = browser.newContext();
+                    contextInitializer.accept(context);
+                    return new PooledBrowser(id, headless, owner, playwright, browser, context);
+                } catch (RuntimeException e) {
+                    playwright.close();
+                    throw e;
+                }
+            }));
+        } catch (RuntimeException e) {
+            owner.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * 在属主线程上执行（调用方阻塞等待结果；已在属主线程上时直接执行）
+     */
+    <T> T call(Callable<T> action) {
+        if (Thread.currentThread() == ownerThread) {
+            try {
+                return action.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return await(owner.submit(action));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 属主线程上的操作继续执行（受 Playwright 超时约束），归还时的清理排在它之后
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待浏览器线程时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    boolean isHeadless() {
+        return headless;
+    }
+
+    BrowserContext getContext() {
+        return context;
+    }
+
+    int getUseCount() {
+        return useCount;
+    }
+
+    void markUsed() {
+        useCount++;
+    }
+
+    void markBroken() {
+        broken = true;
+    }
+
+    long ageMillis() {
+        return System.currentTimeMillis() - createdAt;
+    }
+
+    /**
+     * 健康检查：进程仍连接且未被标记为损坏
+     */
+    boolean isHealthy() {
+        if (broken) {
+            return false;
+        }
+        try {
+            return call(browser::isConnected);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 归还前清理：关闭租借期间打开的所有页面，保留 Context（Cookie 等）以便复用
+     */
+    void resetPages() {
+        try {
+            call(() -> {
+                List<Page> pages = new ArrayList<>(context.pages());
+                for (Page page : pages) {
+                    try {
+                        page.close();
+                    } catch (Exception e) {
+                        log.debug("[BrowserPool] 关闭页面失败: {}", e.getMessage());
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.debug("[BrowserPool] 清理页面失败，标记实例损坏: id={}", id);
+            broken = true;
+        }
+    }
+
+    /**
+     * 销毁实例：关闭 Context、Browser 与 Playwright 驱动进程
+     */
+    void destroy() {
+        if (owner.isShutdown()) {
+            return;
+        }
+        owner.execute(() -> {
+            try {
+                context.close();
+            } catch (Exception ignored) {
+                // 浏览器可能已经断开
+            }
+            try {
+                browser.close();
+            } catch (Exception ignored) {
+                // 浏览器可能已经断开
+            }
+            try {
+                playwright.close();
+            } catch (Exception e) {
+                log.debug("[BrowserPool] 关闭 Playwright 失败: id={}, {}", id, e.getMessage());
+            }
+        });
+        // 关闭任务执行完后属主线程退出
+        owner.shutdown();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.bilibilimusic.service.browser;
+
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 抓取页面的请求拦截（屏蔽不需要的资源）
+ *
+ * 抓取只读取 meta 标签、标题和少量统计 span，图片 / 视频预览 / 字体 / 样式 / 广告统计脚本都用不到。
+ * 在池化的 BrowserContext 上安装一次 route，对所有页面生效：
+ * 1. URL 命中白名单 → 放行（优先级最高，用于页面渲染必需的脚本）
+ * 2. 资源类型命中屏蔽列表 → 中止
+ * 3. URL 命中屏蔽片段（广告 / 埋点）→ 中止
+ * 4. 其它 → 放行
+ *
+ * 被中止的请求不会下载，节省的字节数按资源类型的经验均值估算。
+ * 每个页面关闭时把该页放行 / 中止的请求数与估算节省字节写入 AgentMetricsService
+ * （Service Worker 等不属于页面的请求不计入）。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResourceBlocker {
+
+    /**
+     * 各资源类型单次请求的估算大小（字节），仅用于统计节省量
+     */
+    private static final Map<String, Long> ESTIMATED_BYTES = Map.of(
+            "image", 30_000L,
+            "media", 500_000L,
+            "font", 40_000L,
+            "stylesheet", 20_000L,
+            "script", 50_000L,
+            "xhr", 2_000L,
+            "fetch", 2_000L
+    );
+    private static final long DEFAULT_ESTIMATED_BYTES = 5_000L;
+
+    /**
+     * 是否启用请求拦截
+     */
+    @Value("${bilibili.resource-block.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 屏蔽的资源类型（Playwright resourceType）
+     */
+    @Value("${bilibili.resource-block.types:image,media,font,stylesheet}")
+    private List<String> blockedTypes;
+
+    /**
+     * 屏蔽的 URL 片段（包含即命中，广告 / 埋点等）
+     */
+    @Value("${bilibili.resource-block.url-patterns:data.bilibili.com,cm.bilibili.com,hm.baidu.com,google-analytics.com,googletagmanager.com,/x/web-show/,/bfs/seed/log/,/log/web}")
+    private List<String> blockedUrlPatterns;
+
+    /**
+     * 白名单 URL 片段（命中即放行，优先于屏蔽规则）
+     */
+    @Value("${bilibili.resource-block.allow-patterns:/bfs/static/jinkela/}")
+    private List<String> allowUrlPatterns;
+
+    private final AgentMetricsService metricsService;
+
+    private Set<String> blockedTypeSet;
+
+    private final Map<Page, PageBlockStats> pageStats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        blockedTypeSet = new HashSet<>();
+        blockedTypes.stream()
+                .map(type -> type.trim().toLowerCase(Locale.ROOT))
+                .filter(type -> !type.isEmpty())
+                .forEach(blockedTypeSet::add);
+        log.info("[ResourceBlock] enabled={}, types={}, urlPatterns={}, allowPatterns={}",
+                enabled, blockedTypeSet, blockedUrlPatterns, allowUrlPatterns);
+    }
+
+    /**
+     * 在浏览器上下文上安装拦截（每个池化实例启动时调用一次）
+     */
+    public void install(BrowserContext context) {
+        if (!enabled) {
+            return;
+        }
+        context.route("**/*", this::handle);
+    }
+
+    private void handle(Route route) {
+        Request request = route.request();
+        String url = request.url();
+        String type = request.resourceType();
+        String rule = matchBlockRule(url, type);
+
+        PageBlockStats stats = statsFor(request);
+        if (rule == null) {
+            if (stats != null) {
+                stats.allowed++;
+            }
+            route.resume();
+            return;
+        }
+
+        long estimated = ESTIMATED_BYTES.getOrDefault(type, DEFAULT_ESTIMATED_BYTES);
+        if (stats != null) {
+            stats.blocked++;
+            stats.bytesSaved += estimated;
+            stats.blockedByType.merge(type, 1L, Long::sum);
+        }
+        route.abort("blockedbyclient");
+    }
+
+    /**
+     * 判断请求是否应被屏蔽
+     *
+     * @return 命中的规则（"type:image" / "url:xxx"）；放行返回 null
+     */
+    String matchBlockRule(String url, String type) {
+        for (String allow : allowUrlPatterns) {
+            if (!allow.isBlank() && url.contains(allow.trim())) {
+                return null;
+            }
+        }
+        if (type != null && blockedTypeSet.contains(type)) {
+            return "type:" + type;
+        }
+        for (String pattern : blockedUrlPatterns) {
+            if (!pattern.isBlank() && url.contains(pattern.trim())) {
+                return "url:" + pattern.trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取请求所属页面的统计（首次出现时注册关闭回调）
+     *
+     * Service Worker 等不属于页面的请求返回 null。
+     */
+    private PageBlockStats statsFor(Request request) {
+        Page page;
+        try {
+            page = request.frame().page();
+        } catch (Exception e) {
+            return null;
+        }
+        if (page == null) {
+            return null;
+        }
+        return pageStats.computeIfAbsent(page, p -> {
+            p.onClose(this::onPageClosed);
+            return new PageBlockStats();
+        });
+    }
+
+    private void onPageClosed(Page page) {
+        PageBlockStats stats = pageStats.remove(page);
+        if (stats != null) {
+            log.debug("[ResourceBlock] 页面关闭: blocked={}, allowed={}, 节省约 {}KB",
+                    stats.blocked, stats.allowed, stats.bytesSaved / 1024);
+            metricsService.recordPageResourceBlock(stats.allowed, stats.blocked, stats.bytesSaved, stats.blockedByType);
+        }
+    }
+
+    /**
+     * 单页面拦截计数（route 回调与页面关闭都在持有该实例的线程上执行）
+     */
+    private static class PageBlockStats {
+        private long allowed;
+        private long blocked;
+        private long bytesSaved;
+        private final Map<String, Long> blockedByType = new HashMap<>();
+    }
+}
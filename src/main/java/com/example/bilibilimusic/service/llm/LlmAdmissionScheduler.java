@@ -0,0 +1,313 @@
+package com.example.bilibilimusic.service.llm;
+
+import com.example.bilibilimusic.service.AgentMetricsService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地 Ollama 调用准入调度（并发额度 + 优先级队列）
+ *
+ * 本地模型同时只能高效处理很少的请求，多出来的请求在 Ollama 内部排队只会让所有调用一起变慢。
+ * 这里在客户端限制同时在途的调用数，超出的请求按优先级排队：
+ * 关键词提取（用户在等） > 边界视频判断 > 歌单总结，同优先级先到先得。
+ *
+ * 排队过深或超过排队截止时间时直接拒绝（LlmOverloadedException），
+ * 调用方走各自的规则降级（applyRuleBasedFallback / buildFallbackSummary / 按拒绝处理）。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LlmAdmissionScheduler {
+
+    private final AgentMetricsService metricsService;
+
+    /**
+     * 是否启用准入调度
+     */
+    @Value("${ollama.admission.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同时在途的模型调用数
+     */
+    @Value("${ollama.admission.max-concurrent:2}")
+    private int maxConcurrent;
+
+    /**
+     * 各优先级可入队时的队列深度上限（低优先级更早被拒绝）
+     */
+    @Value("${ollama.admission.max-queue.interactive:32}")
+    private int maxQueueInteractive;
+
+    @Value("${ollama.admission.max-queue.judgement:16}")
+    private int maxQueueJudgement;
+
+    @Value("${ollama.admission.max-queue.summary:4}")
+    private int maxQueueSummary;
+
+    /**
+     * 各优先级最长排队时间（毫秒），超时拒绝
+     */
+    @Value("${ollama.admission.queue-timeout-ms.interactive:3000}")
+    private long queueTimeoutInteractiveMs;
+
+    @Value("${ollama.admission.queue-timeout-ms.judgement:5000}")
+    private long queueTimeoutJudgementMs;
+
+    @Value("${ollama.admission.queue-timeout-ms.summary:15000}")
+    private long queueTimeoutSummaryMs;
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparing((Ticket t) -> t.priority).thenComparingLong(t -> t.seq));
+    private int inFlight;
+    private long seq;
+    private int maxQueueDepthSeen;
+
+    private final Map<LlmPriority, PriorityStats> stats = new EnumMap<>(LlmPriority.class);
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void init() {
+        for (LlmPriority priority : LlmPriority.values()) {
+            stats.put(priority, new PriorityStats());
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "llm-admission-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[Admission] enabled={}, maxConcurrent={}, maxQueue={}/{}/{}, queueTimeout={}/{}/{}ms",
+                enabled, maxConcurrent, maxQueueInteractive, maxQueueJudgement, maxQueueSummary,
+                queueTimeoutInteractiveMs, queueTimeoutJudgementMs, queueTimeoutSummaryMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 申请一个调用额度
+     *
+     * 有空闲额度且无人排队时立即获得；否则按优先级排队，
+     * 队列过深或排队超时以 LlmOverloadedException 结束。取消订阅会退出队列；
+     * 取消与交出额度同时发生时，未被消费的 Permit 自动归还。
+     * 拿到的 Permit 必须在调用结束时 release（重复 release 无副作用）。
+     */
+    public Mono<Permit> acquire(LlmPriority priority, String purpose) {
+        if (!enabled) {
+            return Mono.just(new Permit(null));
+        }
+        return Mono.<Permit>create(sink -> {
+            PriorityStats priorityStats = stats.get(priority);
+            Ticket ticket = null;
+            boolean granted = false;
+            int depth;
+            synchronized (lock) {
+                depth = queue.size();
+                if (inFlight < maxConcurrent && depth == 0) {
+                    inFlight++;
+                    granted = true;
+                } else if (depth < maxQueue(priority)) {
+                    ticket = new Ticket(priority, seq++, purpose, sink);
+                    queue.add(ticket);
+                    maxQueueDepthSeen = Math.max(maxQueueDepthSeen, queue.size());
+                }
+            }
+            if (granted) {
+                priorityStats.admitted.increment();
+                sink.success(new Permit(this));
+                return;
+            }
+            if (ticket == null) {
+                priorityStats.shed.increment();
+                metricsService.recordLlmShed(priority.name().toLowerCase(), "queue_full");
+                log.warn("[Admission] 队列过深，拒绝 {}: priority={}, depth={}", purpose, priority, depth);
+                sink.error(new LlmOverloadedException("LLM 队列过深: " + purpose));
+                return;
+            }
+            Ticket queued = ticket;
+            ScheduledFuture<?> expiry = timer.schedule(() -> expire(queued),
+                    queueTimeout(priority), TimeUnit.MILLISECONDS);
+            sink.onCancel(() -> {
+                expiry.cancel(false);
+                if (queued.settled.compareAndSet(false, true)) {
+                    synchronized (lock) {
+                        queue.remove(queued);
+                    }
+                }
+            });
+        })
+        // 额度已交出（立即获得或由 release 转交）但订阅者同时取消时，sink 会丢弃该 Permit：
+        // 在丢弃回调中归还，否则 onCancel 看到 settled 已被置位而不处理，额度永久泄漏
+        .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    private void expire(Ticket ticket) {
+        if (!ticket.settled.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (lock) {
+            queue.remove(ticket);
+        }
+        PriorityStats priorityStats = stats.get(ticket.priority);
+        priorityStats.shed.increment();
+        priorityStats.recordWait(ticket.waitedMs());
+        metricsService.recordLlmShed(ticket.priority.name().toLowerCase(), "queue_timeout");
+        log.warn("[Admission] 排队超时，拒绝 {}: priority={}, waited={}ms",
+                ticket.purpose, ticket.priority, ticket.waitedMs());
+        ticket.sink.error(new LlmOverloadedException("LLM 排队超时: " + ticket.purpose));
+    }
+
+    /**
+     * 归还额度：直接转交给队首（最高优先级、最早到达）的请求
+     */
+    private void release() {
+        Ticket next = null;
+        synchronized (lock) {
+            while (!queue.isEmpty()) {
+                Ticket candidate = queue.poll();
+                if (candidate.settled.compareAndSet(false, true)) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            long waited = next.waitedMs();
+            PriorityStats priorityStats = stats.get(next.priority);
+            priorityStats.admitted.increment();
+            priorityStats.recordWait(waited);
+            // release 可能发生在 Netty 事件循环线程上，Redis 计数交给定时线程写
+            String priorityName = next.priority.name().toLowerCase();
+            timer.execute(() -> metricsService.recordLlmQueueWait(priorityName, waited));
+            log.debug("[Admission] {} 排队 {}ms 后获得额度", next.purpose, waited);
+            next.sink.success(new Permit(this));
+        }
+    }
+
+    private int maxQueue(LlmPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> maxQueueInteractive;
+            case JUDGEMENT -> maxQueueJudgement;
+            case SUMMARY -> maxQueueSummary;
+        };
+    }
+
+    private long queueTimeout(LlmPriority priority) {
+        return switch (priority) {
+            case INTERACTIVE -> queueTimeoutInteractiveMs;
+            case JUDGEMENT -> queueTimeoutJudgementMs;
+            case SUMMARY -> queueTimeoutSummaryMs;
+        };
+    }
+
+    /**
+     * 当前队列深度
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * 调度统计快照（在途数、队列深度、各优先级准入 / 拒绝 / 排队时间）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        synchronized (lock) {
+            snapshot.put("inFlight", inFlight);
+            snapshot.put("queueDepth", queue.size());
+            snapshot.put("maxQueueDepth", maxQueueDepthSeen);
+        }
+        stats.forEach((priority, priorityStats) -> {
+            Map<String, Long> item = new LinkedHashMap<>();
+            long waits = priorityStats.waits.sum();
+            item.put("admitted", priorityStats.admitted.sum());
+            item.put("shed", priorityStats.shed.sum());
+            item.put("queued", waits);
+            item.put("avgWaitMs", waits > 0 ? priorityStats.totalWaitMs.sum() / waits : 0L);
+            item.put("maxWaitMs", priorityStats.maxWaitMs);
+            snapshot.put(priority.name().toLowerCase(), item);
+        });
+        return snapshot;
+    }
+
+    /**
+     * 调用额度，调用结束（成功 / 失败 / 取消）时归还
+     */
+    public static final class Permit {
+        private final LlmAdmissionScheduler owner;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LlmAdmissionScheduler owner) {
+            this.owner = owner;
+        }
+
+        public void release() {
+            if (owner != null && released.compareAndSet(false, true)) {
+                owner.release();
+            }
+        }
+    }
+
+    private static final class Ticket {
+        private final LlmPriority priority;
+        private final long seq;
+        private final String purpose;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt = System.nanoTime();
+        /** 已被授予额度 / 已超时 / 已取消，三者只能发生其一 */
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Ticket(LlmPriority priority, long seq, String purpose, MonoSink<Permit> sink) {
+            this.priority = priority;
+            this.seq = seq;
+            this.purpose = purpose;
+            this.sink = sink;
+        }
+
+        private long waitedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt);
+        }
+    }
+
+    private static class PriorityStats {
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LongAdder waits = new LongAdder();
+        private final LongAdder totalWaitMs = new LongAdder();
+        private volatile long maxWaitMs;
+
+        private void recordWait(long waitedMs) {
+            waits.increment();
+            totalWaitMs.add(waitedMs);
+            if (waitedMs > maxWaitMs) {
+                maxWaitMs = waitedMs;
+            }
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.bilibilimusic.service.llm;
+
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 共享的 Ollama 对话客户端
+ *
+ * - 基于 ollamaWebClient（独立连接池，见 OllamaConfig）
+ * - 每次调用有截止时间（含重试），到期取消底层请求并抛出 LlmException
+ * - 连接失败 / 5xx / 429 按指数退避 + 抖动重试；超时不重试（模型卡住时重试只会继续排队）
+ * - 实际请求前经 LlmAdmissionScheduler 申请并发额度，排队过深 / 排队超时抛出 LlmOverloadedException；
+ *   缓存命中不占额度，截止时间从获得额度后开始计算
+ * - Mono API 供响应式调用方组合；call() 为阻塞门面，供同步执行的 Skill 使用
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LlmClient {
+
+    private final WebClient ollamaWebClient;
+    private final LlmResponseCache responseCache;
+    private final LlmAdmissionScheduler admissionScheduler;
+    private final AgentMetricsService metricsService;
+
+    @Value("${ollama.model}")
+    private String defaultModel;
+
+    /**
+     * 默认截止时间（毫秒，含重试）
+     */
+    @Value("${ollama.call.timeout-ms:30000}")
+    private long defaultTimeoutMs;
+
+    /**
+     * 默认最大重试次数
+     */
+    @Value("${ollama.call.max-retries:2}")
+    private int defaultMaxRetries;
+
+    /**
+     * 首次重试退避（毫秒），之后指数增长并叠加抖动
+     */
+    @Value("${ollama.call.retry-backoff-ms:300}")
+    private long retryBackoffMs;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+
+    /**
+     * 写 Prompt 成本指标的线程（完成回调可能在 Netty 事件循环线程上，Redis 写入不放在那里）
+     */
+    private ExecutorService metricsWriter;
+
+    @PostConstruct
+    public void init() {
+        metricsWriter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "llm-metrics-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        metricsWriter.shutdown();
+    }
+
+    /**
+     * 非流式对话（响应式）
+     *
+     * 可缓存的 Prompt 类型先查 LlmResponseCache，未命中才调用模型并回写缓存。
+     * 取消订阅会取消进行中的 HTTP 请求。
+     */
+    public Mono<LlmResponse> chat(LlmRequest request) {
+        if (!responseCache.isCacheable(request)) {
+            return invoke(request);
+        }
+        String model = request.getModel() != null ? request.getModel() : defaultModel;
+        String key = responseCache.keyFor(request, model);
+        return Mono.defer(() -> {
+            LlmResponse cached = responseCache.get(key, request.getPromptName());
+            if (cached != null) {
+                log.debug("[LLM] {} 命中响应缓存", request.getPurpose());
+                return Mono.just(cached);
+            }
+            return invoke(request).doOnNext(resp -> responseCache.put(key, request.getPromptName(), resp));
+        });
+    }
+
+    private Mono<LlmResponse> invoke(LlmRequest request) {
+        Duration timeout = request.getTimeout() != null ? request.getTimeout() : Duration.ofMillis(defaultTimeoutMs);
+        int maxRetries = request.getMaxRetries() != null ? request.getMaxRetries() : defaultMaxRetries;
+        String model = request.getModel() != null ? request.getModel() : defaultModel;
+        Map<String, Object> payload = buildPayload(request, model);
+        AtomicInteger attempts = new AtomicInteger();
+
+        return admissionScheduler.acquire(priorityOf(request), request.getPurpose())
+                .flatMap(permit -> Mono.defer(() -> {
+                    long start = System.currentTimeMillis();
+                    calls.increment();
+                    return Mono.defer(() -> {
+                                attempts.incrementAndGet();
+                                return ollamaWebClient.post()
+                                        .uri("/api/chat")
+                                        .bodyValue(payload)
+                                        .retrieve()
+                                        .bodyToMono(ChatResponse.class);
+                            })
+                            .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(retryBackoffMs))
+                                    .jitter(0.5)
+                                    .filter(this::isRetryable)
+                                    .doBeforeRetry(signal -> {
+                                        retries.increment();
+                                        log.warn("[LLM] {} 第 {} 次重试: {}", request.getPurpose(),
+                                                signal.totalRetries() + 1, signal.failure().getMessage());
+                                    })
+                                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                            .timeout(timeout)
+                            .map(resp -> toResponse(resp, model, start, attempts.get()));
+                }).doFinally(signal -> permit.release()))
+                .doOnNext(resp -> {
+                    if (resp.getPromptTokens() != null) {
+                        promptTokens.add(resp.getPromptTokens());
+                    }
+                    if (resp.getCompletionTokens() != null) {
+                        completionTokens.add(resp.getCompletionTokens());
+                    }
+                    recordPromptCost(request.getPurpose(), resp);
+                    log.debug("[LLM] {} 完成: {}ms, attempts={}, tokens={}/{}", request.getPurpose(),
+                            resp.getDurationMs(), resp.getAttempts(), resp.getPromptTokens(), resp.getCompletionTokens());
+                })
+                .onErrorMap(e -> !(e instanceof LlmException), e -> translate(e, request.getPurpose(), timeout));
+    }
+
+    /**
+     * 流式对话：stream=true，逐行解析 NDJSON，每个分片推送增量文本
+     *
+     * 截止时间分两段：首个分片需在 firstChunkTimeout 内到达，之后相邻分片间隔不超过 idleTimeout。
+     * 已经输出内容后不能透明重试，因此流式调用不重试；取消订阅会断开连接、停止生成。
+     */
+    public Flux<LlmResponse> stream(LlmRequest request, Duration firstChunkTimeout, Duration idleTimeout) {
+        String model = request.getModel() != null ? request.getModel() : defaultModel;
+        Map<String, Object> payload = buildPayload(request, model);
+        payload.put("stream", true);
+
+        return admissionScheduler.acquire(priorityOf(request), request.getPurpose())
+                .flatMapMany(permit -> Flux.defer(() -> {
+                    long start = System.currentTimeMillis();
+                    calls.increment();
+                    return ollamaWebClient.post()
+                            .uri("/api/chat")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .bodyValue(payload)
+                            .retrieve()
+                            .bodyToFlux(ChatResponse.class)
+                            .timeout(Mono.delay(firstChunkTimeout), chunk -> Mono.delay(idleTimeout))
+                            .map(chunk -> toChunk(chunk, model, start));
+                }).doFinally(signal -> permit.release()))
+                .doOnNext(chunk -> {
+                    if (chunk.isDone()) {
+                        if (chunk.getPromptTokens() != null) {
+                            promptTokens.add(chunk.getPromptTokens());
+                        }
+                        if (chunk.getCompletionTokens() != null) {
+                            completionTokens.add(chunk.getCompletionTokens());
+                        }
+                        recordPromptCost(request.getPurpose(), chunk);
+                    }
+                })
+                .onErrorMap(e -> !(e instanceof LlmException), e -> translate(e, request.getPurpose(), firstChunkTimeout));
+    }
+
+    private LlmPriority priorityOf(LlmRequest request) {
+        return request.getPriority() != null ? request.getPriority() : LlmPriority.forPurpose(request.getPurpose());
+    }
+
+    private LlmResponse toChunk(ChatResponse chunk, String model, long start) {
+        boolean done = Boolean.TRUE.equals(chunk.getDone());
+        String delta = chunk.getMessage() != null && chunk.getMessage().getContent() != null
+                ? chunk.getMessage().getContent() : "";
+        return LlmResponse.builder()
+                .content(delta)
+                .model(chunk.getModel() != null ? chunk.getModel() : model)
+                .promptTokens(done ? chunk.getPromptEvalCount() : null)
+                .completionTokens(done ? chunk.getEvalCount() : null)
+                .promptEvalMs(done ? nanosToMillis(chunk.getPromptEvalDuration()) : null)
+                .durationMs(System.currentTimeMillis() - start)
+                .attempts(1)
+                .done(done)
+                .build();
+    }
+
+    /**
+     * 剔除请求对应的缓存响应（调用方发现缓存内容无效时使用）
+     */
+    public void evict(LlmRequest request) {
+        if (responseCache.isCacheable(request)) {
+            String model = request.getModel() != null ? request.getModel() : defaultModel;
+            responseCache.evict(responseCache.keyFor(request, model));
+        }
+    }
+
+    /**
+     * 非流式对话（阻塞门面）
+     *
+     * @throws LlmException 超时、重试耗尽或响应为空
+     */
+    public LlmResponse call(LlmRequest request) {
+        return chat(request).block();
+    }
+
+    /**
+     * 阻塞调用，只取回复文本（purpose 同时作为 Prompt 名称参与缓存）
+     */
+    public String complete(String purpose, String systemPrompt, String userPrompt, Duration timeout) {
+        return call(LlmRequest.builder()
+                .purpose(purpose)
+                .promptName(purpose)
+                .systemPrompt(systemPrompt)
+                .userPrompt(userPrompt)
+                .timeout(timeout)
+                .build())
+                .getContent();
+    }
+
+    private Map<String, Object> buildPayload(LlmRequest request, String model) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("model", model);
+        payload.put("stream", false);
+        List<Map<String, Object>> messages = new ArrayList<>(2);
+        if (request.getSystemPrompt() != null) {
+            messages.add(Map.of("role", "system", "content", request.getSystemPrompt()));
+        }
+        messages.add(Map.of("role", "user", "content", request.getUserPrompt() != null ? request.getUserPrompt() : ""));
+        payload.put("messages", messages);
+        if (request.getOptions() != null && !request.getOptions().isEmpty()) {
+            payload.put("options", request.getOptions());
+        }
+        if (request.getFormat() != null) {
+            payload.put("format", request.getFormat());
+        }
+        return payload;
+    }
+
+    private LlmResponse toResponse(ChatResponse resp, String model, long start, int attempts) {
+        if (resp == null || resp.getMessage() == null || resp.getMessage().getContent() == null) {
+            failures.increment();
+            throw new LlmException("Ollama 返回空消息", false, null);
+        }
+        return LlmResponse.builder()
+                .content(resp.getMessage().getContent())
+                .model(resp.getModel() != null ? resp.getModel() : model)
+                .promptTokens(resp.getPromptEvalCount())
+                .completionTokens(resp.getEvalCount())
+                .promptEvalMs(nanosToMillis(resp.getPromptEvalDuration()))
+                .durationMs(System.currentTimeMillis() - start)
+                .attempts(attempts)
+                .build();
+    }
+
+    private Long nanosToMillis(Long nanos) {
+        return nanos != null ? nanos / 1_000_000 : null;
+    }
+
+    /**
+     * 按用途累计输入 token 与 prefill / 总耗时（AgentMetricsService），用于观察 Prompt 大小对延迟的影响
+     */
+    private void recordPromptCost(String purpose, LlmResponse response) {
+        if (purpose == null || response.getPromptTokens() == null) {
+            return;
+        }
+        long tokens = response.getPromptTokens();
+        Long prefillMs = response.getPromptEvalMs();
+        long durationMs = response.getDurationMs();
+        try {
+            metricsWriter.execute(() -> metricsService.recordLlmPromptCost(purpose, tokens, prefillMs, durationMs));
+        } catch (RejectedExecutionException e) {
+            log.debug("[LLM] 指标线程已关闭，跳过 Prompt 成本记录: {}", purpose);
+        }
+        log.debug("[LLM] {} prompt tokens={}, prefill={}ms, total={}ms", purpose,
+                response.getPromptTokens(), response.getPromptEvalMs(), response.getDurationMs());
+    }
+
+    private boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientRequestException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    private LlmException translate(Throwable e, String purpose, Duration timeout) {
+        failures.increment();
+        if (e instanceof TimeoutException) {
+            timeouts.increment();
+            log.warn("[LLM] {} 超过截止时间 {}ms，已取消", purpose, timeout.toMillis());
+            return new LlmException("LLM 调用超时: " + purpose, true, e);
+        }
+        log.warn("[LLM] {} 调用失败: {}", purpose, e.getMessage());
+        return new LlmException("LLM 调用失败: " + purpose + " - " + e.getMessage(), false, e);
+    }
+
+    /**
+     * 调用统计快照
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("calls", calls.sum());
+        snapshot.put("failures", failures.sum());
+        snapshot.put("timeouts", timeouts.sum());
+        snapshot.put("retries", retries.sum());
+        snapshot.put("promptTokens", promptTokens.sum());
+        snapshot.put("completionTokens", completionTokens.sum());
+        return snapshot;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class ChatResponse {
+        private String model;
+        private ChatMessage message;
+        private Boolean done;
+        @JsonProperty("prompt_eval_count")
+        private Integer promptEvalCount;
+        @JsonProperty("eval_count")
+        private Integer evalCount;
+        @JsonProperty("prompt_eval_duration")
+        private Long promptEvalDuration;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class ChatMessage {
+        private String role;
+        private String content;
+    }
+}
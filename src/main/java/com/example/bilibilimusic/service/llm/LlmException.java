@@ -0,0 +1,21 @@
+package com.example.bilibilimusic.service.llm;
+
+/**
+ * LLM 调用失败（超时 / 连接失败 / 服务端错误 / 空响应）
+ */
+public class LlmException extends RuntimeException {
+
+    private final boolean timeout;
+
+    public LlmException(String message, boolean timeout, Throwable cause) {
+        super(message, cause);
+        this.timeout = timeout;
+    }
+
+    /**
+     * 是否因截止时间到达而失败
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+}
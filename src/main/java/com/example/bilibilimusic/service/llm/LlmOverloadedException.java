@@ -0,0 +1,11 @@
+package com.example.bilibilimusic.service.llm;
+
+/**
+ * 模型繁忙被准入调度拒绝（排队过深或排队超时），调用方应走规则降级
+ */
+public class LlmOverloadedException extends LlmException {
+
+    public LlmOverloadedException(String message) {
+        super(message, false, null);
+    }
+}
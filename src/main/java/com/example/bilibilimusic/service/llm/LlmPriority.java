@@ -0,0 +1,27 @@
+package com.example.bilibilimusic.service.llm;
+
+/**
+ * LLM 调用优先级（数值越小越先获得模型并发额度）
+ */
+public enum LlmPriority {
+    /** 用户正在等待的交互式调用（关键词提取） */
+    INTERACTIVE,
+    /** 边界视频相关性判断 */
+    JUDGEMENT,
+    /** 歌单总结等生成类调用 */
+    SUMMARY;
+
+    /**
+     * 按调用用途推断优先级
+     */
+    public static LlmPriority forPurpose(String purpose) {
+        if (purpose == null) {
+            return JUDGEMENT;
+        }
+        return switch (purpose) {
+            case "keyword_extraction" -> INTERACTIVE;
+            case "summary", "playlist_summary", "summary_chunk" -> SUMMARY;
+            default -> JUDGEMENT;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bilibilimusic.service.llm;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 一次 LLM 对话调用
+ */
+@Data
+@Builder(toBuilder = true)
+public class LlmRequest {
+
+    /**
+     * 调用用途（keyword_extraction / judgement / summary ...），用于日志与指标
+     */
+    private String purpose;
+
+    /**
+     * Prompt 名称（对应 PromptVersionService 的节点名），非空且配置了 TTL 时走响应缓存
+     */
+    private String promptName;
+
+    /**
+     * 模型名，为空时使用 ollama.model
+     */
+    private String model;
+
+    private String systemPrompt;
+
+    private String userPrompt;
+
+    /**
+     * Ollama options（temperature / num_predict 等），可为空
+     */
+    private Map<String, Object> options;
+
+    /**
+     * Ollama format：JSON Schema（Map）或 "json"，为空时不约束输出格式
+     */
+    private Object format;
+
+    /**
+     * 截止时间（含重试），为空时使用 ollama.call.timeout-ms
+     */
+    private Duration timeout;
+
+    /**
+     * 最大重试次数，为空时使用 ollama.call.max-retries
+     */
+    private Integer maxRetries;
+
+    /**
+     * 准入优先级，为空时按 purpose 推断（见 LlmPriority.forPurpose）
+     */
+    private LlmPriority priority;
+}
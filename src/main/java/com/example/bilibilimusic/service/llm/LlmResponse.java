@@ -0,0 +1,53 @@
+package com.example.bilibilimusic.service.llm;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * LLM 调用结果（含 Ollama 返回的 token 统计）
+ *
+ * 流式调用时每个元素的 content 为增量文本。
+ */
+@Data
+@Builder
+public class LlmResponse {
+
+    private String content;
+
+    private String model;
+
+    /**
+     * 输入 token 数（prompt_eval_count）
+     */
+    private Integer promptTokens;
+
+    /**
+     * 输出 token 数（eval_count）
+     */
+    private Integer completionTokens;
+
+    /**
+     * 模型处理输入（prefill）耗时（prompt_eval_duration），缓存命中时为空
+     */
+    private Long promptEvalMs;
+
+    /**
+     * 端到端耗时（含重试）
+     */
+    private long durationMs;
+
+    /**
+     * 实际发起的请求次数
+     */
+    private int attempts;
+
+    /**
+     * 流式调用中是否为最后一个分片（最后一个分片携带 token 统计与总耗时）
+     */
+    private boolean done;
+
+    /**
+     * 是否来自响应缓存（未实际调用模型）
+     */
+    private boolean cached;
+}
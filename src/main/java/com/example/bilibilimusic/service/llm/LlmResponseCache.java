@@ -0,0 +1,251 @@
+package com.example.bilibilimusic.service.llm;
+
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.example.bilibilimusic.service.PromptVersionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM 响应缓存（Caffeine 本地 → Redis）
+ *
+ * Key = 模型 + Prompt 名称 + Prompt 版本（PromptVersionService）+ 规范化消息（含 options / format）摘要，
+ * 切换 Prompt 版本或修改 Prompt 文本都会自然失效。
+ *
+ * 只缓存配置了 TTL 的 Prompt 类型（关键词提取、相关性判断），总结等生成类调用不缓存。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LlmResponseCache {
+
+    private static final String KEY_PREFIX = "llm:resp:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PromptVersionService promptVersionService;
+    private final AgentMetricsService metricsService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 是否启用 LLM 响应缓存
+     */
+    @Value("${ollama.cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 本地缓存条目上限
+     */
+    @Value("${ollama.cache.local-size:5000}")
+    private long localSize;
+
+    /**
+     * 本地缓存最长保留时间（分钟），实际过期取与类型 TTL 的较小值
+     */
+    @Value("${ollama.cache.local-ttl-minutes:10}")
+    private long localTtlMinutes;
+
+    /**
+     * 关键词提取结果 TTL（分钟）
+     */
+    @Value("${ollama.cache.keyword-extraction-ttl-minutes:1440}")
+    private long keywordTtlMinutes;
+
+    /**
+     * 相关性判断结果 TTL（分钟）
+     */
+    @Value("${ollama.cache.relevance-decision-ttl-minutes:720}")
+    private long judgementTtlMinutes;
+
+    private Cache<String, CachedResponse> local;
+
+    private final Map<String, PromptStats> stats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(localTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        log.info("[LlmCache] enabled={}, localSize={}, ttl: keyword={}min, judgement={}min",
+                enabled, localSize, keywordTtlMinutes, judgementTtlMinutes);
+    }
+
+    /**
+     * 请求是否可缓存（有 Prompt 名称且该类型配置了 TTL）
+     */
+    public boolean isCacheable(LlmRequest request) {
+        return enabled && request.getPromptName() != null && ttlMinutes(request.getPromptName()) > 0;
+    }
+
+    /**
+     * 缓存 Key
+     */
+    public String keyFor(LlmRequest request, String model) {
+        String promptName = request.getPromptName();
+        return KEY_PREFIX + model + ":" + promptName + ":"
+                + promptVersionService.getCurrentVersion(promptName) + ":" + fingerprint(request);
+    }
+
+    /**
+     * 查询缓存（本地 → Redis，Redis 命中回填本地）
+     */
+    public LlmResponse get(String key, String promptName) {
+        long now = System.currentTimeMillis();
+        CachedResponse cached = local.getIfPresent(key);
+        if (cached != null && cached.getExpiresAt() > now) {
+            record(promptName, "local");
+            return cached.toResponse();
+        }
+        try {
+            String json = stringRedisTemplate.opsForValue().get(key);
+            if (json != null) {
+                cached = objectMapper.readValue(json, CachedResponse.class);
+                local.put(key, cached);
+                record(promptName, "redis");
+                return cached.toResponse();
+            }
+        } catch (Exception e) {
+            log.warn("[LlmCache] 读取 Redis 缓存失败: {}", e.getMessage());
+        }
+        record(promptName, "miss");
+        return null;
+    }
+
+    /**
+     * 写入两级缓存
+     */
+    public void put(String key, String promptName, LlmResponse response) {
+        if (response == null || response.getContent() == null || response.getContent().isBlank()) {
+            return;
+        }
+        long ttl = ttlMinutes(promptName);
+        CachedResponse cached = new CachedResponse(response.getContent(), response.getModel(),
+                response.getPromptTokens(), response.getCompletionTokens(),
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttl));
+        local.put(key, cached);
+        try {
+            stringRedisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(cached), ttl, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("[LlmCache] 写入 Redis 缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 剔除两级缓存中的条目
+     */
+    public void evict(String key) {
+        local.invalidate(key);
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("[LlmCache] 删除 Redis 缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private long ttlMinutes(String promptName) {
+        return switch (promptName) {
+            case "keyword_extraction" -> keywordTtlMinutes;
+            case "relevance_decision" -> judgementTtlMinutes;
+            default -> 0;
+        };
+    }
+
+    /**
+     * 规范化消息摘要：首尾空白去除、连续空白折叠，options 按 key 排序
+     */
+    private String fingerprint(LlmRequest request) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append(normalize(request.getSystemPrompt())).append('\u0000');
+        canonical.append(normalize(request.getUserPrompt())).append('\u0000');
+        if (request.getOptions() != null) {
+            canonical.append(new TreeMap<>(request.getOptions()));
+        }
+        canonical.append('\u0000');
+        if (request.getFormat() != null) {
+            canonical.append(request.getFormat());
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ");
+    }
+
+    private void record(String promptName, String outcome) {
+        PromptStats promptStats = stats.computeIfAbsent(promptName, k -> new PromptStats());
+        switch (outcome) {
+            case "local" -> promptStats.localHits.increment();
+            case "redis" -> promptStats.redisHits.increment();
+            default -> promptStats.misses.increment();
+        }
+        metricsService.recordLlmCacheLookup(promptName, outcome);
+    }
+
+    /**
+     * 按 Prompt 类型的命中统计
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> snapshot = new LinkedHashMap<>();
+        stats.forEach((promptName, promptStats) -> {
+            Map<String, Long> item = new LinkedHashMap<>();
+            item.put("localHits", promptStats.localHits.sum());
+            item.put("redisHits", promptStats.redisHits.sum());
+            item.put("misses", promptStats.misses.sum());
+            snapshot.put(promptName, item);
+        });
+        return snapshot;
+    }
+
+    private static class PromptStats {
+        private final LongAdder localHits = new LongAdder();
+        private final LongAdder redisHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class CachedResponse {
+        private String content;
+        private String model;
+        private Integer promptTokens;
+        private Integer completionTokens;
+        private long expiresAt;
+
+        LlmResponse toResponse() {
+            return LlmResponse.builder()
+                    .content(content)
+                    .model(model)
+                    .promptTokens(promptTokens)
+                    .completionTokens(completionTokens)
+                    .cached(true)
+                    .done(true)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.bilibilimusic.service.llm;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Prompt 预算：估算 token 数，把视频列表压缩到预算以内
+ *
+ * 7B 模型的 prefill 时间随输入 token 线性增长，歌单越大总结越慢。按预算逐级压缩：
+ * 1. 逐行列出 标题 - 作者（时长），不带链接
+ * 2. 按作者分组（作者只出现一次），标题截断
+ * 3. 标题进一步截断
+ * 4. 仍超预算时分块：每块单独让模型用一句话概括，最终 Prompt 只包含各块概括与主要歌手统计
+ *    （分块概括的输入有上限，总结延迟不再随歌单大小线性增长）
+ *
+ * 分块概括排在总结之前，会推迟首个 summary_delta，因此只占总结时限中的一小段（chunk-deadline-ms），
+ * 超时后只给出各块的作者统计，不再等待模型。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PromptBudget {
+
+    private final LlmClient llmClient;
+
+    /**
+     * 视频列表部分的 token 预算
+     */
+    @Value("${ollama.prompt-budget.video-list-max-tokens:600}")
+    private int videoListMaxTokens;
+
+    /**
+     * 压缩时标题保留的最大字符数
+     */
+    @Value("${ollama.prompt-budget.title-max-chars:24}")
+    private int titleMaxChars;
+
+    /**
+     * 分块概括时每块的视频数
+     */
+    @Value("${ollama.prompt-budget.chunk-size:20}")
+    private int chunkSize;
+
+    /**
+     * 每块概括的输出 token 上限
+     */
+    @Value("${ollama.prompt-budget.chunk-summary-max-tokens:60}")
+    private int chunkSummaryMaxTokens;
+
+    /**
+     * 同时进行的分块概括数
+     */
+    @Value("${ollama.prompt-budget.chunk-concurrency:2}")
+    private int chunkConcurrency;
+
+    /**
+     * 分块概括的总时限（超时后各块以作者统计代替）
+     */
+    @Value("${ollama.prompt-budget.chunk-deadline-ms:3000}")
+    private long chunkDeadlineMs;
+
+    /**
+     * 估算 token 数：CJK 字符每个算 1 个 token，其余非空白字符每 4 个算 1 个 token
+     */
+    public int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN || (c >= 0x3000 && c <= 0x30FF)
+                    || (c >= 0xFF00 && c <= 0xFFEF)) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 生成预算内的视频列表文本（必要时先分块概括）
+     */
+    public Mono<String> videoSection(List<VideoInfo> videos) {
+        if (videos == null || videos.isEmpty()) {
+            return Mono.just("");
+        }
+        String compact = compactVideoList(videos, videoListMaxTokens);
+        if (compact != null) {
+            return Mono.just(compact);
+        }
+        return summarizeInChunks(videos);
+    }
+
+    /**
+     * 逐级压缩视频列表，返回不超过 budgetTokens 的文本；最紧凑的形式仍超预算时返回 null
+     */
+    public String compactVideoList(List<VideoInfo> videos, int budgetTokens) {
+        StringBuilder full = new StringBuilder();
+        for (int i = 0; i < videos.size(); i++) {
+            VideoInfo v = videos.get(i);
+            full.append(i + 1).append(". ").append(normalizeTitle(v.getTitle(), Integer.MAX_VALUE))
+                .append(" - ").append(v.getAuthor() != null ? v.getAuthor() : "未知")
+                .append(v.getDuration() != null ? "（" + v.getDuration() + "）" : "")
+                .append("\n");
+        }
+        String text = full.toString();
+        int tokens = estimateTokens(text);
+        if (tokens <= budgetTokens) {
+            return text;
+        }
+
+        for (int maxChars : new int[] {titleMaxChars, Math.max(8, titleMaxChars / 2)}) {
+            String grouped = groupByAuthor(videos, maxChars);
+            int groupedTokens = estimateTokens(grouped);
+            if (groupedTokens <= budgetTokens) {
+                log.info("[PromptBudget] 视频列表压缩: {} 个视频, {} -> {} tokens（按作者分组，标题 ≤{} 字）",
+                    videos.size(), tokens, groupedTokens, maxChars);
+                return grouped;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 分块概括：每块压缩后单独概括，最终只保留各块概括与主要歌手统计
+     */
+    private Mono<String> summarizeInChunks(List<VideoInfo> videos) {
+        List<List<VideoInfo>> chunks = new ArrayList<>();
+        for (int from = 0; from < videos.size(); from += Math.max(1, chunkSize)) {
+            chunks.add(videos.subList(from, Math.min(videos.size(), from + Math.max(1, chunkSize))));
+        }
+        log.info("[PromptBudget] 视频列表超出预算，分 {} 块概括（共 {} 个视频）", chunks.size(), videos.size());
+
+        return Flux.fromIterable(chunks)
+            .flatMapSequential(this::summarizeChunk, Math.max(1, chunkConcurrency))
+            .collectList()
+            .map(summaries -> {
+                String section = chunkSection(videos, summaries);
+                log.info("[PromptBudget] 分块概括完成: {} tokens", estimateTokens(section));
+                return section;
+            })
+            .timeout(Duration.ofMillis(chunkDeadlineMs), Mono.fromSupplier(() -> {
+                log.warn("[PromptBudget] 分块概括超过 {}ms，使用作者统计", chunkDeadlineMs);
+                return chunkSection(videos, chunks.stream().map(this::chunkFallback).toList());
+            }));
+    }
+
+    private String chunkSection(List<VideoInfo> videos, List<String> summaries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("共 ").append(videos.size()).append(" 个视频，主要作者：").append(topAuthors(videos, 8)).append("\n");
+        sb.append("分段概括：\n");
+        for (int i = 0; i < summaries.size(); i++) {
+            sb.append(i + 1).append(". ").append(summaries.get(i)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private String chunkFallback(List<VideoInfo> chunk) {
+        return "作者：" + topAuthors(chunk, 5);
+    }
+
+    private Mono<String> summarizeChunk(List<VideoInfo> chunk) {
+        String list = groupByAuthor(chunk, Math.max(8, titleMaxChars / 2));
+        String fallback = chunkFallback(chunk);
+        LlmRequest request = LlmRequest.builder()
+            .purpose("summary_chunk")
+            .systemPrompt("你是音乐歌单分析助手，回答使用简体中文。")
+            .userPrompt("以下是歌单中的一部分视频，请用不超过 30 字概括其中的歌手、风格与情绪，直接输出概括：\n" + list)
+            .options(Map.of("num_predict", chunkSummaryMaxTokens))
+            .timeout(Duration.ofMillis(chunkDeadlineMs))
+            .build();
+        return llmClient.chat(request)
+            .map(resp -> resp.getContent() == null || resp.getContent().isBlank() ? fallback : resp.getContent().trim())
+            .onErrorResume(e -> {
+                // 单块失败时用作者统计代替，不影响整体总结
+                log.warn("[PromptBudget] 分块概括失败，使用作者统计: {}", e.getMessage());
+                return Mono.just(fallback);
+            });
+    }
+
+    /**
+     * 按作者分组：作者：标题1 / 标题2（作者按首次出现顺序，标题截断）
+     */
+    private String groupByAuthor(List<VideoInfo> videos, int maxChars) {
+        Map<String, List<String>> byAuthor = new LinkedHashMap<>();
+        for (VideoInfo v : videos) {
+            String author = v.getAuthor() != null && !v.getAuthor().isBlank() ? v.getAuthor() : "未知";
+            byAuthor.computeIfAbsent(author, k -> new ArrayList<>()).add(normalizeTitle(v.getTitle(), maxChars));
+        }
+        StringBuilder sb = new StringBuilder();
+        byAuthor.forEach((author, titles) ->
+            sb.append(author).append("：").append(String.join(" / ", titles)).append("\n"));
+        return sb.toString();
+    }
+
+    private String topAuthors(List<VideoInfo> videos, int limit) {
+        Map<String, Long> counts = videos.stream()
+            .filter(v -> v.getAuthor() != null && !v.getAuthor().isBlank())
+            .collect(Collectors.groupingBy(VideoInfo::getAuthor, LinkedHashMap::new, Collectors.counting()));
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(limit)
+            .map(e -> e.getKey() + "(" + e.getValue() + ")")
+            .collect(Collectors.joining("、"));
+    }
+
+    /**
+     * 标题规整：去掉【】标签（去掉后为空则保留）、折叠空白，超过 maxChars 截断
+     */
+    private String normalizeTitle(String title, int maxChars) {
+        if (title == null) {
+            return "";
+        }
+        String normalized = title.replaceAll("\\s+", " ").trim();
+        if (maxChars != Integer.MAX_VALUE) {
+            String stripped = normalized.replaceAll("【[^】]*】", "").trim();
+            if (!stripped.isEmpty()) {
+                normalized = stripped;
+            }
+        }
+        return normalized.length() > maxChars ? normalized.substring(0, maxChars) + "…" : normalized;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.bilibilimusic.service.llm;
+
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 结构化输出解码器（所有期望 JSON 输出的 LLM 调用共用）
+ *
+ * 1. 请求时把 JSON Schema 放进 Ollama 的 format 字段，由模型侧约束输出结构
+ * 2. 用 Jackson 流式解析器从第一个 JSON 值开始直接绑定到类型化的 record，忽略其后的多余内容
+ * 3. 解析或业务校验失败时计数，并带上错误原因与上次输出发起一次修复重试；
+ *    修复后仍失败抛出 StructuredOutputException，由调用方走规则降级
+ *
+ * 失败的输出如果来自响应缓存会被剔除，避免反复命中同一个坏结果。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StructuredOutputDecoder {
+
+    private static final int MAX_ECHO_CHARS = 500;
+
+    private final LlmClient llmClient;
+    private final ObjectMapper objectMapper;
+    private final AgentMetricsService metricsService;
+
+    /**
+     * 解析 / 校验失败后的修复重试次数
+     */
+    @Value("${ollama.structured.repair-retries:1}")
+    private int repairRetries;
+
+    private final Map<String, DecodeStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 调用 LLM 并解码为结构化结果（阻塞）
+     *
+     * @param request   原始请求（format 为空时使用 schema）
+     * @param type      目标类型
+     * @param schema    JSON Schema（JsonNode 或 Map，放入 Ollama format 字段）
+     * @param validator 业务校验，返回错误描述；通过时返回 null
+     * @throws StructuredOutputException 修复重试后仍失败
+     * @throws LlmException              调用本身失败（超时、被准入拒绝等）
+     */
+    public <T> Decoded<T> decode(LlmRequest request, Class<T> type, Object schema,
+                                 Function<T, String> validator) {
+        String purpose = request.getPurpose();
+        DecodeStats decodeStats = stats.computeIfAbsent(purpose, k -> new DecodeStats());
+        LlmRequest attempt = request.getFormat() != null ? request : request.toBuilder().format(schema).build();
+
+        String error = null;
+        for (int round = 0; round <= repairRetries; round++) {
+            LlmResponse response = llmClient.call(attempt);
+            String content = response.getContent();
+            try {
+                T value = read(content, type);
+                error = value == null ? "输出为空" : (validator != null ? validator.apply(value) : null);
+                if (error == null) {
+                    decodeStats.decoded.increment();
+                    if (round > 0) {
+                        decodeStats.repaired.increment();
+                        metricsService.recordStructuredOutput(purpose, "repaired");
+                        log.info("[Structured] {} 修复重试成功", purpose);
+                    }
+                    return new Decoded<>(value, response, round > 0);
+                }
+            } catch (JsonProcessingException e) {
+                error = "JSON 解析失败: " + e.getOriginalMessage();
+            } catch (IOException e) {
+                error = "JSON 读取失败: " + e.getMessage();
+            }
+
+            decodeStats.invalid.increment();
+            metricsService.recordStructuredOutput(purpose, "invalid");
+            log.warn("[Structured] {} 输出不符合要求（第 {} 次）: {}", purpose, round + 1, error);
+            if (response.isCached()) {
+                llmClient.evict(attempt);
+            }
+            attempt = repairRequest(request, attempt, content, error);
+        }
+
+        decodeStats.failed.increment();
+        metricsService.recordStructuredOutput(purpose, "failed");
+        throw new StructuredOutputException("结构化输出无效: " + purpose + " - " + error);
+    }
+
+    /**
+     * 从第一个 '{' 或 '[' 开始流式解析一个 JSON 值（兼容模型在 JSON 前输出代码块标记等前缀）
+     */
+    private <T> T read(String content, Class<T> type) throws IOException {
+        if (content == null) {
+            return null;
+        }
+        int start = 0;
+        while (start < content.length() && content.charAt(start) != '{' && content.charAt(start) != '[') {
+            start++;
+        }
+        if (start == content.length()) {
+            throw new IOException("输出中没有 JSON");
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(start == 0 ? content : content.substring(start))) {
+            parser.nextToken();
+            return objectMapper.readValue(parser, type);
+        }
+    }
+
+    /**
+     * 修复请求：原 Prompt + 错误原因 + 上次输出；不参与响应缓存（内容依赖上次的坏输出）
+     */
+    private LlmRequest repairRequest(LlmRequest original, LlmRequest lastAttempt, String lastContent, String error) {
+        String echoed = lastContent == null ? "" : lastContent.length() > MAX_ECHO_CHARS
+                ? lastContent.substring(0, MAX_ECHO_CHARS) + "..." : lastContent;
+        String userPrompt = (original.getUserPrompt() != null ? original.getUserPrompt() : "")
+                + "\n\n你上一次的输出不符合要求（" + error + "）：\n" + echoed
+                + "\n\n请修正后重新输出，只输出符合格式要求的 JSON。";
+        return lastAttempt.toBuilder()
+                .promptName(null)
+                .priority(original.getPriority() != null ? original.getPriority() : LlmPriority.forPurpose(original.getPurpose()))
+                .userPrompt(userPrompt)
+                .build();
+    }
+
+    /**
+     * 按用途的解码统计（decoded / invalid / repaired / failed）
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> snapshot = new LinkedHashMap<>();
+        stats.forEach((purpose, decodeStats) -> {
+            Map<String, Long> item = new LinkedHashMap<>();
+            item.put("decoded", decodeStats.decoded.sum());
+            item.put("invalid", decodeStats.invalid.sum());
+            item.put("repaired", decodeStats.repaired.sum());
+            item.put("failed", decodeStats.failed.sum());
+            snapshot.put(purpose, item);
+        });
+        return snapshot;
+    }
+
+    /**
+     * 解码结果及产生它的响应（用于 token / 耗时统计）
+     */
+    public record Decoded<T>(T value, LlmResponse response, boolean repaired) {
+    }
+
+    private static class DecodeStats {
+        private final LongAdder decoded = new LongAdder();
+        private final LongAdder invalid = new LongAdder();
+        private final LongAdder repaired = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+    }
+}
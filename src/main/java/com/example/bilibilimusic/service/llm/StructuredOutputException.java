@@ -0,0 +1,11 @@
+package com.example.bilibilimusic.service.llm;
+
+/**
+ * 结构化输出在修复重试后仍无法解析或校验失败，调用方应走规则降级
+ */
+public class StructuredOutputException extends LlmException {
+
+    public StructuredOutputException(String message) {
+        super(message, false, null);
+    }
+}
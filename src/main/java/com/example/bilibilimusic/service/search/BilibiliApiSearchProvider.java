@@ -0,0 +1,365 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * B 站 JSON 接口搜索提供方（快速路径）
+ *
+ * 接口：
+ * - 搜索：/x/web-interface/search/type?search_type=video
+ * - 详情：/x/web-interface/view?bvid=
+ *
+ * 使用 Jackson 流式解析（JsonParser），边读边构造 VideoInfo，不构建完整的 JSON 树。
+ * 搜索结果已包含标签、简介、播放量、评论数，无需再打开详情页。
+ */
+@Component
+@Slf4j
+public class BilibiliApiSearchProvider implements VideoSearchProvider {
+
+    public static final String NAME = "api";
+
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) " +
+            "Chrome/126.0.0.0 Safari/537.36";
+
+    /**
+     * 接口根地址（离线测试时指向本地 stub）
+     */
+    @Value("${bilibili.api.base-url:https://api.bilibili.com}")
+    private String baseUrl;
+
+    /**
+     * 单次请求超时（毫秒）
+     */
+    @Value("${bilibili.api.timeout-ms:5000}")
+    private long timeoutMs;
+
+    /**
+     * 请求 Cookie；为空时自动生成 buvid3（搜索接口缺少该 Cookie 会被风控拦截）
+     */
+    @Value("${bilibili.api.cookie:}")
+    private String cookie;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        if (cookie == null || cookie.isBlank()) {
+            cookie = "buvid3=" + UUID.randomUUID().toString().toUpperCase() + "infoc";
+        }
+        log.info("[SearchApi] 初始化: baseUrl={}, timeout={}ms", baseUrl, timeoutMs);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<VideoInfo> search(String query, int limit) {
+        return searchPage(query, 1, limit);
+    }
+
+    @Override
+    public List<VideoInfo> searchPage(String query, int page, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, 50));
+        String url = baseUrl + "/x/web-interface/search/type?search_type=video&page=" + Math.max(1, page)
+                + "&page_size=" + size
+                + "&keyword=" + URLEncoder.encode(query, StandardCharsets.UTF_8);
+        long start = System.currentTimeMillis();
+        try (InputStream body = get(url)) {
+            List<VideoInfo> videos = parseSearchResponse(body, size);
+            log.info("[SearchApi] 搜索完成: query={}, page={}, videos={}, 耗时={}ms",
+                    query, page, videos.size(), System.currentTimeMillis() - start);
+            return videos;
+        } catch (IOException e) {
+            throw new IllegalStateException("B站搜索接口请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 通过 view 接口获取单个视频详情
+     */
+    public VideoInfo fetchView(String bvid) {
+        String url = baseUrl + "/x/web-interface/view?bvid=" + URLEncoder.encode(bvid, StandardCharsets.UTF_8);
+        try (InputStream body = get(url)) {
+            return parseViewResponse(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("B站详情接口请求失败: " + e.getMessage(), e);
+        }
+    }
+
+    private InputStream get(String url) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("User-Agent", USER_AGENT)
+                .header("Referer", "https://search.bilibili.com/")
+                .header("Accept", "application/json")
+                .header("Cookie", cookie)
+                .GET()
+                .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断", e);
+        }
+    }
+
+    // ==================== 流式解析 ====================
+
+    /**
+     * 解析搜索响应：{"code":0,"data":{"result":[{...}]}}
+     */
+    List<VideoInfo> parseSearchResponse(InputStream in, int limit) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_OBJECT);
+            int code = -1;
+            String message = null;
+            List<VideoInfo> videos = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "code" -> code = p.getValueAsInt(-1);
+                    case "message" -> message = p.getValueAsString();
+                    case "data" -> videos = parseSearchData(p, limit);
+                    default -> p.skipChildren();
+                }
+            }
+            if (code != 0) {
+                throw new IllegalStateException("B站搜索接口返回错误: code=" + code + ", message=" + message);
+            }
+            if (videos == null) {
+                throw new IllegalStateException("B站搜索接口响应缺少 data.result");
+            }
+            return videos;
+        }
+    }
+
+    private List<VideoInfo> parseSearchData(JsonParser p, int limit) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        List<VideoInfo> videos = new ArrayList<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("result".equals(field) && p.currentToken() == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    if (videos.size() >= limit) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    VideoInfo video = parseSearchItem(p);
+                    if (video != null) {
+                        videos.add(video);
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return videos;
+    }
+
+    private VideoInfo parseSearchItem(JsonParser p) throws IOException {
+        VideoInfo.VideoInfoBuilder builder = VideoInfo.builder();
+        String type = "video";
+        String bvid = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "type" -> type = p.getValueAsString();
+                case "bvid" -> bvid = p.getValueAsString();
+                case "title" -> builder.title(stripHtml(p.getValueAsString()));
+                case "author" -> builder.author(p.getValueAsString());
+                case "duration" -> builder.duration(normalizeDuration(p.getValueAsString()));
+                case "tag" -> builder.tags(p.getValueAsString());
+                case "description" -> builder.description(p.getValueAsString());
+                case "play" -> builder.playCount(asCount(p));
+                case "review" -> builder.commentCount(asCount(p));
+                default -> p.skipChildren();
+            }
+        }
+        if (!"video".equals(type) || bvid == null || bvid.isBlank()) {
+            return null;
+        }
+        return builder.bvid(bvid).url("https://www.bilibili.com/video/" + bvid).build();
+    }
+
+    /**
+     * 解析详情响应：{"code":0,"data":{"bvid":..,"owner":{..},"stat":{..}}}
+     */
+    VideoInfo parseViewResponse(InputStream in) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(in)) {
+            expect(p.nextToken(), JsonToken.START_OBJECT);
+            int code = -1;
+            String message = null;
+            VideoInfo video = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "code" -> code = p.getValueAsInt(-1);
+                    case "message" -> message = p.getValueAsString();
+                    case "data" -> video = parseViewData(p);
+                    default -> p.skipChildren();
+                }
+            }
+            if (code != 0 || video == null) {
+                throw new IllegalStateException("B站详情接口返回错误: code=" + code + ", message=" + message);
+            }
+            return video;
+        }
+    }
+
+    private VideoInfo parseViewData(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        VideoInfo.VideoInfoBuilder builder = VideoInfo.builder();
+        String bvid = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "bvid" -> bvid = p.getValueAsString();
+                case "title" -> builder.title(p.getValueAsString());
+                case "desc" -> builder.description(p.getValueAsString());
+                case "duration" -> builder.duration(formatSeconds(p.getValueAsLong(-1)));
+                case "owner" -> builder.author(readStringField(p, "name"));
+                case "stat" -> readStat(p, builder);
+                default -> p.skipChildren();
+            }
+        }
+        if (bvid == null) {
+            return null;
+        }
+        return builder.bvid(bvid).url("https://www.bilibili.com/video/" + bvid).build();
+    }
+
+    private void readStat(JsonParser p, VideoInfo.VideoInfoBuilder builder) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "view" -> builder.playCount(asCount(p));
+                case "reply" -> builder.commentCount(asCount(p));
+                default -> p.skipChildren();
+            }
+        }
+    }
+
+    private String readStringField(JsonParser p, String name) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return null;
+        }
+        String value = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (name.equals(field)) {
+                value = p.getValueAsString();
+            } else {
+                p.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) {
+        if (actual != expected) {
+            throw new IllegalStateException("JSON 结构不符合预期: expected=" + expected + ", actual=" + actual);
+        }
+    }
+
+    /**
+     * 数量字段可能是数字或 "--" 等字符串
+     */
+    private Long asCount(JsonParser p) throws IOException {
+        long value = p.getValueAsLong(-1);
+        return value >= 0 ? value : null;
+    }
+
+    /**
+     * 搜索结果标题带有 &lt;em class="keyword"&gt; 高亮标签和 HTML 实体
+     */
+    private String stripHtml(String text) {
+        if (text == null) {
+            return null;
+        }
+        return text.replaceAll("<[^>]+>", "")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&amp;", "&");
+    }
+
+    /**
+     * 接口返回的时长形如 "4:5"，统一补零为 "04:05"
+     */
+    private String normalizeDuration(String duration) {
+        if (duration == null || duration.isBlank()) {
+            return "未知";
+        }
+        String[] parts = duration.trim().split(":");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(':');
+            }
+            sb.append(parts[i].length() < 2 ? "0" + parts[i] : parts[i]);
+        }
+        return sb.toString();
+    }
+
+    private String formatSeconds(long seconds) {
+        if (seconds < 0) {
+            return "未知";
+        }
+        long h = seconds / 3600;
+        long m = (seconds % 3600) / 60;
+        long s = seconds % 60;
+        return h > 0 ? String.format("%02d:%02d:%02d", h, m, s) : String.format("%02d:%02d", m, s);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.BilibiliSearchService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 多关键词 × 多页扇出检索
+ *
+ * 流程：
+ * 1. 子查询：全部关键词拼接的查询优先，其次每个关键词单独查询（上限 maxSubqueries）
+ * 2. 按页推进：同一页的所有子查询并发执行（有界线程池），整页结束后合并
+ * 3. 优先级合并：按 (子查询优先级, 页码, 页内位置) 排序，按 BVID 去重，保留最靠前的位置
+ * 4. 去重后的候选数达到 limit，或所有子查询都已到底（不足一页）时停止翻页
+ *
+ * 返回与 BilibiliSearchService.search 相同的 List&lt;VideoInfo&gt;，
+ * 每个视频的 sourceQueries 记录命中它的全部子查询（"查询#p页码"），供打分使用。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FanOutSearchEngine {
+
+    private final BilibiliSearchService searchService;
+    private final VideoDetailEnricher detailEnricher;
+
+    /**
+     * 最多翻页数
+     */
+    @Value("${bilibili.fanout.max-pages:3}")
+    private int maxPages;
+
+    /**
+     * 每页数量
+     */
+    @Value("${bilibili.fanout.page-size:20}")
+    private int pageSize;
+
+    /**
+     * 最多子查询数（含拼接查询）
+     */
+    @Value("${bilibili.fanout.max-subqueries:4}")
+    private int maxSubqueries;
+
+    /**
+     * 同时执行的子查询数
+     */
+    @Value("${bilibili.fanout.concurrency:4}")
+    private int concurrency;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        concurrency = Math.max(1, concurrency);
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "search-fanout-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[FanOut] 初始化: maxPages={}, pageSize={}, maxSubqueries={}, concurrency={}",
+                maxPages, pageSize, maxSubqueries, concurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 扇出检索
+     *
+     * @param query     原始查询（无关键词时使用）
+     * @param keywords  提取出的关键词
+     * @param limit     需要的去重候选数
+     * @param cardsOnly true 时只返回卡片字段（详情由 DetailEnrichmentNode 按需补充）
+     */
+    public List<VideoInfo> search(String query, List<String> keywords, int limit, boolean cardsOnly) {
+        return search(query, keywords, limit, cardsOnly, () -> false);
+    }
+
+    /**
+     * 可协作取消的扇出检索：stopSignal 为 true 时不再翻页 / 补充详情，返回已取得的结果
+     */
+    public List<VideoInfo> search(String query, List<String> keywords, int limit, boolean cardsOnly,
+                                  BooleanSupplier stopSignal) {
+        long start = System.currentTimeMillis();
+        List<String> subqueries = buildSubqueries(query, keywords);
+        Map<String, Candidate> merged = new HashMap<>();
+        Set<String> active = new LinkedHashSet<>(subqueries);
+        int requests = 0;
+        int pagesFetched = 0;
+
+        for (int page = 1; page <= Math.max(1, maxPages) && !active.isEmpty() && !stopSignal.getAsBoolean(); page++) {
+            int currentPage = page;
+            pagesFetched = page;
+            Map<String, Future<List<VideoInfo>>> futures = new HashMap<>();
+            for (String subquery : active) {
+                futures.put(subquery, executor.submit(() -> searchService.searchPage(subquery, currentPage, pageSize)));
+            }
+            requests += futures.size();
+
+            for (String subquery : new ArrayList<>(active)) {
+                List<VideoInfo> pageResults = await(futures.get(subquery), subquery, currentPage);
+                // 不足一页说明该子查询已到底
+                if (pageResults.size() < pageSize) {
+                    active.remove(subquery);
+                }
+                int priority = subqueries.indexOf(subquery);
+                for (int position = 0; position < pageResults.size(); position++) {
+                    merge(merged, pageResults.get(position), subquery, priority, currentPage, position);
+                }
+            }
+
+            if (merged.size() >= limit) {
+                break;
+            }
+        }
+
+        List<VideoInfo> result = merged.values().stream()
+                .sorted(Comparator.comparingInt((Candidate c) -> c.priority)
+                        .thenComparingInt(c -> c.page)
+                        .thenComparingInt(c -> c.position))
+                .limit(limit)
+                .map(c -> c.video)
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        if (!cardsOnly && !stopSignal.getAsBoolean()) {
+            List<VideoInfo> needDetail = result.stream()
+                    .filter(v -> v.getTags() == null && v.getDescription() == null)
+                    .toList();
+            if (!needDetail.isEmpty()) {
+                detailEnricher.enrich(needDetail, video -> { }, stopSignal);
+            }
+        }
+
+        log.info("[FanOut] 子查询={}, 请求={}, 翻页至={}, 去重候选={}, 返回={}, 耗时={}ms",
+                subqueries, requests, pagesFetched, merged.size(), result.size(),
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 子查询：拼接查询优先，其次单关键词
+     */
+    private List<String> buildSubqueries(String query, List<String> keywords) {
+        List<String> subqueries = new ArrayList<>();
+        List<String> cleaned = keywords == null ? List.of() : keywords.stream()
+                .filter(k -> k != null && !k.isBlank())
+                .map(String::trim)
+                .distinct()
+                .toList();
+        if (cleaned.isEmpty()) {
+            subqueries.add(query);
+            return subqueries;
+        }
+        subqueries.add(String.join(" ", cleaned));
+        if (cleaned.size() > 1) {
+            for (String keyword : cleaned) {
+                if (subqueries.size() >= Math.max(1, maxSubqueries)) {
+                    break;
+                }
+                subqueries.add(keyword);
+            }
+        }
+        return subqueries;
+    }
+
+    private List<VideoInfo> await(Future<List<VideoInfo>> future, String subquery, int page) {
+        try {
+            List<VideoInfo> videos = future.get();
+            return videos != null ? videos : List.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } catch (Exception e) {
+            log.warn("[FanOut] 子查询失败: query={}, page={}, {}", subquery, page, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void merge(Map<String, Candidate> merged, VideoInfo video, String subquery,
+                       int priority, int page, int position) {
+        String key = VideoMetadataStore.bvidOf(video);
+        if (key == null) {
+            key = video.getUrl() != null ? video.getUrl() : video.getTitle();
+        }
+        if (key == null) {
+            return;
+        }
+        String source = subquery + "#p" + page;
+        Candidate existing = merged.get(key);
+        if (existing == null) {
+            List<String> sources = new ArrayList<>();
+            sources.add(source);
+            video.setSourceQueries(sources);
+            merged.put(key, new Candidate(video, priority, page, position));
+            return;
+        }
+        existing.video.getSourceQueries().add(source);
+        boolean better = priority < existing.priority
+                || (priority == existing.priority && (page < existing.page
+                    || (page == existing.page && position < existing.position)));
+        if (better) {
+            existing.priority = priority;
+            existing.page = page;
+            existing.position = position;
+        }
+    }
+
+    private static class Candidate {
+        private final VideoInfo video;
+        private int priority;
+        private int page;
+        private int position;
+
+        private Candidate(VideoInfo video, int priority, int page, int position) {
+            this.video = video;
+            this.priority = priority;
+            this.page = page;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.browser.BrowserLease;
+import com.example.bilibilimusic.service.browser.BrowserPool;
+import com.example.bilibilimusic.service.browser.PageReadiness;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.playwright.*;
+import com.microsoft.playwright.options.WaitUntilState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Playwright 搜索提供方（渲染搜索页 + 并发抓取详情页）
+ *
+ * 成本最高但最稳定，作为 JSON 接口失败时的兜底。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PlaywrightSearchProvider implements VideoSearchProvider {
+
+    public static final String NAME = "playwright";
+
+    private static final Pattern BVID_PATTERN = Pattern.compile("/video/(BV[a-zA-Z0-9]+)");
+
+    private final BrowserPool browserPool;
+    private final VideoDetailEnricher detailEnricher;
+    private final PageReadiness pageReadiness;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 搜索页就绪选择器（按优先级）
+     */
+    private static final List<String> SEARCH_READY_SELECTORS =
+            List.of("div.bili-video-card__wrap", ".video-card-common", ".bili-video-card");
+
+    /**
+     * 卡片批量解析脚本（选择器与逐卡片解析保持一致），参数为数量上限
+     */
+    private static final String CARD_EXTRACT_SCRIPT = """
+            (limit) => {
+              const text = el => el ? (el.innerText || el.textContent || '').trim() : '';
+              const pick = (root, selectors) => {
+                for (const s of selectors) {
+                  const el = root.querySelector(s);
+                  if (el) return el;
+                }
+                return null;
+              };
+              const rows = [];
+              let cards = [];
+              for (const s of ['div.bili-video-card__wrap', '.video-card-common', '.bili-video-card']) {
+                cards = Array.from(document.querySelectorAll(s));
+                if (cards.length) break;
+              }
+              if (!cards.length) {
+                for (const a of document.querySelectorAll("a[href*='/video/']")) {
+                  if (rows.length >= limit) break;
+                  rows.push([a.getAttribute('href') || '', a.getAttribute('title') || text(a), '', '', '']);
+                }
+                return JSON.stringify(rows);
+              }
+              for (const card of cards) {
+                if (rows.length >= limit) break;
+                const link = pick(card, ['a.bili-video-card__title', 'a[title]', "a[href*='/video/']"]);
+                if (!link) continue;
+                rows.push([
+                  link.getAttribute('href') || '',
+                  link.getAttribute('title') || text(link),
+                  text(pick(card, ['span.bili-video-card__info--author', '.bili-video-card__info--author'])),
+                  text(pick(card, ['span.bili-video-card__stats__duration', '.duration'])),
+                  text(card.querySelector('.bili-video-card__stats--item'))
+                ]);
+              }
+              return JSON.stringify(rows);
+            }
+            """;
+
+    @Value("${bilibili.search-url-template}")
+    private String searchUrlTemplate;
+
+    /**
+     * 是否使用 headless 模式（false 时会显示浏览器窗口，便于调试和用户查看）
+     */
+    @Value("${bilibili.headless:true}")
+    private boolean headless;
+
+    /**
+     * 搜索页就绪等待上限（毫秒）
+     */
+    @Value("${bilibili.readiness.search-timeout-ms:8000}")
+    private long searchReadyTimeoutMs;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<VideoInfo> search(String query, int limit) {
+        List<VideoInfo> result = scrapeCards(query, limit, 1);
+
+        // 并发进入视频详情页，补充抓取标签和简介
+        detailEnricher.enrich(result);
+
+        log.info("最终解析到 {} 个视频", result.size());
+        return result;
+    }
+
+    /**
+     * 卡片级搜索：只解析搜索页，详情由 DetailEnrichmentNode 按需补充
+     */
+    @Override
+    public List<VideoInfo> searchCards(String query, int limit) {
+        return scrapeCards(query, limit, 1);
+    }
+
+    /**
+     * 分页卡片搜索：搜索页 URL 追加 page 参数
+     */
+    @Override
+    public List<VideoInfo> searchPage(String query, int page, int pageSize) {
+        return scrapeCards(query, pageSize, page);
+    }
+
+    /**
+     * 流式搜索：搜索页解析完成后，每个详情页抓取完成即推送，收到停止信号后不再打开新的详情页
+     */
+    @Override
+    public void stream(String query, int limit, VideoStream stream) {
+        List<VideoInfo> cards = scrapeCards(query, limit, 1);
+        // 在流式检索线程上按空位预留分块补充详情：消费者跟不上时在这里等待，
+        // 共享的详情 worker 不会阻塞在 emit 上，也不会占着浏览器租约等待消费者
+        int next = 0;
+        while (next < cards.size()) {
+            int reserved = stream.reserve(cards.size() - next);
+            if (reserved == 0) {
+                break;
+            }
+            List<VideoInfo> chunk = cards.subList(next, next + reserved);
+            next += reserved;
+            AtomicInteger emitted = new AtomicInteger();
+            detailEnricher.enrich(chunk, video -> {
+                stream.emitReserved(video);
+                emitted.incrementAndGet();
+            }, stream::isCancelled);
+            // 提前停止或租借失败时未产出的视频归还预留位置
+            stream.unreserve(reserved - emitted.get());
+        }
+    }
+
+    /**
+     * 打开搜索页并解析视频卡片（不含详情）
+     */
+    private List<VideoInfo> scrapeCards(String query, int limit, int pageNo) {
+        String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        String url = searchUrlTemplate.replace("{query}", encoded);
+        if (pageNo > 1) {
+            url += "&page=" + pageNo;
+        }
+
+        List<VideoInfo> result = new ArrayList<>();
+        String searchUrl = url;
+
+        // 从浏览器池租借实例，搜索页解析完即归还，避免占用实例等待详情抓取
+        try (BrowserLease lease = browserPool.lease(headless)) {
+            log.info("打开 B 站搜索页面: {} (browser={})", searchUrl, lease.browserId());
+            // 页面操作在实例的属主线程上执行
+            lease.execute(context -> {
+                Page page = context.newPage();
+                page.navigate(searchUrl, new Page.NavigateOptions().setWaitUntil(WaitUntilState.DOMCONTENTLOADED));
+
+                // 等待搜索卡片出现（事件驱动，替代固定 sleep；超时后仍按备用选择器解析）
+                pageReadiness.await(page, "search", SEARCH_READY_SELECTORS, searchReadyTimeoutMs);
+
+                // 一次 evaluate 取回全部卡片字段；脚本失败时退回逐卡片解析
+                List<VideoInfo> batch = extractCardsBatch(page, limit);
+                if (batch != null) {
+                    result.addAll(batch);
+                } else {
+                    extractCardsPerElement(page, limit, result);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Playwright 搜索 B 站失败", e);
+        }
+        return result;
+    }
+
+    /**
+     * 批量解析：一次 page.evaluate 在页面内遍历全部卡片，返回紧凑 JSON 数组
+     * [[href, title, author, duration, play], ...]，避免逐卡片 querySelector / getAttribute 往返
+     *
+     * @return 解析结果；脚本执行或解析失败时返回 null
+     */
+    private List<VideoInfo> extractCardsBatch(Page page, int limit) {
+        long start = System.currentTimeMillis();
+        try {
+            Object raw = page.evaluate(CARD_EXTRACT_SCRIPT, limit);
+            if (!(raw instanceof String json)) {
+                log.warn("批量解析卡片返回类型异常: {}", raw == null ? "null" : raw.getClass().getSimpleName());
+                return null;
+            }
+            List<VideoInfo> videos = new ArrayList<>();
+            for (JsonNode row : objectMapper.readTree(json)) {
+                if (videos.size() >= limit) {
+                    break;
+                }
+                String href = row.path(0).asText("");
+                String title = row.path(1).asText("").trim();
+                if (href.isEmpty() || title.isEmpty()) {
+                    continue;
+                }
+                String finalUrl = href.startsWith("http") ? href : "https:" + href;
+                String author = row.path(2).asText("").trim();
+                String duration = row.path(3).asText("").trim();
+                videos.add(VideoInfo.builder()
+                        .bvid(extractBvid(finalUrl))
+                        .title(title)
+                        .url(finalUrl)
+                        .author(author.isEmpty() ? "未知" : author)
+                        .duration(duration.isEmpty() ? "未知" : duration)
+                        .playCount(parseCount(row.path(4).asText("")))
+                        .build());
+            }
+            log.info("批量解析搜索卡片 {} 个，耗时 {}ms", videos.size(), System.currentTimeMillis() - start);
+            return videos;
+        } catch (Exception e) {
+            log.warn("批量解析卡片失败，退回逐卡片解析: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 逐卡片解析（每个字段一次驱动往返，批量脚本失败时使用）
+     */
+    private void extractCardsPerElement(Page page, int limit, List<VideoInfo> result) {
+        // 尝试多种选择器策略
+        List<ElementHandle> cards = page.querySelectorAll("div.bili-video-card__wrap");
+        log.info("使用选择器 'div.bili-video-card__wrap' 找到 {} 个卡片", cards.size());
+        
+        if (cards.isEmpty()) {
+            // 备用选择器 1
+            cards = page.querySelectorAll(".video-card-common");
+            log.info("使用备用选择器 '.video-card-common' 找到 {} 个卡片", cards.size());
+        }
+        
+        if (cards.isEmpty()) {
+            // 备用选择器 2
+            cards = page.querySelectorAll(".bili-video-card");
+            log.info("使用备用选择器 '.bili-video-card' 找到 {} 个卡片", cards.size());
+        }
+
+        if (cards.isEmpty()) {
+            // 尝试获取所有视频链接
+            cards = page.querySelectorAll("a[href*='/video/']");
+            log.info("使用通用选择器找到 {} 个视频链接", cards.size());
+            
+            // 使用简化解析
+            for (ElementHandle link : cards) {
+                if (result.size() >= limit) break;
+                try {
+                    String href = link.getAttribute("href");
+                    String title = link.getAttribute("title");
+                    if (title == null || title.isEmpty()) {
+                        title = link.innerText().trim();
+                    }
+                    if (href != null && href.contains("/video/") && !title.isEmpty()) {
+                        String finalUrl = href.startsWith("http") ? href : "https:" + href;
+                        result.add(VideoInfo.builder()
+                                .bvid(extractBvid(finalUrl))
+                                .title(title)
+                                .url(finalUrl)
+                                .author("未知")
+                                .duration("未知")
+                                .build());
+                        log.debug("解析到视频: {}", title);
+                    }
+                } catch (Exception e) {
+                    log.debug("解析链接失败: {}", e.getMessage());
+                }
+            }
+        } else {
+            // 使用原始解析逻辑
+            for (ElementHandle card : cards) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                try {
+                    // 尝试多种标题选择器
+                    ElementHandle titleLink = card.querySelector("a.bili-video-card__title");
+                    if (titleLink == null) {
+                        titleLink = card.querySelector("a[title]");
+                    }
+                    if (titleLink == null) {
+                        titleLink = card.querySelector("a[href*='/video/']");
+                    }
+                    
+                    if (titleLink == null) {
+                        log.debug("卡片中未找到标题链接");
+                        continue;
+                    }
+                    
+                    String title = titleLink.getAttribute("title");
+                    if (title == null || title.isEmpty()) {
+                        title = titleLink.innerText().trim();
+                    }
+                    String href = titleLink.getAttribute("href");
+                    String finalUrl = href != null && href.startsWith("http") ? href : "https:" + href;
+
+                    ElementHandle authorSpan = card.querySelector("span.bili-video-card__info--author");
+                    if (authorSpan == null) {
+                        authorSpan = card.querySelector(".bili-video-card__info--author");
+                    }
+                    String author = authorSpan != null ? authorSpan.innerText().trim() : "未知";
+
+                    ElementHandle durationSpan = card.querySelector("span.bili-video-card__stats__duration");
+                    if (durationSpan == null) {
+                        durationSpan = card.querySelector(".duration");
+                    }
+                    String duration = durationSpan != null ? durationSpan.innerText().trim() : "未知";
+
+                    result.add(VideoInfo.builder()
+                            .bvid(extractBvid(finalUrl))
+                            .title(title)
+                            .url(finalUrl)
+                            .author(author)
+                            .duration(duration)
+                            .build());
+                    log.debug("成功解析视频: {} - {}", title, author);
+                } catch (Exception e) {
+                    log.warn("解析单个视频卡片失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析卡片上的播放量文本（如 "12.3万"、"1.2亿"、"8650"）
+     */
+    private Long parseCount(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String value = text.trim();
+        double multiplier = 1;
+        if (value.endsWith("万")) {
+            multiplier = 10_000;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("亿")) {
+            multiplier = 100_000_000;
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Math.round(Double.parseDouble(value) * multiplier);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String extractBvid(String url) {
+        Matcher matcher = BVID_PATTERN.matcher(url);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.example.bilibilimusic.service.CacheService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 相同查询的并发检索合并（single-flight）
+ *
+ * 以归一化查询的缓存 Key 为标识：
+ * 1. 本机：第一个请求执行检索，同时到达的请求等待同一个 in-flight Future，拿到结果副本
+ * 2. 跨节点（可选）：执行检索前抢占 Redisson 锁；抢不到说明其它节点正在检索，
+ *    订阅完成频道，等待对方写入查询缓存后直接读取
+ *
+ * 等待超时或检索方失败时，等待方回退为自己检索，不会因合并而丢失结果。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchCoalescer {
+
+    private static final String LOCK_PREFIX = "search:coalesce:lock:";
+    private static final String DONE_TOPIC = "search:coalesce:done";
+
+    private final CacheService cacheService;
+    private final RedissonClient redissonClient;
+    private final AgentMetricsService metricsService;
+
+    private final Map<String, CompletableFuture<List<VideoInfo>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 是否启用检索合并
+     */
+    @Value("${bilibili.coalesce.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 是否跨节点合并（Redisson 锁 + 完成频道）
+     */
+    @Value("${bilibili.coalesce.distributed:false}")
+    private boolean distributed;
+
+    /**
+     * 等待方最长等待时间
+     */
+    @Value("${bilibili.coalesce.wait-timeout-ms:60000}")
+    private long waitTimeoutMs;
+
+    /**
+     * 跨节点锁自动释放时间（检索方宕机时防止等待方一直等待）
+     */
+    @Value("${bilibili.coalesce.lock-lease-seconds:90}")
+    private long lockLeaseSeconds;
+
+    /**
+     * 执行或加入相同查询的检索
+     *
+     * @param query  归一化前的原始查询（与查询缓存使用同一 Key）
+     * @param search 实际检索；由检索方执行，结果非空时写入查询缓存
+     * @return 检索方返回原始结果，等待方返回结果副本
+     */
+    public List<VideoInfo> execute(String query, Supplier<List<VideoInfo>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        String key = cacheService.generateQueryCacheKey(query);
+        CompletableFuture<List<VideoInfo>> mine = new CompletableFuture<>();
+        CompletableFuture<List<VideoInfo>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            List<VideoInfo> shared = awaitLocal(existing, query);
+            if (shared != null) {
+                metricsService.recordSearchCoalesced(false);
+                log.info("[Coalesce] 合并本机并发检索: query={}, videos={}", query, shared.size());
+                return copyOf(shared);
+            }
+            // 检索方失败或超时，自己检索（不再加入合并）
+            return search.get();
+        }
+
+        try {
+            List<VideoInfo> result = distributed
+                ? searchAcrossNodes(key, query, search)
+                : searchAndCache(query, search);
+            // 以快照完成，检索方后续对原始结果的修改不影响等待方
+            mine.complete(copyOf(result));
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private List<VideoInfo> awaitLocal(CompletableFuture<List<VideoInfo>> future, String query) {
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            log.warn("[Coalesce] 等待本机检索超时，自行检索: query={}", query);
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("[Coalesce] 本机检索失败，自行检索: query={}, {}", query, e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 跨节点：抢到锁的节点检索并广播完成，其它节点等待广播后读查询缓存
+     */
+    private List<VideoInfo> searchAcrossNodes(String key, String query, Supplier<List<VideoInfo>> search) {
+        RLock lock = redissonClient.getLock(LOCK_PREFIX + key);
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(0, lockLeaseSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return searchAndCache(query, search);
+        } catch (Exception e) {
+            log.warn("[Coalesce] 获取跨节点检索锁失败，按本机处理: {}", e.getMessage());
+            return searchAndCache(query, search);
+        }
+
+        if (acquired) {
+            try {
+                return searchAndCache(query, search);
+            } finally {
+                publishDone(key);
+                if (lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                }
+            }
+        }
+
+        List<VideoInfo> remote = awaitRemote(key, query);
+        if (remote != null) {
+            metricsService.recordSearchCoalesced(true);
+            log.info("[Coalesce] 合并跨节点并发检索: query={}, videos={}", query, remote.size());
+            return remote;
+        }
+        return searchAndCache(query, search);
+    }
+
+    private List<VideoInfo> awaitRemote(String key, String query) {
+        RTopic topic = redissonClient.getTopic(DONE_TOPIC, StringCodec.INSTANCE);
+        CountDownLatch done = new CountDownLatch(1);
+        int listenerId = topic.addListener(String.class, (channel, message) -> {
+            if (key.equals(message)) {
+                done.countDown();
+            }
+        });
+        try {
+            // 订阅前对方可能已经完成
+            List<VideoInfo> cached = cacheService.getCachedSearchResults(query);
+            if (cached != null && !cached.isEmpty()) {
+                return cached;
+            }
+            if (!done.await(waitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                log.warn("[Coalesce] 等待跨节点检索超时，自行检索: query={}", query);
+                return null;
+            }
+            cached = cacheService.getCachedSearchResults(query);
+            return cached != null && !cached.isEmpty() ? cached : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    private void publishDone(String key) {
+        try {
+            redissonClient.getTopic(DONE_TOPIC, StringCodec.INSTANCE).publish(key);
+        } catch (Exception e) {
+            log.warn("[Coalesce] 广播检索完成失败: {}", e.getMessage());
+        }
+    }
+
+    private List<VideoInfo> searchAndCache(String query, Supplier<List<VideoInfo>> search) {
+        metricsService.recordSearchLeader();
+        List<VideoInfo> result = search.get();
+        if (result != null && !result.isEmpty()) {
+            cacheService.cacheSearchResults(query, result);
+        }
+        return result != null ? result : List.of();
+    }
+
+    /**
+     * 等待方各自持有副本（后续节点会原地补充详情、修改字段）
+     */
+    private List<VideoInfo> copyOf(List<VideoInfo> videos) {
+        List<VideoInfo> copies = new ArrayList<>(videos.size());
+        for (VideoInfo video : videos) {
+            VideoInfo copy = video.toBuilder().build();
+            if (video.getSourceQueries() != null) {
+                copy.setSourceQueries(new ArrayList<>(video.getSourceQueries()));
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
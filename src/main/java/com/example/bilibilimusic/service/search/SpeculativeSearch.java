@@ -0,0 +1,114 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 一次投机检索（关键词提取期间，用规则清洗后的查询提前开始的检索）
+ *
+ * 由 SpeculativeRetrieval 创建并挂在 WorkingMemory 上；
+ * 检索节点在关键词确定后比较归一化查询，一致则复用结果，否则取消。
+ */
+public class SpeculativeSearch {
+
+    private final String query;
+    private final String normalizedQuery;
+    private final int limit;
+    private final long startedAt = System.currentTimeMillis();
+    private final CompletableFuture<List<VideoInfo>> result = new CompletableFuture<>();
+    private volatile long completedAt = -1;
+    private volatile boolean cancelled;
+    private volatile Future<?> task;
+
+    public SpeculativeSearch(String query, int limit) {
+        this.query = query;
+        this.normalizedQuery = normalize(query);
+        this.limit = limit;
+    }
+
+    /**
+     * 归一化：小写、按空白切分、去重排序（关键词顺序不同视为同一查询）
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).trim().split("\\s+"))
+            .filter(token -> !token.isEmpty())
+            .distinct()
+            .sorted()
+            .collect(Collectors.joining(" "));
+    }
+
+    public void complete(List<VideoInfo> videos) {
+        completedAt = System.currentTimeMillis();
+        result.complete(videos != null ? videos : List.of());
+    }
+
+    public void fail(Throwable error) {
+        completedAt = System.currentTimeMillis();
+        result.completeExceptionally(error);
+    }
+
+    /**
+     * 取消：结果作废，尚未开始的检索不再执行
+     *
+     * 协作式取消：不中断检索线程（线程可能正在等待浏览器操作），
+     * 进行中的检索通过 {@link #isCancelled()} 在翻页 / 补充详情前停止。
+     */
+    public void cancel() {
+        cancelled = true;
+        result.cancel(false);
+        Future<?> running = task;
+        if (running != null) {
+            running.cancel(false);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 等待检索结果
+     *
+     * @throws Exception 检索失败、被取消或等待超时
+     */
+    public List<VideoInfo> await(long timeoutMs) throws Exception {
+        return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean matches(String finalQuery) {
+        return normalizedQuery.equals(normalize(finalQuery));
+    }
+
+    public void setTask(Future<?> task) {
+        this.task = task;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * 检索完成时间；未完成时为 -1
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+}
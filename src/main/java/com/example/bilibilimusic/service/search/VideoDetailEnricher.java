@@ -0,0 +1,514 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.browser.BrowserLease;
+import com.example.bilibilimusic.service.browser.BrowserPool;
+import com.example.bilibilimusic.service.browser.PageReadiness;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.ElementHandle;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.WaitUntilState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 视频详情页并发补充抓取
+ *
+ * 流程：
+ * 1. 启动 N 个 worker，每个 worker 从浏览器池租借一个 headless 实例
+ * 2. worker 从共享队列中领取视频，打开详情页提取标题 / 标签 / 简介 / 播放量 / 评论数
+ * 3. 同一 host 的并发页面数受 perHostConcurrency 限制
+ * 4. 每个页面有独立的截止时间，超时或失败的视频保留搜索卡片字段（部分结果语义）
+ *
+ * 打开详情页之前先查询 VideoMetadataStore：详情新鲜的视频直接使用已知元数据，
+ * 只有统计过期的视频通过 JSON 接口刷新统计，详情页抓取成功后回写存储。
+ *
+ * 总耗时约为 ceil(视频数 / N) * 单页耗时
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VideoDetailEnricher {
+
+    private final BrowserPool browserPool;
+    private final PageReadiness pageReadiness;
+    private final VideoMetadataStore metadataStore;
+
+    /**
+     * 同时打开的详情页数（worker 数）
+     */
+    @Value("${bilibili.enrichment.concurrency:3}")
+    private int concurrency;
+
+    /**
+     * 单个 host 的并发页面上限
+     */
+    @Value("${bilibili.enrichment.per-host-concurrency:3}")
+    private int perHostConcurrency;
+
+    /**
+     * 单个详情页的截止时间（毫秒），包含导航与字段提取
+     */
+    @Value("${bilibili.enrichment.page-timeout-ms:8000}")
+    private long pageTimeoutMs;
+
+    /**
+     * 详情页 meta 就绪等待上限（毫秒）
+     */
+    @Value("${bilibili.readiness.detail-timeout-ms:5000}")
+    private long detailReadyTimeoutMs;
+
+    /**
+     * 详情页统计数据（播放量 / 评论数）可选等待上限（毫秒）
+     */
+    @Value("${bilibili.readiness.detail-stats-timeout-ms:1500}")
+    private long detailStatsTimeoutMs;
+
+    private static final List<String> DETAIL_READY_SELECTORS = List.of("meta[name='keywords']");
+    private static final String DETAIL_STATS_SELECTOR = ".view-text, .view-count, .video-data span";
+    private static final String DETAIL_META_SCRIPT = """
+            () => {
+              const meta = sel => {
+                const el = document.head && document.head.querySelector(sel);
+                return el ? (el.getAttribute('content') || '') : '';
+              };
+              return [document.title || '', meta("meta[name='keywords']"),
+                      meta("meta[itemprop='keywords']"), meta("meta[name='description']")];
+            }
+            """;
+
+    private ExecutorService executor;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        concurrency = Math.max(1, concurrency);
+        perHostConcurrency = Math.max(1, perHostConcurrency);
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "detail-enricher-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("[DetailEnricher] 初始化: concurrency={}, perHost={}, pageTimeout={}ms",
+                concurrency, perHostConcurrency, pageTimeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并发补充视频详情（原地修改 VideoInfo）
+     *
+     * @return 本次补充的统计报告
+     */
+    public EnrichmentReport enrich(List<VideoInfo> videos) {
+        return enrich(videos, video -> { }, () -> false);
+    }
+
+    /**
+     * 并发补充视频详情，每个视频处理完（成功 / 超时 / 失败）后立即回调
+     *
+     * @param onEnriched 单个视频处理完成回调（在 worker 线程中执行）
+     * @param stopSignal 提前停止信号，为 true 时 worker 不再领取新的视频
+     */
+    public EnrichmentReport enrich(List<VideoInfo> videos, Consumer<VideoInfo> onEnriched, BooleanSupplier stopSignal) {
+        EnrichmentReport report = new EnrichmentReport();
+        report.setTotal(videos.size());
+        if (videos.isEmpty()) {
+            return report;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<VideoInfo, VideoMetadataStore.Freshness> known = metadataStore.applyKnown(videos);
+        ConcurrentLinkedQueue<VideoInfo> queue = new ConcurrentLinkedQueue<>();
+        List<VideoInfo> statsOnly = new ArrayList<>();
+        for (VideoInfo video : videos) {
+            VideoMetadataStore.Freshness freshness = known.get(video);
+            if (freshness == VideoMetadataStore.Freshness.FRESH) {
+                report.cacheHits.incrementAndGet();
+                onEnriched.accept(video);
+            } else if (freshness == VideoMetadataStore.Freshness.STATS_STALE) {
+                statsOnly.add(video);
+            } else if (video.getUrl() != null && !video.getUrl().isBlank()) {
+                queue.add(video);
+            } else {
+                report.skipped.incrementAndGet();
+                onEnriched.accept(video);
+            }
+        }
+
+        int workers = Math.min(concurrency, queue.size());
+        List<Future<?>> futures = new ArrayList<>(workers + statsOnly.size());
+        // 详情新鲜、统计过期：只请求 JSON 接口刷新统计（耗时短，先于详情页提交）
+        for (VideoInfo video : statsOnly) {
+            futures.add(executor.submit(() -> {
+                if (!stopSignal.getAsBoolean()) {
+                    if (metadataStore.refreshStats(video)) {
+                        report.statsRefreshed.incrementAndGet();
+                    }
+                    report.cacheHits.incrementAndGet();
+                } else {
+                    report.skipped.incrementAndGet();
+                }
+                onEnriched.accept(video);
+            }));
+        }
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> runWorker(queue, report, onEnriched, stopSignal)));
+        }
+        // 每个页面都有截止时间，worker 必然在有限时间内结束，这里等待全部完成
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.warn("[DetailEnricher] worker 异常: {}", e.getMessage());
+            }
+        }
+        // 没有 worker 领取到的视频（浏览器池租借失败或提前停止）按跳过处理
+        report.skipped.addAndGet(queue.size());
+        report.setWallTimeMs(System.currentTimeMillis() - start);
+
+        log.info("[DetailEnricher] 详情补充完成: total={}, ok={}, timeout={}, failed={}, skipped={}, " +
+                        "metadataHits={}, statsRefreshed={}, workers={}, wall={}ms, p50={}ms, max={}ms",
+                report.getTotal(), report.getSucceeded(), report.getTimedOut(), report.getFailed(),
+                report.getSkipped(), report.getCacheHits(), report.getStatsRefreshed(), workers, report.getWallTimeMs(),
+                report.percentilePageMs(50), report.percentilePageMs(100));
+        return report;
+    }
+
+    private void runWorker(ConcurrentLinkedQueue<VideoInfo> queue, EnrichmentReport report,
+                           Consumer<VideoInfo> onEnriched, BooleanSupplier stopSignal) {
+        if (queue.isEmpty() || stopSignal.getAsBoolean()) {
+            return;
+        }
+        try (BrowserLease lease = browserPool.lease(true)) {
+            VideoInfo video;
+            while (!stopSignal.getAsBoolean() && (video = queue.poll()) != null) {
+                Semaphore hostPermit = hostPermits.computeIfAbsent(hostOf(video.getUrl()),
+                        h -> new Semaphore(perHostConcurrency));
+                hostPermit.acquireUninterruptibly();
+                try {
+                    VideoInfo current = video;
+                    // 页面操作在实例的属主线程上执行
+                    lease.execute(context -> {
+                        enrichOne(context, lease.browserId(), current, report);
+                        return null;
+                    });
+                } finally {
+                    hostPermit.release();
+                }
+                onEnriched.accept(video);
+            }
+        } catch (Exception e) {
+            log.warn("[DetailEnricher] 租借浏览器失败，worker 退出: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 抓取单个详情页（受 pageTimeoutMs 约束）
+     */
+    private void enrichOne(BrowserContext context, long browserId, VideoInfo video, EnrichmentReport report) {
+        long pageStart = System.currentTimeMillis();
+        long deadline = pageStart + pageTimeoutMs;
+        String status = "ok";
+        Page page = null;
+        try {
+            page = context.newPage();
+            page.setDefaultTimeout(pageTimeoutMs);
+            page.setDefaultNavigationTimeout(pageTimeoutMs);
+            page.navigate(video.getUrl(), new Page.NavigateOptions()
+                    .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                    .setTimeout(pageTimeoutMs));
+            // meta 标签随服务端渲染返回，出现即可提取标题 / 标签 / 简介
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                pageReadiness.await(page, "detail", DETAIL_READY_SELECTORS, Math.min(detailReadyTimeoutMs, remaining));
+            }
+            // 播放量等统计由前端渲染，短暂等待，不出现也不影响其它字段
+            remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                pageReadiness.awaitOptional(page, "detail-stats", DETAIL_STATS_SELECTOR,
+                        Math.min(detailStatsTimeoutMs, remaining));
+            }
+            // 默认超时对每个操作单独生效，提取阶段只给剩余预算，整页不超过 pageTimeoutMs
+            remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutError("详情页超过截止时间: " + video.getUrl());
+            }
+            page.setDefaultTimeout(remaining);
+            extractDetails(page, video);
+            metadataStore.recordDetail(video);
+            report.succeeded.incrementAndGet();
+        } catch (TimeoutError e) {
+            status = "timeout";
+            report.timedOut.incrementAndGet();
+        } catch (Exception e) {
+            status = "failed";
+            report.failed.incrementAndGet();
+            log.debug("[DetailEnricher] 抓取视频详情失败: {} - {}", video.getUrl(), e.getMessage());
+        } finally {
+            if (page != null) {
+                try {
+                    page.close();
+                } catch (Exception ignored) {
+                    // 归还租约时会统一清理页面
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - pageStart;
+        report.pageTimings.add(elapsed);
+        log.debug("[DetailEnricher] 详情页 {} -> {} ({}ms, browser={})",
+                video.getUrl(), status, elapsed, browserId);
+    }
+
+    /**
+     * 从详情页提取标题 / 标签 / 简介 / 播放量 / 评论数
+     */
+    private void extractDetails(Page detailPage, VideoInfo video) {
+        // 1~3. 标题 / 标签 / 简介：一次 evaluate 读取 <title> 与 meta（不自动等待，缺失的可选 meta 返回空串）
+        List<String> meta = readMeta(detailPage);
+        String detailTitle = meta.get(0);
+        if (!detailTitle.isBlank()) {
+            video.setTitle(detailTitle);
+        }
+
+        // 标签：meta[name="keywords"] 或 meta[itemprop="keywords"]
+        String keywords = !meta.get(1).isBlank() ? meta.get(1) : meta.get(2);
+        if (!keywords.isBlank()) {
+            video.setTags(keywords);
+        }
+
+        // 简介：meta[name="description"]
+        String description = meta.get(3);
+        if (!description.isBlank()) {
+            video.setDescription(description);
+        }
+
+        // 4. 播放量：尝试从页面中提取
+        Long playCount = extractPlayCount(detailPage);
+        if (playCount != null) {
+            video.setPlayCount(playCount);
+        }
+
+        // 5. 评论数：尝试从页面中提取
+        Long commentCount = extractCommentCount(detailPage);
+        if (commentCount != null) {
+            video.setCommentCount(commentCount);
+        }
+    }
+
+    /**
+     * [title, keywords, itemprop keywords, description]，缺失项为空串
+     */
+    private List<String> readMeta(Page detailPage) {
+        Object raw = detailPage.evaluate(DETAIL_META_SCRIPT);
+        List<String> values = new ArrayList<>(4);
+        if (raw instanceof List<?> list) {
+            for (Object value : list) {
+                values.add(value != null ? value.toString() : "");
+            }
+        }
+        while (values.size() < 4) {
+            values.add("");
+        }
+        return values;
+    }
+
+    private String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * 从视频详情页提取播放量
+     */
+    private Long extractPlayCount(Page page) {
+        try {
+            // B站播放量可能在多个位置，尝试多种选择器
+            ElementHandle playElement = page.querySelector(".view-text");
+            if (playElement == null) {
+                playElement = page.querySelector(".view-count");
+            }
+            if (playElement == null) {
+                playElement = page.querySelector("[class*='view']");
+            }
+
+            if (playElement != null) {
+                String text = playElement.innerText().trim();
+                return parseCountText(text);
+            }
+
+            // 备用：使用 XPath 在 info 分区找包含 "播放" 的文本
+            List<ElementHandle> spans = page.querySelectorAll(".video-info-detail span, .video-data span");
+            for (ElementHandle span : spans) {
+                String text = span.innerText().trim();
+                if (text.contains("播放") || text.contains("观看")) {
+                    // 提取数字部分
+                    String nextText = text.replaceAll("[^0-9万亿]", "");
+                    if (!nextText.isEmpty()) {
+                        return parseCountText(nextText);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("提取播放量失败: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 从视频详情页提取评论数
+     */
+    private Long extractCommentCount(Page page) {
+        try {
+            // B站评论数可能在多个位置
+            ElementHandle commentElement = page.querySelector(".reply-count");
+            if (commentElement == null) {
+                commentElement = page.querySelector(".comment-count");
+            }
+            if (commentElement == null) {
+                commentElement = page.querySelector("[class*='comment']");
+            }
+
+            if (commentElement != null) {
+                String text = commentElement.innerText().trim();
+                return parseCountText(text);
+            }
+
+            // 备用：在 info 分区找包含 "评论" 或 "弹幕" 的文本
+            List<ElementHandle> spans = page.querySelectorAll(".video-info-detail span, .video-data span");
+            for (ElementHandle span : spans) {
+                String text = span.innerText().trim();
+                if (text.contains("评论")) {
+                    String nextText = text.replaceAll("[^0-9万亿]", "");
+                    if (!nextText.isEmpty()) {
+                        return parseCountText(nextText);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("提取评论数失败: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 解析数量文本（支持 "1.2万"、"3.5亿" 等格式）
+     */
+    static Long parseCountText(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+
+        try {
+            text = text.trim().replaceAll("[,\\s]+", "");
+
+            // 处理 "万" 和 "亿"
+            if (text.contains("亿")) {
+                String numPart = text.replace("亿", "");
+                double num = Double.parseDouble(numPart);
+                return (long) (num * 100_000_000);
+            } else if (text.contains("万")) {
+                String numPart = text.replace("万", "");
+                double num = Double.parseDouble(numPart);
+                return (long) (num * 10_000);
+            } else {
+                // 直接解析数字
+                return Long.parseLong(text);
+            }
+        } catch (Exception e) {
+            log.debug("解析数量文本失败: {} - {}", text, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 详情补充统计报告
+     */
+    @Data
+    public static class EnrichmentReport {
+        private int total;
+        private long wallTimeMs;
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger cacheHits = new AtomicInteger();
+        private final AtomicInteger statsRefreshed = new AtomicInteger();
+        private final List<Long> pageTimings = Collections.synchronizedList(new ArrayList<>());
+
+        public int getSucceeded() {
+            return succeeded.get();
+        }
+
+        public int getTimedOut() {
+            return timedOut.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        /**
+         * 由元数据存储直接提供详情（未打开详情页）的视频数
+         */
+        public int getCacheHits() {
+            return cacheHits.get();
+        }
+
+        public int getStatsRefreshed() {
+            return statsRefreshed.get();
+        }
+
+        /**
+         * 单页耗时百分位（毫秒），无数据时返回 0
+         */
+        public long percentilePageMs(int percentile) {
+            List<Long> sorted;
+            synchronized (pageTimings) {
+                sorted = new ArrayList<>(pageTimings);
+            }
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+        }
+    }
+}
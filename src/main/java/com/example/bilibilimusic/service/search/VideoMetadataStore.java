@@ -0,0 +1,357 @@
+package com.example.bilibilimusic.service.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.entity.Video;
+import com.example.bilibilimusic.mapper.VideoMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 视频元数据读穿存储（Caffeine 本地缓存 → video 表）
+ *
+ * 详情补充前按 BVID 查询已知元数据，按字段新鲜度决定是否需要重新抓取：
+ * - 详情字段（标题 / 标签 / 简介 / 作者）很少变化，detailTtl 内视为新鲜
+ * - 统计字段（播放量 / 评论数）变化快，statsTtl 内视为新鲜
+ *
+ * 详情新鲜、统计过期时只通过 JSON 详情接口刷新统计，不打开详情页。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VideoMetadataStore {
+
+    private static final String PLATFORM = "bilibili";
+    private static final Pattern BVID_PATTERN = Pattern.compile("/video/(BV[a-zA-Z0-9]+)");
+
+    private final VideoMapper videoMapper;
+    private final BilibiliApiSearchProvider apiProvider;
+
+    /**
+     * 是否启用元数据存储
+     */
+    @Value("${bilibili.metadata.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 本地缓存最大条目数
+     */
+    @Value("${bilibili.metadata.cache-size:10000}")
+    private long cacheSize;
+
+    /**
+     * 本地缓存写入后过期时间（分钟），过期后重新从数据库加载
+     */
+    @Value("${bilibili.metadata.cache-ttl-minutes:30}")
+    private long cacheTtlMinutes;
+
+    /**
+     * 详情字段新鲜期（小时）
+     */
+    @Value("${bilibili.metadata.detail-ttl-hours:168}")
+    private long detailTtlHours;
+
+    /**
+     * 统计字段新鲜期（分钟）
+     */
+    @Value("${bilibili.metadata.stats-ttl-minutes:360}")
+    private long statsTtlMinutes;
+
+    private Cache<String, Video> cache;
+
+    private final LongAdder fresh = new LongAdder();
+    private final LongAdder statsStale = new LongAdder();
+    private final LongAdder detailStale = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder statsRefreshFailed = new LongAdder();
+
+    /**
+     * 已知元数据的新鲜度
+     */
+    public enum Freshness {
+        /** 未知视频 */
+        MISSING,
+        /** 详情过期，需要打开详情页 */
+        DETAIL_STALE,
+        /** 详情新鲜，统计过期，只需刷新统计 */
+        STATS_STALE,
+        /** 全部新鲜，无需抓取 */
+        FRESH
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        log.info("[Metadata] enabled={}, cacheSize={}, detailTtl={}h, statsTtl={}min",
+                enabled, cacheSize, detailTtlHours, statsTtlMinutes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 用已知元数据中的新鲜字段填充视频（原地修改），返回每个视频的新鲜度
+     *
+     * 本地缓存未命中的 BVID 一次性批量查询数据库。
+     */
+    public Map<VideoInfo, Freshness> applyKnown(List<VideoInfo> videos) {
+        // VideoInfo 的 equals/hashCode 基于可变字段，按对象身份索引
+        Map<VideoInfo, Freshness> result = new IdentityHashMap<>();
+        if (!enabled) {
+            videos.forEach(video -> result.put(video, Freshness.MISSING));
+            return result;
+        }
+
+        Map<String, Video> known = lookup(videos);
+        LocalDateTime now = LocalDateTime.now();
+        for (VideoInfo video : videos) {
+            Freshness freshness = apply(video, known.get(bvidOf(video)), now);
+            result.put(video, freshness);
+            switch (freshness) {
+                case FRESH -> fresh.increment();
+                case STATS_STALE -> statsStale.increment();
+                case DETAIL_STALE -> detailStale.increment();
+                case MISSING -> missing.increment();
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Video> lookup(List<VideoInfo> videos) {
+        Map<String, Video> known = new HashMap<>();
+        List<String> toLoad = new ArrayList<>();
+        for (VideoInfo video : videos) {
+            String bvid = bvidOf(video);
+            if (bvid == null) {
+                continue;
+            }
+            Video cached = cache.getIfPresent(bvid);
+            if (cached != null) {
+                known.put(bvid, cached);
+            } else {
+                toLoad.add(bvid);
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            try {
+                LambdaQueryWrapper<Video> wrapper = new LambdaQueryWrapper<>();
+                wrapper.eq(Video::getPlatform, PLATFORM)
+                       .in(Video::getPlatformVid, toLoad);
+                for (Video row : videoMapper.selectList(wrapper)) {
+                    cache.put(row.getPlatformVid(), row);
+                    known.put(row.getPlatformVid(), row);
+                }
+            } catch (Exception e) {
+                log.warn("[Metadata] 查询视频元数据失败，按未知处理: {}", e.getMessage());
+            }
+        }
+        return known;
+    }
+
+    private Freshness apply(VideoInfo video, Video row, LocalDateTime now) {
+        if (row == null) {
+            return Freshness.MISSING;
+        }
+        if (!isFresh(row.getDetailUpdatedAt(), Duration.ofHours(detailTtlHours), now)) {
+            return Freshness.DETAIL_STALE;
+        }
+        if (row.getTitle() != null) {
+            video.setTitle(row.getTitle());
+        }
+        if (row.getTags() != null) {
+            video.setTags(row.getTags());
+        }
+        if (row.getDescription() != null) {
+            video.setDescription(row.getDescription());
+        }
+        if (row.getAuthor() != null && (video.getAuthor() == null || "未知".equals(video.getAuthor()))) {
+            video.setAuthor(row.getAuthor());
+        }
+        // 统计字段即使过期也先填入，刷新失败时仍可用于打分
+        if (row.getPlayCount() != null) {
+            video.setPlayCount(row.getPlayCount());
+        }
+        if (row.getCommentCount() != null) {
+            video.setCommentCount(row.getCommentCount());
+        }
+        return isFresh(row.getStatsUpdatedAt(), Duration.ofMinutes(statsTtlMinutes), now)
+                ? Freshness.FRESH
+                : Freshness.STATS_STALE;
+    }
+
+    private boolean isFresh(LocalDateTime updatedAt, Duration ttl, LocalDateTime now) {
+        return updatedAt != null && updatedAt.plus(ttl).isAfter(now);
+    }
+
+    /**
+     * 只刷新统计字段（JSON 详情接口，不打开页面）
+     *
+     * @return 刷新成功返回 true；失败时保留已填入的旧统计
+     */
+    public boolean refreshStats(VideoInfo video) {
+        String bvid = bvidOf(video);
+        if (bvid == null) {
+            return false;
+        }
+        try {
+            VideoInfo view = apiProvider.fetchView(bvid);
+            if (view == null) {
+                statsRefreshFailed.increment();
+                return false;
+            }
+            if (view.getPlayCount() != null) {
+                video.setPlayCount(view.getPlayCount());
+            }
+            if (view.getCommentCount() != null) {
+                video.setCommentCount(view.getCommentCount());
+            }
+            save(video, false);
+            return true;
+        } catch (Exception e) {
+            statsRefreshFailed.increment();
+            log.debug("[Metadata] 刷新统计失败: {} - {}", bvid, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 详情页抓取成功后写入（详情与统计时间戳一起更新）
+     */
+    public void recordDetail(VideoInfo video) {
+        if (enabled) {
+            save(video, true);
+        }
+    }
+
+    private void save(VideoInfo video, boolean detail) {
+        String bvid = bvidOf(video);
+        if (bvid == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            Video row = cache.getIfPresent(bvid);
+            if (row == null) {
+                LambdaQueryWrapper<Video> wrapper = new LambdaQueryWrapper<>();
+                wrapper.eq(Video::getPlatform, PLATFORM)
+                       .eq(Video::getPlatformVid, bvid);
+                row = videoMapper.selectOne(wrapper);
+            }
+
+            // 缓存中的对象可能被其它线程读取，写入新副本
+            Video updated = new Video();
+            if (row != null) {
+                updated.setId(row.getId());
+                updated.setTitle(row.getTitle());
+                updated.setTags(row.getTags());
+                updated.setDescription(row.getDescription());
+                updated.setAuthor(row.getAuthor());
+                updated.setDurationSec(row.getDurationSec());
+                updated.setUrl(row.getUrl());
+                updated.setCreatedAt(row.getCreatedAt());
+                updated.setDetailUpdatedAt(row.getDetailUpdatedAt());
+            }
+            updated.setPlatform(PLATFORM);
+            updated.setPlatformVid(bvid);
+            if (detail) {
+                if (video.getTitle() != null) {
+                    updated.setTitle(video.getTitle());
+                }
+                if (video.getTags() != null) {
+                    updated.setTags(video.getTags());
+                }
+                if (video.getDescription() != null) {
+                    updated.setDescription(video.getDescription());
+                }
+                if (video.getAuthor() != null && !"未知".equals(video.getAuthor())) {
+                    updated.setAuthor(video.getAuthor());
+                }
+                updated.setDetailUpdatedAt(now);
+            }
+            if (updated.getTitle() == null) {
+                updated.setTitle(video.getTitle() != null ? video.getTitle() : bvid);
+            }
+            if (updated.getUrl() == null) {
+                updated.setUrl(video.getUrl() != null ? video.getUrl() : "https://www.bilibili.com/video/" + bvid);
+            }
+            // 未提供的统计沿用已存储值（数据库按非空字段更新，缓存需与之一致）
+            updated.setPlayCount(video.getPlayCount() != null
+                    ? video.getPlayCount() : (row != null ? row.getPlayCount() : null));
+            updated.setCommentCount(video.getCommentCount() != null
+                    ? video.getCommentCount() : (row != null ? row.getCommentCount() : null));
+            updated.setStatsUpdatedAt(video.getPlayCount() != null || video.getCommentCount() != null
+                    ? now : (row != null ? row.getStatsUpdatedAt() : null));
+
+            if (updated.getId() == null) {
+                updated.setCreatedAt(now);
+                videoMapper.insert(updated);
+            } else {
+                videoMapper.updateById(updated);
+            }
+            cache.put(bvid, updated);
+        } catch (Exception e) {
+            // 并发插入同一 BVID 时唯一键冲突等情况，丢弃本地缓存下次重新加载
+            cache.invalidate(bvid);
+            log.debug("[Metadata] 写入视频元数据失败: {} - {}", bvid, e.getMessage());
+        }
+    }
+
+    /**
+     * 外部更新 video 表后使本地缓存失效
+     */
+    public void invalidate(String bvid) {
+        if (bvid != null) {
+            cache.invalidate(bvid);
+        }
+    }
+
+    /**
+     * 读取 VideoInfo 的 BVID（缺失时从 URL 解析）
+     */
+    static String bvidOf(VideoInfo video) {
+        if (video.getBvid() != null && !video.getBvid().isBlank()) {
+            return video.getBvid();
+        }
+        if (video.getUrl() == null) {
+            return null;
+        }
+        Matcher matcher = BVID_PATTERN.matcher(video.getUrl());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * 命中统计快照
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("fresh", fresh.sum());
+        snapshot.put("statsStale", statsStale.sum());
+        snapshot.put("detailStale", detailStale.sum());
+        snapshot.put("missing", missing.sum());
+        snapshot.put("statsRefreshFailed", statsRefreshFailed.sum());
+        snapshot.put("cachedEntries", cache.estimatedSize());
+        return snapshot;
+    }
+}
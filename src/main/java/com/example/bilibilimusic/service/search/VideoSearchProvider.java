@@ -0,0 +1,64 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+
+import java.util.List;
+
+/**
+ * 视频搜索提供方
+ *
+ * 实现：
+ * - {@link BilibiliApiSearchProvider}：直接请求 B 站 JSON 接口（快速路径）
+ * - {@link PlaywrightSearchProvider}：渲染搜索页 + 详情页抓取（兜底）
+ *
+ * 选择策略见 BilibiliSearchService：按配置顺序依次尝试，
+ * 抛出异常或返回空结果时回退到下一个提供方。
+ */
+public interface VideoSearchProvider {
+
+    /**
+     * 提供方名称（用于配置与日志）
+     */
+    String getName();
+
+    /**
+     * 搜索视频
+     *
+     * @param query 搜索词
+     * @param limit 最多返回的数量
+     * @return 视频列表；失败时抛出异常，由调用方决定是否回退
+     */
+    List<VideoInfo> search(String query, int limit);
+
+    /**
+     * 卡片级搜索：只返回搜索结果页上的字段，不抓取详情页（默认与 search 相同）
+     *
+     * 用于懒加载详情：先用卡片字段打分，再按需补充详情。
+     */
+    default List<VideoInfo> searchCards(String query, int limit) {
+        return search(query, limit);
+    }
+
+    /**
+     * 分页卡片搜索（用于多页扇出检索）；默认只支持第一页
+     *
+     * @param page     页码（从 1 开始）
+     * @param pageSize 每页数量
+     */
+    default List<VideoInfo> searchPage(String query, int page, int pageSize) {
+        return page == 1 ? searchCards(query, pageSize) : List.of();
+    }
+
+    /**
+     * 流式搜索：逐个推送视频到 stream（默认实现为搜索完成后一次性推送）
+     *
+     * 实现方不负责调用 stream.complete()，由调用方统一收尾。
+     */
+    default void stream(String query, int limit, VideoStream stream) {
+        for (VideoInfo video : search(query, limit)) {
+            if (!stream.emit(video)) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.bilibilimusic.service.search;
+
+import com.example.bilibilimusic.dto.VideoInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 流式检索通道（生产者：搜索线程；消费者：判断循环）
+ *
+ * - 有界队列：生产者在队列满时阻塞，直到消费者取走或收到停止信号
+ * - 阻塞只发生在流式检索线程上：需要在共享线程池中产出的生产者先用 {@link #reserve} 预留容量，
+ *   再以 {@link #emitReserved} 非阻塞推送，避免慢消费者占住共享 worker 与浏览器租约
+ * - 提前停止：消费者达到 targetCount 后调用 {@link #cancel()}，生产者不再抓取新的详情页
+ * - 自然完成（未被取消）时回调 onComplete，携带全部已产出的视频（用于写入搜索缓存）
+ */
+@Slf4j
+public class VideoStream {
+
+    private static final VideoInfo END = VideoInfo.builder().build();
+
+    private final BlockingQueue<VideoInfo> queue = new LinkedBlockingQueue<>();
+    private final Semaphore slots;
+    private final long itemTimeoutMs;
+    private final List<VideoInfo> produced = new ArrayList<>();
+
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+    private boolean endReceived;
+    private Consumer<List<VideoInfo>> onComplete;
+    private boolean completedNaturally;
+
+    /**
+     * @param capacity      队列容量
+     * @param itemTimeoutMs 消费者等待单个视频的上限（毫秒）
+     */
+    public VideoStream(int capacity, long itemTimeoutMs) {
+        this.slots = new Semaphore(Math.max(1, capacity));
+        this.itemTimeoutMs = itemTimeoutMs;
+    }
+
+    // ==================== 生产者 ====================
+
+    /**
+     * 推送一个视频；队列满时阻塞等待（只应在流式检索线程上调用）
+     *
+     * @return false 表示消费者已发出停止信号，生产者应尽快结束
+     */
+    public boolean emit(VideoInfo video) {
+        try {
+            while (!cancelled) {
+                if (slots.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                    synchronized (produced) {
+                        produced.add(video);
+                    }
+                    queue.add(video);
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 预留最多 max 个队列位置（阻塞等待至少一个空位，只应在流式检索线程上调用）
+     *
+     * @return 预留数量；消费者已发出停止信号时返回 0
+     */
+    public int reserve(int max) {
+        if (max <= 0) {
+            return 0;
+        }
+        try {
+            while (!cancelled) {
+                if (slots.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                    int reserved = 1 + slots.drainPermits();
+                    if (reserved > max) {
+                        slots.release(reserved - max);
+                        reserved = max;
+                    }
+                    return reserved;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    /**
+     * 推送一个已预留位置的视频（不阻塞，可在任意线程调用）
+     */
+    public void emitReserved(VideoInfo video) {
+        synchronized (produced) {
+            produced.add(video);
+        }
+        queue.add(video);
+    }
+
+    /**
+     * 归还未使用的预留位置
+     */
+    public void unreserve(int count) {
+        if (count > 0) {
+            slots.release(count);
+        }
+    }
+
+    /**
+     * 生产结束（正常完成或失败都需要调用）
+     */
+    public void complete() {
+        Consumer<List<VideoInfo>> callback;
+        List<VideoInfo> snapshot;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            completedNaturally = !cancelled;
+            callback = completedNaturally ? onComplete : null;
+        }
+        // 结束标记不占用容量
+        queue.add(END);
+        if (callback != null) {
+            synchronized (produced) {
+                snapshot = new ArrayList<>(produced);
+            }
+            callback.accept(snapshot);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // ==================== 消费者 ====================
+
+    /**
+     * 等待下一个视频
+     *
+     * @return 下一个视频；流已结束或等待超时返回 null
+     */
+    public VideoInfo next() {
+        if (endReceived) {
+            return null;
+        }
+        try {
+            VideoInfo video = queue.poll(itemTimeoutMs, TimeUnit.MILLISECONDS);
+            if (video == null) {
+                log.warn("[VideoStream] 等待下一个视频超时 ({}ms)，停止流式检索", itemTimeoutMs);
+                cancel();
+                endReceived = true;
+                return null;
+            }
+            if (video == END) {
+                endReceived = true;
+                return null;
+            }
+            slots.release();
+            return video;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            endReceived = true;
+            return null;
+        }
+    }
+
+    /**
+     * 非阻塞地取出当前已到达的全部视频
+     */
+    public List<VideoInfo> drainAvailable() {
+        List<VideoInfo> drained = new ArrayList<>();
+        if (endReceived) {
+            return drained;
+        }
+        VideoInfo video;
+        while ((video = queue.poll()) != null) {
+            if (video == END) {
+                endReceived = true;
+                break;
+            }
+            slots.release();
+            drained.add(video);
+        }
+        return drained;
+    }
+
+    /**
+     * 消费者是否已读到流的末尾
+     */
+    public boolean isExhausted() {
+        return endReceived;
+    }
+
+    /**
+     * 提前停止信号（目标已达成或执行结束）
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            log.debug("[VideoStream] 收到停止信号，已产出 {} 个视频", producedCount());
+        }
+    }
+
+    /**
+     * 注册自然完成回调；若流已自然完成则立即回调
+     */
+    public void onComplete(Consumer<List<VideoInfo>> callback) {
+        boolean runNow;
+        synchronized (this) {
+            onComplete = callback;
+            runNow = finished && completedNaturally;
+        }
+        if (runNow) {
+            List<VideoInfo> snapshot;
+            synchronized (produced) {
+                snapshot = new ArrayList<>(produced);
+            }
+            callback.accept(snapshot);
+        }
+    }
+
+    public int producedCount() {
+        synchronized (produced) {
+            return produced.size();
+        }
+    }
+}
@@ -2,16 +2,25 @@ package com.example.bilibilimusic.skill;
 
 import com.example.bilibilimusic.context.PlaylistContext;
 import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.example.bilibilimusic.service.llm.LlmException;
+import com.example.bilibilimusic.service.llm.LlmOverloadedException;
+import com.example.bilibilimusic.service.llm.LlmRequest;
+import com.example.bilibilimusic.service.llm.LlmResponse;
+import com.example.bilibilimusic.service.llm.StructuredOutputDecoder;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -24,19 +33,80 @@ import java.util.stream.Collectors;
  * - 决定哪些视频适合进入最终歌单
  * 
  * 📌 LLM 只负责"判断"，不再负责生成内容
+ * 
+ * 注意：当前所有策略的判断循环都经 RelevanceDecisionNode → VideoRelevanceScorer 决策（不调用 LLM），
+ * execute / JudgeVideoNode 未接入任何状态图，这里的 LLM（批量）判断只在直接调用本 Skill 时生效。
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class CurationSkill implements Skill {
     
-    private final WebClient ollamaWebClient;
+    private final StructuredOutputDecoder decoder;
     private final VideoRelevanceScorer relevanceScorer;
     private final VideoDuplicateFilter duplicateFilter;
+    private final AgentMetricsService metricsService;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
-    @Value("${ollama.model}")
-    private String model;
+    private static final String ACCEPT = "accept";
+    private static final String REJECT = "reject";
+    
+    /**
+     * 单条判断输出的 JSON Schema
+     */
+    private static final String JUDGEMENT_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "decision": {"type": "string", "enum": ["accept", "reject"]}
+          },
+          "required": ["decision"]
+        }
+        """;
+    
+    /**
+     * 批量判断输出的 JSON Schema
+     */
+    private static final String BATCH_JUDGEMENT_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "results": {
+              "type": "array",
+              "items": {
+                "type": "object",
+                "properties": {
+                  "index": {"type": "integer"},
+                  "decision": {"type": "string", "enum": ["accept", "reject"]}
+                },
+                "required": ["index", "decision"]
+              }
+            }
+          },
+          "required": ["results"]
+        }
+        """;
+    
+    private JsonNode judgementSchema;
+    private JsonNode batchJudgementSchema;
+    
+    /**
+     * 单个边界视频 LLM 判断截止时间（超时按拒绝处理）
+     */
+    @Value("${ollama.deadline.judgement-ms:10000}")
+    private long judgementTimeoutMs;
+    
+    /**
+     * 一批边界视频 LLM 判断截止时间
+     */
+    @Value("${ollama.deadline.batch-judgement-ms:30000}")
+    private long batchJudgementTimeoutMs;
+    
+    /**
+     * 每次批量判断的视频数（1 表示关闭批量）
+     */
+    @Value("${ollama.judgement.batch-size:8}")
+    private int judgementBatchSize;
     
     // 评分阈值配置（可自适应调整）
     private int minScoreThreshold = 3;  // 最低接受分数（目前未直接使用，预留）
@@ -44,6 +114,12 @@ public class CurationSkill implements Skill {
     private int llmThresholdHigh = 8;   // 分数高于此值，直接接受
     // 介于两者之间，调用LLM做最终判断
     
+    @PostConstruct
+    public void init() throws JsonProcessingException {
+        judgementSchema = objectMapper.readTree(JUDGEMENT_SCHEMA);
+        batchJudgementSchema = objectMapper.readTree(BATCH_JUDGEMENT_SCHEMA);
+    }
+    
     @Override
     public boolean execute(PlaylistContext context) {
         try {
@@ -63,6 +139,7 @@ public class CurationSkill implements Skill {
             // 2. 使用评分系统评估每个视频
             List<VideoRelevanceScorer.ScoringResult> scoringResults = new ArrayList<>();
             List<VideoInfo> selectedVideos = new ArrayList<>();
+            List<VideoInfo> borderlineVideos = new ArrayList<>();
             
             for (VideoInfo video : deduplicatedVideos) {
                 // 计算相关性分数
@@ -95,12 +172,17 @@ public class CurationSkill implements Skill {
                     // 低分直接拒绝
                     log.debug("[CurationSkill] 低分直接拒绝 ({}): {}", result.getScore(), video.getTitle());
                 } else {
-                    // 边界情况，调用LLM做最终判断
-                    log.info("[CurationSkill] 边界分数 ({})，调用LLM判断: {}", 
+                    // 边界情况，收集后统一交给LLM批量判断
+                    log.info("[CurationSkill] 边界分数 ({})，等待LLM判断: {}", 
                         result.getScore(), video.getTitle());
-                    
-                    boolean llmAccept = judgeVideoWithLLM(video, context.getIntent());
-                    if (llmAccept) {
+                    borderlineVideos.add(video);
+                }
+            }
+            
+            if (!borderlineVideos.isEmpty()) {
+                Map<VideoInfo, Boolean> decisions = judgeVideosWithLLM(borderlineVideos, context.getIntent());
+                for (VideoInfo video : borderlineVideos) {
+                    if (Boolean.TRUE.equals(decisions.get(video))) {
                         selectedVideos.add(video);
                         log.info("[CurationSkill] LLM判断接受: {}", video.getTitle());
                     } else {
@@ -167,36 +249,18 @@ public class CurationSkill implements Skill {
             }
             String prompt = buildJudgementPrompt(video, intent);
     
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("model", model);
-            payload.put("stream", false);
-            
-            Map<String, Object> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", getJudgementSystemPrompt());
-            
-            Map<String, Object> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", prompt);
-            
-            payload.put("messages", List.of(systemMessage, userMessage));
-            
-            Map<String, Object> response = ollamaWebClient.post()
-                .uri("/api/chat")
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
-            
-            if (response != null && response.containsKey("message")) {
-                Map<String, Object> message = (Map<String, Object>) response.get("message");
-                String content = (String) message.get("content");
-                
-                // 解析结果：包含"accept" 或 "true"
-                String lowerContent = content.toLowerCase();
-                return lowerContent.contains("accept") || lowerContent.contains("true") || lowerContent.contains("接受");
-            }
+            StructuredOutputDecoder.Decoded<Judgement> decoded = decoder.decode(LlmRequest.builder()
+                .purpose("judgement")
+                .promptName("relevance_decision")
+                .systemPrompt(getJudgementSystemPrompt())
+                .userPrompt(prompt)
+                .timeout(Duration.ofMillis(judgementTimeoutMs))
+                .build(), Judgement.class, judgementSchema, this::validateJudgement);
+            recordJudgementCall("single", 1, decoded.response());
+            return ACCEPT.equalsIgnoreCase(decoded.value().decision());
             
+        } catch (LlmOverloadedException e) {
+            log.warn("[CurationSkill] LLM 繁忙，按拒绝处理: {}", video.getTitle());
         } catch (Exception e) {
             log.error("[CurationSkill] LLM判断失败", e);
         }
@@ -204,6 +268,139 @@ public class CurationSkill implements Skill {
         // LLM失败时，默认拒绝
         return false;
     }
+    
+    /**
+     * 批量 LLM 判断边界视频
+     *
+     * 每 judgementBatchSize 个视频合并为一个 Prompt，要求按序号输出 JSON 判断结果；
+     * 解析失败或缺少某个序号时，对应视频退回单条判断；调用超时或被准入拒绝时整批按拒绝处理。
+     *
+     * @return 视频 → 是否接受（按对象身份索引）
+     */
+    public Map<VideoInfo, Boolean> judgeVideosWithLLM(List<VideoInfo> videos, com.example.bilibilimusic.context.UserIntent intent) {
+        Map<VideoInfo, Boolean> decisions = new IdentityHashMap<>();
+        if (videos == null || videos.isEmpty()) {
+            return decisions;
+        }
+        if (parseModeTags(intent != null ? intent.getMode() : null).contains("low_cost")) {
+            log.info("[CurationSkill] 低成本模式：跳过 LLM 批量判断，默认拒绝 {} 个边界视频", videos.size());
+            videos.forEach(video -> decisions.put(video, false));
+            return decisions;
+        }
+        
+        int batchSize = Math.max(1, judgementBatchSize);
+        for (int from = 0; from < videos.size(); from += batchSize) {
+            List<VideoInfo> chunk = videos.subList(from, Math.min(videos.size(), from + batchSize));
+            if (chunk.size() == 1) {
+                decisions.put(chunk.get(0), judgeVideoWithLLM(chunk.get(0), intent));
+                continue;
+            }
+            Map<Integer, Boolean> parsed = judgeBatch(chunk, intent);
+            for (int i = 0; i < chunk.size(); i++) {
+                Boolean decision = parsed.get(i + 1);
+                if (decision == null) {
+                    // 批量结果缺失该序号，退回单条判断
+                    decision = judgeVideoWithLLM(chunk.get(i), intent);
+                }
+                decisions.put(chunk.get(i), decision);
+            }
+        }
+        return decisions;
+    }
+    
+    /**
+     * 一次调用判断一批视频
+     *
+     * @return 序号（从 1 开始）→ 是否接受；调用或解析失败时返回空
+     */
+    private Map<Integer, Boolean> judgeBatch(List<VideoInfo> chunk, com.example.bilibilimusic.context.UserIntent intent) {
+        try {
+            StructuredOutputDecoder.Decoded<BatchJudgement> decoded = decoder.decode(LlmRequest.builder()
+                .purpose("batch_judgement")
+                .promptName("relevance_decision")
+                .systemPrompt(getBatchJudgementSystemPrompt())
+                .userPrompt(buildBatchJudgementPrompt(chunk, intent))
+                .timeout(Duration.ofMillis(batchJudgementTimeoutMs))
+                .build(), BatchJudgement.class, batchJudgementSchema, result -> validateBatch(result, chunk.size()));
+            LlmResponse response = decoded.response();
+            recordJudgementCall("batch", chunk.size(), response);
+            Map<Integer, Boolean> parsed = new HashMap<>();
+            for (BatchJudgement.Item item : decoded.value().results()) {
+                parsed.put(item.index(), ACCEPT.equalsIgnoreCase(item.decision()));
+            }
+            if (parsed.size() < chunk.size()) {
+                metricsService.recordJudgementBatchFallback(chunk.size() - parsed.size());
+                log.warn("[CurationSkill] 批量判断结果不完整: {}/{}，缺失项退回单条判断", parsed.size(), chunk.size());
+            }
+            log.info("[CurationSkill] 批量判断 {} 个视频: 接受 {}，耗时 {}ms，tokens {}/{}",
+                chunk.size(), parsed.values().stream().filter(Boolean::booleanValue).count(),
+                response.getDurationMs(), response.getPromptTokens(), response.getCompletionTokens());
+            return parsed;
+        } catch (LlmException e) {
+            if (!(e instanceof LlmOverloadedException) && !e.isTimeout()) {
+                metricsService.recordJudgementBatchFallback(chunk.size());
+                log.warn("[CurationSkill] 批量判断失败，退回单条判断: {}", e.getMessage());
+                return Collections.emptyMap();
+            }
+            // 模型繁忙或超时时不再逐条重试（只会继续排队、加重卡住的模型），整批按拒绝处理
+            log.warn("[CurationSkill] LLM {}，{} 个边界视频按拒绝处理",
+                e.isTimeout() ? "超时" : "繁忙", chunk.size());
+            Map<Integer, Boolean> rejected = new HashMap<>();
+            for (int i = 1; i <= chunk.size(); i++) {
+                rejected.put(i, false);
+            }
+            return rejected;
+        } catch (Exception e) {
+            metricsService.recordJudgementBatchFallback(chunk.size());
+            log.warn("[CurationSkill] 批量判断失败，退回单条判断: {}", e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+    
+    /**
+     * 单条判断校验：decision 只能是 accept / reject
+     */
+    private String validateJudgement(Judgement judgement) {
+        return isDecision(judgement.decision()) ? null : "decision 无效: " + judgement.decision();
+    }
+    
+    /**
+     * 批量判断校验：序号在范围内、decision 合法、序号不重复；允许缺项（缺失项退回单条判断）
+     */
+    private String validateBatch(BatchJudgement batch, int size) {
+        if (batch.results() == null || batch.results().isEmpty()) {
+            return "results 为空";
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (BatchJudgement.Item item : batch.results()) {
+            if (item == null || item.index() == null || item.index() < 1 || item.index() > size) {
+                return "index 超出范围 1-" + size + ": " + (item != null ? item.index() : null);
+            }
+            if (!isDecision(item.decision())) {
+                return "index " + item.index() + " 的 decision 无效: " + item.decision();
+            }
+            if (!seen.add(item.index())) {
+                return "index 重复: " + item.index();
+            }
+        }
+        return null;
+    }
+    
+    private boolean isDecision(String decision) {
+        return ACCEPT.equalsIgnoreCase(decision) || REJECT.equalsIgnoreCase(decision);
+    }
+    
+    /**
+     * 记录批量 / 单条判断的调用（缓存命中未消耗模型调用，不计入）
+     */
+    private void recordJudgementCall(String mode, int items, LlmResponse response) {
+        if (response.isCached()) {
+            return;
+        }
+        long tokens = (response.getPromptTokens() != null ? response.getPromptTokens() : 0)
+            + (response.getCompletionTokens() != null ? response.getCompletionTokens() : 0);
+        metricsService.recordJudgementCall(mode, items, tokens, response.getDurationMs());
+    }
         
     private java.util.Set<String> parseModeTags(String mode) {
         if (mode == null || mode.isBlank()) {
@@ -227,7 +424,7 @@ public class CurationSkill implements Skill {
             "作者：%s\n" +
             "时长：%s\n" +
             "\n请判断这个视频是否符合用户需求。\n" +
-            "只需回答 'accept' 或 'reject'。",
+            "只输出 JSON：{\"decision\": \"accept\"} 或 {\"decision\": \"reject\"}。",
             intent.getQuery(),
             intent.getKeywords() != null ? String.join(", ", intent.getKeywords()) : "",
             video.getTitle(),
@@ -236,13 +433,43 @@ public class CurationSkill implements Skill {
         );
     }
     
+    /**
+     * 构建批量判断 Prompt
+     */
+    private String buildBatchJudgementPrompt(List<VideoInfo> videos, com.example.bilibilimusic.context.UserIntent intent) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("用户需求：").append(intent.getQuery()).append("\n");
+        sb.append("关键词：").append(intent.getKeywords() != null ? String.join(", ", intent.getKeywords()) : "").append("\n");
+        sb.append("\n视频列表：\n");
+        for (int i = 0; i < videos.size(); i++) {
+            VideoInfo video = videos.get(i);
+            sb.append(i + 1).append(". 标题：").append(video.getTitle())
+              .append(" | 作者：").append(video.getAuthor())
+              .append(" | 时长：").append(video.getDuration())
+              .append("\n");
+        }
+        sb.append("\n请逐个判断以上视频是否符合用户需求。");
+        return sb.toString();
+    }
+    
+    /**
+     * 批量判断 Prompt 系统设定
+     */
+    private String getBatchJudgementSystemPrompt() {
+        return "你是一个视频相关性判断器。\n" +
+               "你的任务是逐个判断列表中的视频是否符合用户需求。\n" +
+               "只输出 JSON，不要有其他内容，格式：\n" +
+               "{\"results\": [{\"index\": 1, \"decision\": \"accept\"}, {\"index\": 2, \"decision\": \"reject\"}]}\n" +
+               "index 为视频序号，decision 只能是 accept 或 reject，每个视频都必须给出结果。";
+    }
+    
     /**
      * 判断 Prompt 系统设定
      */
     private String getJudgementSystemPrompt() {
         return "你是一个视频相关性判断器。\n" +
                "你的任务是判断视频是否符合用户需求。\n" +
-               "只能回答 'accept' 或 'reject'，不要有其他内容。";
+               "只输出 JSON，不要有其他内容，格式：{\"decision\": \"accept\"}，decision 只能是 accept 或 reject。";
     }
     
     @Override
@@ -276,4 +503,22 @@ public class CurationSkill implements Skill {
         this.llmThresholdLow = normalizedLow;
         this.llmThresholdHigh = normalizedHigh;
     }
+
+    /**
+     * 单条判断输出
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Judgement(String decision) {
+    }
+    
+    /**
+     * 批量判断输出
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record BatchJudgement(List<Item> results) {
+        
+        @JsonIgnoreProperties(ignoreUnknown = true)
+        record Item(Integer index, String decision) {
+        }
+    }
 }
@@ -0,0 +1,149 @@
+package com.example.bilibilimusic.skill;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 规则关键词提取的离线评估
+ *
+ * 启动时（ollama.keyword-rules.evaluation.enabled=true）对语料逐条运行规则提取与 LLM 提取，
+ * 两边都经过同一规则后处理得到最终检索关键词后比较：
+ * - 快速路径占比：规则置信度达标、线上会跳过 LLM 的查询比例（即 LLM 调用减少量）
+ * - 快速路径一致率 / 平均 Jaccard：这部分查询上规则结果与 LLM 结果的差异（即质量损失）
+ *
+ * 逐条结果写入 TSV，便于人工复核不一致的查询。
+ */
+@Component
+@ConditionalOnProperty(name = "ollama.keyword-rules.evaluation.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class KeywordRuleEvaluationRunner implements ApplicationRunner {
+
+    private final RuleKeywordExtractor ruleExtractor;
+    private final KeywordExtractionSkill keywordExtractionSkill;
+    private final ResourceLoader resourceLoader;
+
+    /**
+     * 评估语料（每行一个查询，# 开头为注释）
+     */
+    @Value("${ollama.keyword-rules.evaluation.corpus:classpath:keyword/eval-queries.txt}")
+    private String corpusLocation;
+
+    /**
+     * 逐条结果输出文件
+     */
+    @Value("${ollama.keyword-rules.evaluation.output:keyword-rule-eval.tsv}")
+    private String outputPath;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> queries = loadCorpus();
+        if (queries.isEmpty()) {
+            log.warn("[KeywordEval] 语料为空: {}", corpusLocation);
+            return;
+        }
+        log.info("[KeywordEval] 开始评估 {} 条查询", queries.size());
+
+        int fastPath = 0;
+        int fastPathAgree = 0;
+        int allAgree = 0;
+        double fastPathJaccard = 0;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(outputPath), StandardCharsets.UTF_8))) {
+            out.println("query\tconfidence\tfast_path\trule_keywords\tllm_keywords\tjaccard");
+            for (String query : queries) {
+                RuleKeywordExtractor.RuleResult rule = ruleExtractor.extract(query);
+                boolean confident = ruleExtractor.isConfident(rule);
+                Set<String> ruleKeywords = finalKeywords(rule.getKeywords(), query);
+                Set<String> llmKeywords = finalKeywords(keywordExtractionSkill.extractKeywordsWithLlm(query), query);
+                double jaccard = jaccard(ruleKeywords, llmKeywords);
+                if (jaccard == 1.0) {
+                    allAgree++;
+                }
+                if (confident) {
+                    fastPath++;
+                    fastPathJaccard += jaccard;
+                    if (jaccard == 1.0) {
+                        fastPathAgree++;
+                    }
+                }
+                out.printf("%s\t%.2f\t%s\t%s\t%s\t%.2f%n", query, rule.getConfidence(), confident,
+                    String.join(" ", ruleKeywords), String.join(" ", llmKeywords), jaccard);
+            }
+        }
+
+        int total = queries.size();
+        log.info("[KeywordEval] 完成: 共 {} 条，快速路径 {} 条（LLM 调用减少 {}%），全量一致率 {}%",
+            total, fastPath, percent(fastPath, total), percent(allAgree, total));
+        log.info("[KeywordEval] 快速路径一致率 {}%，平均 Jaccard {}，明细: {}",
+            percent(fastPathAgree, fastPath),
+            fastPath > 0 ? String.format("%.3f", fastPathJaccard / fastPath) : "-",
+            Path.of(outputPath).toAbsolutePath());
+    }
+
+    /**
+     * 与线上一致：关键词拼接后经规则后处理，再按空格切分
+     */
+    private Set<String> finalKeywords(List<String> keywords, String query) {
+        if (keywords == null || keywords.isEmpty()) {
+            return Set.of();
+        }
+        String cleaned = ruleExtractor.applyRuleBasedFallback(String.join(" ", keywords), query);
+        Set<String> result = new LinkedHashSet<>();
+        for (String part : cleaned.toLowerCase().split("\\s+")) {
+            if (!part.isEmpty()) {
+                result.add(part);
+            }
+        }
+        return result;
+    }
+
+    private double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> intersection = new HashSet<>(a);
+        intersection.retainAll(b);
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return (double) intersection.size() / union.size();
+    }
+
+    private String percent(int part, int total) {
+        return total > 0 ? String.format("%.1f", part * 100.0 / total) : "-";
+    }
+
+    private List<String> loadCorpus() throws Exception {
+        Resource resource = resourceLoader.getResource(corpusLocation);
+        if (!resource.exists()) {
+            return List.of();
+        }
+        List<String> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            reader.lines()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .forEach(queries::add);
+        }
+        return queries;
+    }
+}
@@ -1,13 +1,20 @@
 package com.example.bilibilimusic.skill;
 
 import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.context.UserIntent;
 import com.example.bilibilimusic.dto.VideoInfo;
 import com.example.bilibilimusic.service.BilibiliSearchService;
+import com.example.bilibilimusic.service.RetrievalSizingService;
+import com.example.bilibilimusic.service.search.FanOutSearchEngine;
+import com.example.bilibilimusic.service.search.VideoStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * 视频检索能力
@@ -21,6 +28,26 @@ import java.util.List;
 public class RetrievalSkill implements Skill {
     
     private final BilibiliSearchService searchService;
+    private final FanOutSearchEngine fanOutSearchEngine;
+    private final RetrievalSizingService sizingService;
+    
+    /**
+     * 是否默认开启流式检索（也可通过 mode 标签 streaming 按请求开启）
+     */
+    @Value("${bilibili.retrieval.streaming:false}")
+    private boolean streamingEnabled;
+    
+    /**
+     * 懒加载详情：检索只返回卡片，详情由 DetailEnrichmentNode 按需补充
+     */
+    @Value("${bilibili.enrichment.lazy:true}")
+    private boolean lazyEnrichment;
+    
+    /**
+     * 多关键词 × 多页扇出检索（关闭时退化为单查询首页）
+     */
+    @Value("${bilibili.fanout.enabled:true}")
+    private boolean fanOutEnabled;
     
     @Override
     public boolean execute(PlaylistContext context) {
@@ -35,10 +62,14 @@ public class RetrievalSkill implements Skill {
                 query = String.join(" ", context.getIntent().getKeywords());
             }
             
-            List<VideoInfo> videos = searchService.search(
-                query,
-                context.getIntent().getLimit()
-            );
+            applyPredictedLimit(context);
+            
+            List<VideoInfo> videos;
+            if (isStreaming(context)) {
+                videos = startStreaming(context, query);
+            } else {
+                videos = search(query, context.getIntent().getKeywords(), context.getIntent().getLimit());
+            }
             
             context.setSearchResults(videos);
             context.setCurrentStage(PlaylistContext.Stage.VIDEO_JUDGEMENT_LOOP);
@@ -53,6 +84,76 @@ public class RetrievalSkill implements Skill {
         }
     }
     
+    /**
+     * 关键词确定后按历史接受率调整检索数量（无历史时保留默认公式）
+     */
+    public void applyPredictedLimit(PlaylistContext context) {
+        int predicted = predictLimit(context.getIntent());
+        if (predicted != context.getIntent().getLimit()) {
+            log.info("[RetrievalSkill] 检索数量按历史接受率调整：{} -> {}", context.getIntent().getLimit(), predicted);
+            context.getIntent().setLimit(predicted);
+        }
+    }
+    
+    /**
+     * 按历史接受率预测检索数量（不修改意图；无历史时返回当前 limit）
+     */
+    public int predictLimit(UserIntent intent) {
+        int predicted = sizingService.predictLimit(intent);
+        return predicted > 0 ? predicted : intent.getLimit();
+    }
+    
+    /**
+     * 非流式检索（不修改上下文，供投机检索等在关键词确定前调用）
+     */
+    public List<VideoInfo> search(String query, List<String> keywords, int limit) {
+        return search(query, keywords, limit, () -> false);
+    }
+    
+    /**
+     * 可协作取消的非流式检索（扇出检索在翻页 / 补充详情前检查 stopSignal）
+     */
+    public List<VideoInfo> search(String query, List<String> keywords, int limit, BooleanSupplier stopSignal) {
+        if (fanOutEnabled) {
+            return fanOutSearchEngine.search(query, keywords, limit, lazyEnrichment, stopSignal);
+        }
+        if (lazyEnrichment) {
+            return searchService.searchCards(query, limit);
+        }
+        return searchService.search(query, limit);
+    }
+    
+    /**
+     * 流式模式：后台检索，等到第一个视频到达即返回，其余视频由判断循环边到达边消费
+     */
+    private List<VideoInfo> startStreaming(PlaylistContext context, String query) {
+        VideoStream stream = searchService.stream(query, context.getIntent().getLimit());
+        context.setVideoStream(stream);
+        
+        List<VideoInfo> videos = new ArrayList<>();
+        VideoInfo first = stream.next();
+        if (first != null) {
+            videos.add(first);
+            videos.addAll(stream.drainAvailable());
+        }
+        log.info("[RetrievalSkill] 流式检索：首批到达 {} 个视频", videos.size());
+        return videos;
+    }
+    
+    public boolean isStreaming(PlaylistContext context) {
+        return streamingEnabled || parseModeTags(context.getIntent().getMode()).contains("streaming");
+    }
+    
+    private java.util.Set<String> parseModeTags(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return java.util.Collections.emptySet();
+        }
+        return java.util.Arrays.stream(mode.toLowerCase().split("[,;|+]"))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(java.util.stream.Collectors.toSet());
+    }
+    
     @Override
     public String getName() {
         return "RetrievalSkill";
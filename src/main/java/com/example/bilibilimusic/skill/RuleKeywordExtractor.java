@@ -0,0 +1,372 @@
+package com.example.bilibilimusic.skill;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 规则关键词提取（带置信度）
+ *
+ * 1. 用本地歌手 / 歌名 / 风格 / 场景词典在原始查询中做最长匹配，命中的词条作为关键词
+ * 2. 去掉命中片段后，剩余部分若只是动词、量词、后缀、语气词等填充成分，说明查询已被完整理解，置信度高
+ * 3. 词典未命中时退回 applyRuleBasedFallback / extractCoreNouns 的清洗结果，置信度低
+ *
+ * 置信度达到 ollama.keyword-rules.min-confidence 时，KeywordExtractionSkill 跳过 LLM。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RuleKeywordExtractor {
+
+    private static final Pattern COUNT_PATTERN = Pattern.compile("([零一二两三四五六七八九十\\d]+)首");
+
+    /**
+     * 与实体无关的填充成分：动词短语、量词、后缀、泛化修饰、语气词、标点
+     */
+    private static final Pattern FILLER = Pattern.compile(
+        "帮我|给我|帮忙|我想听|想听|来一份|来点|来些|找点|找些|搜索|播放|推荐|随便|一些|一点|几首|适合|"
+            + "[零一二两三四五六七八九十\\d]+首|的歌曲|的歌|的音乐|歌曲|音乐|歌单|好听|找|搜|听|点|些|歌|的|"
+            + "吧|呀|啊|吗|呢|[\\s,，。.!！?？、]");
+
+    private final ResourceLoader resourceLoader;
+
+    /**
+     * 是否启用规则快速路径
+     */
+    @Value("${ollama.keyword-rules.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 跳过 LLM 所需的最低置信度
+     */
+    @Value("${ollama.keyword-rules.min-confidence:0.8}")
+    private double minConfidence;
+
+    /**
+     * 词典位置（[singer] / [song] / [album] / [style] / [scene] 分段，每行一个词条，# 开头为注释）
+     */
+    @Value("${ollama.keyword-rules.dictionary:classpath:keyword/music-dictionary.txt}")
+    private String dictionaryLocation;
+
+    /** 首字符（小写）→ 以该字符开头的词条，按长度降序 */
+    private final Map<Character, List<DictEntry>> dictionary = new HashMap<>();
+
+    private final LongAdder extractions = new LongAdder();
+    private final LongAdder confident = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        int loaded = 0;
+        Resource resource = resourceLoader.getResource(dictionaryLocation);
+        if (!resource.exists()) {
+            log.warn("[RuleKeywordExtractor] 词典不存在: {}，规则快速路径仅依赖清洗规则", dictionaryLocation);
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String type = "singer";
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    type = line.substring(1, line.length() - 1).trim();
+                    continue;
+                }
+                String key = line.toLowerCase(Locale.ROOT);
+                dictionary.computeIfAbsent(key.charAt(0), c -> new ArrayList<>()).add(new DictEntry(line, key, type));
+                loaded++;
+            }
+        } catch (Exception e) {
+            log.warn("[RuleKeywordExtractor] 加载词典失败: {}", e.getMessage());
+        }
+        dictionary.values().forEach(entries -> entries.sort(
+            Comparator.comparingInt((DictEntry entry) -> entry.key().length()).reversed()));
+        log.info("[RuleKeywordExtractor] 词典加载完成: {} 个词条, enabled={}, minConfidence={}",
+            loaded, enabled, minConfidence);
+    }
+
+    /**
+     * 规则提取关键词并给出置信度
+     */
+    public RuleResult extract(String query) {
+        extractions.increment();
+        if (query == null || query.isBlank()) {
+            return RuleResult.builder().keywords(List.of()).confidence(0.0).reason("空查询").build();
+        }
+        Integer count = parseCount(query);
+
+        Map<String, String> matched = new LinkedHashMap<>();
+        String residue = matchDictionary(query, matched);
+        String leftover = FILLER.matcher(residue).replaceAll("");
+
+        RuleResult result;
+        if (!matched.isEmpty()) {
+            double confidence = leftover.isEmpty() ? 0.95 : (leftover.length() <= 2 ? 0.7 : 0.4);
+            result = RuleResult.builder()
+                .keywords(new ArrayList<>(matched.keySet()))
+                .count(count)
+                .confidence(confidence)
+                .reason("词典命中 " + matched + (leftover.isEmpty() ? "" : "，残留: " + leftover))
+                .build();
+        } else {
+            // 词典未命中：清洗结果与去除填充成分后的剩余一致、且像单个实体时给中等置信度
+            String cleaned = applyRuleBasedFallback(query, query);
+            boolean singleEntity = cleaned.equals(leftover) && leftover.length() >= 2 && leftover.length() <= 8;
+            result = RuleResult.builder()
+                .keywords(List.of(cleaned.split("\\s+")))
+                .count(count)
+                .confidence(singleEntity ? 0.6 : 0.3)
+                .reason(singleEntity ? "未登录实体: " + cleaned : "规则清洗: " + cleaned)
+                .build();
+        }
+        if (isConfident(result)) {
+            confident.increment();
+        }
+        log.info("[RuleKeywordExtractor] '{}' -> {} (confidence={}, {})",
+            query, result.getKeywords(), result.getConfidence(), result.getReason());
+        return result;
+    }
+
+    /**
+     * 置信度是否足以跳过 LLM
+     */
+    public boolean isConfident(RuleResult result) {
+        return enabled && result != null && result.getKeywords() != null && !result.getKeywords().isEmpty()
+            && result.getConfidence() >= minConfidence;
+    }
+
+    /**
+     * 最长匹配词典词条，命中的词条写入 matched（词条 → 类型），返回去掉命中片段后的剩余文本
+     */
+    private String matchDictionary(String query, Map<String, String> matched) {
+        String lower = query.toLowerCase(Locale.ROOT);
+        StringBuilder residue = new StringBuilder();
+        int i = 0;
+        while (i < lower.length()) {
+            DictEntry hit = null;
+            List<DictEntry> candidates = dictionary.get(lower.charAt(i));
+            if (candidates != null) {
+                for (DictEntry entry : candidates) {
+                    if (lower.startsWith(entry.key(), i) && atWordBoundary(lower, i, i + entry.key().length())) {
+                        hit = entry;
+                        break;
+                    }
+                }
+            }
+            if (hit != null) {
+                matched.putIfAbsent(hit.name(), hit.type());
+                residue.append(' ');
+                i += hit.key().length();
+            } else {
+                residue.append(query.charAt(i));
+                i++;
+            }
+        }
+        return residue.toString();
+    }
+
+    /**
+     * 英文 / 数字词条要求两侧不是字母数字（避免 "IU" 命中 "qiu"）
+     */
+    private boolean atWordBoundary(String text, int start, int end) {
+        boolean leftOk = start == 0 || !isAsciiAlnum(text.charAt(start - 1)) || !isAsciiAlnum(text.charAt(start));
+        boolean rightOk = end >= text.length() || !isAsciiAlnum(text.charAt(end)) || !isAsciiAlnum(text.charAt(end - 1));
+        return leftOk && rightOk;
+    }
+
+    private boolean isAsciiAlnum(char c) {
+        return c < 128 && Character.isLetterOrDigit(c);
+    }
+
+    private Integer parseCount(String query) {
+        Matcher matcher = COUNT_PATTERN.matcher(query);
+        if (!matcher.find()) {
+            return null;
+        }
+        String digits = matcher.group(1);
+        if (digits.chars().allMatch(Character::isDigit)) {
+            try {
+                return Integer.parseInt(digits);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        // 中文数字（支持到九十九）
+        String numerals = "零一二三四五六七八九";
+        digits = digits.replace('两', '二');
+        int tenIndex = digits.indexOf('十');
+        if (tenIndex < 0) {
+            int value = numerals.indexOf(digits.charAt(digits.length() - 1));
+            return value > 0 ? value : null;
+        }
+        int tens = tenIndex == 0 ? 1 : Math.max(0, numerals.indexOf(digits.charAt(tenIndex - 1)));
+        int ones = tenIndex == digits.length() - 1 ? 0 : Math.max(0, numerals.indexOf(digits.charAt(tenIndex + 1)));
+        return tens * 10 + ones;
+    }
+
+    /**
+     * 规则清洗：移除后缀、数量词、动词短语，处理"的"字；清洗后过短时退回 extractCoreNouns
+     */
+    public String applyRuleBasedFallback(String rawKeyword, String originalQuery) {
+        log.info("[RuleKeywordExtractor] 规则清洗 - 输入: '{}'", rawKeyword);
+        String cleaned = rawKeyword.trim();
+            
+        // 最小化规则：只处理明确的后缀
+        // 1. 移除明确的后缀（在末尾）
+        String step1 = cleaned.replaceAll("(的歌曲|的歌|的音乐|歌曲|音乐|歌单)$", "");
+        if (!step1.equals(cleaned)) {
+            log.info("[RuleKeywordExtractor] 步骤1-移除后缀: '{}' -> '{}'", cleaned, step1);
+        }
+        cleaned = step1;
+            
+        // 2. 移除明确的数量词（在开头或中间）
+        String step2 = cleaned.replaceAll("^[一二三四五六七八九十百千万\\d]+首", "");
+        step2 = step2.replaceAll("[一二三四五六七八九十百千万\\d]+首", "");
+        if (!step2.equals(cleaned)) {
+            log.info("[RuleKeywordExtractor] 步骤2-移除数量词: '{}' -> '{}'", cleaned, step2);
+        }
+        cleaned = step2;
+            
+        // 3. 移除明确的动词短语（在开头）- 一次性移除整个短语
+        String step3 = cleaned;
+        // 先尝试匹配长短语
+        if (step3.startsWith("帮我找点")) {
+            step3 = step3.substring(4);  // 移除"帮我找点"
+        } else if (step3.startsWith("给我找点")) {
+            step3 = step3.substring(4);
+        } else if (step3.startsWith("帮我找些")) {
+            step3 = step3.substring(4);
+        } else if (step3.startsWith("给我找些")) {
+            step3 = step3.substring(4);
+        } else if (step3.startsWith("帮我来点")) {
+            step3 = step3.substring(4);
+        } else if (step3.startsWith("给我来点")) {
+            step3 = step3.substring(4);
+        } else if (step3.startsWith("来一份")) {
+            step3 = step3.substring(3);
+        } else if (step3.startsWith("帮我找")) {
+            step3 = step3.substring(3);
+        } else if (step3.startsWith("给我找")) {
+            step3 = step3.substring(3);
+        } else if (step3.startsWith("帮我")) {
+            step3 = step3.substring(2);
+        } else if (step3.startsWith("给我")) {
+            step3 = step3.substring(2);
+        } else if (step3.startsWith("来点")) {
+            step3 = step3.substring(2);
+        } else if (step3.startsWith("搜索")) {
+            step3 = step3.substring(2);
+        } else if (step3.startsWith("播放")) {
+            step3 = step3.substring(2);
+        } else if (step3.startsWith("找")) {
+            step3 = step3.substring(1);
+        }
+        if (!step3.equals(cleaned)) {
+            log.info("[RuleKeywordExtractor] 步骤3-移除动词: '{}' -> '{}'", cleaned, step3);
+        }
+        cleaned = step3;
+            
+        // 4. 智能处理"的"字：只在非专有名词中移除
+        // 如果是"XX的YY"结构，且YY不是后缀，则保留
+        // 否则转为空格
+        if (!cleaned.matches(".*[《》〈〉【】].*")) {  // 不包含书名号
+            // 检查是否是"A的B"结构，且B不是后缀
+            if (cleaned.matches(".*\\S+的\\S+.*") && !cleaned.matches(".* 的(歌|歌曲|音乐)$")) {
+                // 保留结构，只将"的"转为空格
+                String step4 = cleaned.replace("的", " ");
+                if (!step4.equals(cleaned)) {
+                    log.info("[RuleKeywordExtractor] 步骤4-处理的字(保留结构): '{}' -> '{}'", cleaned, step4);
+                }
+                cleaned = step4;
+            } else {
+                // 移除所有"的"
+                String step4 = cleaned.replace("的", " ");
+                if (!step4.equals(cleaned)) {
+                    log.info("[RuleKeywordExtractor] 步骤4-处理的字(移除): '{}' -> '{}'", cleaned, step4);
+                }
+                cleaned = step4;
+            }
+        }
+            
+        // 5. 清理多余空格
+        String step5 = cleaned.replaceAll("\\s+", " ").trim();
+        if (!step5.equals(cleaned)) {
+            log.info("[RuleKeywordExtractor] 步骤5-清理空格: '{}' -> '{}'", cleaned, step5);
+        }
+        cleaned = step5;
+            
+        // 6. 如果清理后为空或过短，使用原始查询
+        if (cleaned.isEmpty() || cleaned.length() < 2) {
+            log.warn("[RuleKeywordExtractor] 清理后为空或过短，回退到extractCoreNouns");
+            return extractCoreNouns(originalQuery);
+        }
+            
+        log.info("[RuleKeywordExtractor] 规则清洗 - 最终输出: '{}'", cleaned);
+        return cleaned;
+    }
+    
+    private String extractCoreNouns(String query) {
+        // 简单的规则：移除明显的动词，保留最后的部分
+        String cleaned = query;
+        String[] verbsToRemove = {"找", "给", "帮", "搜索", "播放", "随便", "推荐"};
+        for (String verb : verbsToRemove) {
+            cleaned = cleaned.replace(verb, "");
+        }
+        
+        // 移除数量词
+        cleaned = cleaned.replaceAll("[零一二三四五六七八九十\\d]+首", "");
+        
+        // 取最后5个字符作为核心
+        cleaned = cleaned.trim();
+        if (cleaned.length() > 5) {
+            cleaned = cleaned.substring(cleaned.length() - 5);
+        }
+        
+        return cleaned.trim();
+    }
+
+    /**
+     * 规则提取统计（提取次数 / 达到置信度跳过 LLM 的次数）
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("extractions", extractions.sum());
+        snapshot.put("confident", confident.sum());
+        return snapshot;
+    }
+
+    @Data
+    @Builder
+    public static class RuleResult {
+        private List<String> keywords;
+        private Integer count;
+        private double confidence;
+        private String reason;
+    }
+
+    private record DictEntry(String name, String key, String type) {
+    }
+}
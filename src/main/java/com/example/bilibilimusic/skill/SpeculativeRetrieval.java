@@ -0,0 +1,187 @@
+package com.example.bilibilimusic.skill;
+
+import com.example.bilibilimusic.context.PlaylistContext;
+import com.example.bilibilimusic.context.UserIntent;
+import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.AgentMetricsService;
+import com.example.bilibilimusic.service.search.SpeculativeSearch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 投机检索：LLM 提取关键词的同时，用规则清洗后的查询提前开始检索
+ *
+ * - start：在调用 LLM 前由 KeywordExtractionSkill 触发，后台检索，句柄挂在上下文上
+ * - claim：检索节点在关键词确定后调用；归一化查询一致且数量足够时复用结果（未完成则等待），
+ *   否则取消投机检索，由调用方正常检索
+ *
+ * 投机检索不走查询缓存与检索合并（可能被取消、结果不完整），命中后由检索节点负责写缓存。
+ * 并发数有上限，线程用满时直接跳过投机，不排队。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpeculativeRetrieval {
+
+    private final RetrievalSkill retrievalSkill;
+    private final AgentMetricsService metricsService;
+
+    /**
+     * 是否启用投机检索
+     */
+    @Value("${bilibili.speculative.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 同时进行的投机检索上限
+     */
+    @Value("${bilibili.speculative.concurrency:4}")
+    private int concurrency;
+
+    /**
+     * 命中后等待投机检索完成的上限，超时按失败处理并正常检索
+     */
+    @Value("${bilibili.speculative.wait-timeout-ms:60000}")
+    private long waitTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder savedMs = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(0, Math.max(1, concurrency), 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "speculative-search-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 开始投机检索（流式模式不投机：流式结果由判断循环边到达边消费）
+     */
+    public void start(PlaylistContext context, String query) {
+        if (!enabled || query == null || query.isBlank() || retrievalSkill.isStreaming(context)) {
+            return;
+        }
+        List<String> keywords = Arrays.stream(query.trim().split("\\s+")).toList();
+        // 按检索节点的同一规则预测数量（关键词与投机查询一致时认领条件成立）
+        UserIntent intent = context.getIntent();
+        int limit = retrievalSkill.predictLimit(UserIntent.builder()
+            .query(query)
+            .keywords(keywords)
+            .mode(intent.getMode())
+            .targetCount(intent.getTargetCount())
+            .limit(intent.getLimit())
+            .build());
+        SpeculativeSearch speculative = new SpeculativeSearch(query, limit);
+        try {
+            speculative.setTask(executor.submit(() -> {
+                try {
+                    speculative.complete(retrievalSkill.search(query, keywords, speculative.getLimit(),
+                        speculative::isCancelled));
+                } catch (Throwable e) {
+                    speculative.fail(e);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            log.debug("[Speculative] 投机检索已满，跳过: {}", query);
+            return;
+        }
+        started.increment();
+        context.setSpeculativeSearch(speculative);
+        log.info("[Speculative] 提前检索: query={}, limit={}", query, speculative.getLimit());
+    }
+
+    /**
+     * 认领投机检索结果
+     *
+     * @return 可复用的结果；没有投机检索、查询不一致、数量不足或检索失败时返回 null
+     */
+    public List<VideoInfo> claim(PlaylistContext context) {
+        SpeculativeSearch speculative = context.getSpeculativeSearch();
+        if (speculative == null) {
+            return null;
+        }
+        context.setSpeculativeSearch(null);
+
+        String finalQuery = context.getIntent().getQuery();
+        int limit = context.getIntent().getLimit();
+        if (!speculative.matches(finalQuery) || speculative.getLimit() < limit) {
+            speculative.cancel();
+            misses.increment();
+            metricsService.recordSpeculativeSearch("miss", 0);
+            log.info("[Speculative] 未命中，取消投机检索: speculative={}({}), final={}({})",
+                speculative.getQuery(), speculative.getLimit(), finalQuery, limit);
+            return null;
+        }
+
+        long claimedAt = System.currentTimeMillis();
+        try {
+            List<VideoInfo> videos = speculative.await(waitTimeoutMs);
+            if (videos == null || videos.isEmpty()) {
+                throw new IllegalStateException("投机检索无结果");
+            }
+            // 节省的时间 = 认领前投机检索已经运行的时间（不超过检索总耗时）
+            long completedAt = speculative.getCompletedAt() > 0 ? speculative.getCompletedAt() : claimedAt;
+            long saved = Math.max(0, Math.min(claimedAt, completedAt) - speculative.getStartedAt());
+            hits.increment();
+            savedMs.add(saved);
+            metricsService.recordSpeculativeSearch("hit", saved);
+            log.info("[Speculative] 命中: query={}, videos={}, 节省 {}ms", finalQuery, videos.size(), saved);
+            return videos;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            speculative.cancel();
+            return null;
+        } catch (Exception e) {
+            speculative.cancel();
+            failures.increment();
+            metricsService.recordSpeculativeSearch("failed", 0);
+            log.warn("[Speculative] 投机检索失败，正常检索: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 投机检索统计（命中率 = hits / (hits + misses + failures)）
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("started", started.sum());
+        snapshot.put("skipped", skipped.sum());
+        snapshot.put("hits", hits.sum());
+        snapshot.put("misses", misses.sum());
+        snapshot.put("failures", failures.sum());
+        snapshot.put("savedMs", savedMs.sum());
+        return snapshot;
+    }
+}
@@ -2,15 +2,18 @@ package com.example.bilibilimusic.skill;
 
 import com.example.bilibilimusic.context.PlaylistContext;
 import com.example.bilibilimusic.dto.VideoInfo;
+import com.example.bilibilimusic.service.llm.LlmClient;
+import com.example.bilibilimusic.service.llm.LlmOverloadedException;
+import com.example.bilibilimusic.service.llm.LlmRequest;
+import com.example.bilibilimusic.service.llm.PromptBudget;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 歌单总结生成能力
@@ -25,13 +28,42 @@ import java.util.Map;
 @Slf4j
 public class SummarySkill implements Skill {
     
-    private final WebClient ollamaWebClient;
+    private final LlmClient llmClient;
+    private final PromptBudget promptBudget;
     
-    @Value("${ollama.model}")
-    private String model;
+    /**
+     * 总结生成截止时间（超时使用降级总结）
+     */
+    @Value("${ollama.deadline.summary-ms:60000}")
+    private long timeoutMs;
+    
+    /**
+     * 流式生成总结（onDelta 为空或关闭流式时等同于非流式）
+     */
+    @Value("${ollama.summary.streaming:true}")
+    private boolean streamingEnabled;
+    
+    /**
+     * 流式总结首个分片截止时间（首 token 延迟上限）
+     */
+    @Value("${ollama.deadline.summary-first-token-ms:20000}")
+    private long firstTokenTimeoutMs;
+    
+    /**
+     * 流式总结相邻分片最大间隔
+     */
+    @Value("${ollama.deadline.summary-idle-ms:15000}")
+    private long idleTimeoutMs;
     
     @Override
     public boolean execute(PlaylistContext context) {
+        return execute(context, null);
+    }
+    
+    /**
+     * 生成总结，onDelta 非空时流式生成并逐段回调增量文本
+     */
+    public boolean execute(PlaylistContext context, Consumer<String> onDelta) {
         try {
             String mode = context.getIntent() != null ? context.getIntent().getMode() : null;
             java.util.Set<String> modeTags = parseModeTags(mode);
@@ -51,6 +83,8 @@ public class SummarySkill implements Skill {
                 // 低成本模式：跳过 LLM，直接使用降级总结
                 log.info("[SummarySkill] 低成本模式：跳过 LLM，总结使用降级方案");
                 summary = buildFallbackSummary(videos, context.getIntent());
+            } else if (onDelta != null && streamingEnabled) {
+                summary = generateSummaryStreaming(videos, context.getIntent(), context.getSelectionReason(), onDelta);
             } else {
                 summary = generateSummary(videos, context.getIntent(), context.getSelectionReason());
             }
@@ -87,32 +121,14 @@ public class SummarySkill implements Skill {
         try {
             String prompt = buildSummaryPrompt(videos, intent, selectionReason);
             
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("model", model);
-            payload.put("stream", false);
-            
-            Map<String, Object> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", getSummarySystemPrompt());
-            
-            Map<String, Object> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", prompt);
-            
-            payload.put("messages", List.of(systemMessage, userMessage));
-            
-            Map<String, Object> response = ollamaWebClient.post()
-                .uri("/api/chat")
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
-            
-            if (response != null && response.containsKey("message")) {
-                Map<String, Object> message = (Map<String, Object>) response.get("message");
-                return (String) message.get("content");
+            String content = llmClient.complete("summary", getSummarySystemPrompt(), prompt,
+                Duration.ofMillis(timeoutMs));
+            if (content != null && !content.isBlank()) {
+                return content;
             }
             
+        } catch (LlmOverloadedException e) {
+            log.warn("[SummarySkill] LLM 繁忙，使用降级总结: {}", e.getMessage());
         } catch (Exception e) {
             log.error("[SummarySkill] LLM 调用失败", e);
         }
@@ -120,6 +136,52 @@ public class SummarySkill implements Skill {
         return buildFallbackSummary(videos, intent);
     }
     
+    /**
+     * 流式生成歌单总结：边生成边回调增量，结束后返回完整文本
+     *
+     * 未输出任何内容就失败时使用降级总结；中途失败时保留已生成的部分。
+     */
+    private String generateSummaryStreaming(List<VideoInfo> videos,
+                                            com.example.bilibilimusic.context.UserIntent intent,
+                                            String selectionReason,
+                                            Consumer<String> onDelta) {
+        StringBuilder summary = new StringBuilder();
+        long start = System.currentTimeMillis();
+        long[] firstTokenAt = {-1};
+        try {
+            LlmRequest request = LlmRequest.builder()
+                .purpose("summary")
+                .systemPrompt(getSummarySystemPrompt())
+                .userPrompt(buildSummaryPrompt(videos, intent, selectionReason))
+                .build();
+            llmClient.stream(request, Duration.ofMillis(firstTokenTimeoutMs), Duration.ofMillis(idleTimeoutMs))
+                .doOnNext(chunk -> {
+                    String delta = chunk.getContent();
+                    if (delta == null || delta.isEmpty()) {
+                        return;
+                    }
+                    if (firstTokenAt[0] < 0) {
+                        firstTokenAt[0] = System.currentTimeMillis() - start;
+                        log.info("[SummarySkill] 首 token 延迟: {}ms", firstTokenAt[0]);
+                    }
+                    summary.append(delta);
+                    onDelta.accept(delta);
+                })
+                .blockLast(Duration.ofMillis(timeoutMs));
+            log.info("[SummarySkill] 流式总结完成: 首 token {}ms, 总耗时 {}ms, 长度 {}",
+                firstTokenAt[0], System.currentTimeMillis() - start, summary.length());
+        } catch (LlmOverloadedException e) {
+            log.warn("[SummarySkill] LLM 繁忙，使用降级总结: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("[SummarySkill] 流式总结中断（已生成 {} 字）: {}", summary.length(), e.getMessage());
+        }
+        
+        if (summary.toString().isBlank()) {
+            return buildFallbackSummary(videos, intent);
+        }
+        return summary.toString();
+    }
+    
     /**
      * 构建总结 Prompt
      */
@@ -136,11 +198,8 @@ public class SummarySkill implements Skill {
         }
         sb.append("\n已筛选的视频列表：\n");
         
-        for (int i = 0; i < videos.size(); i++) {
-            VideoInfo v = videos.get(i);
-            sb.append(String.format("%d. %s - %s（%s）\n", 
-                i + 1, v.getTitle(), v.getAuthor(), v.getDuration()));
-        }
+        // 视频列表按 Token 预算压缩，超出时分块概括（分块概括自带时限，超时退化为作者统计）
+        sb.append(promptBudget.videoSection(videos).block(Duration.ofMillis(timeoutMs)));
         
         sb.append("\n请生成一段简洁的中文歌单推荐说明（100字以内），包括：\n");
         sb.append("1. 整体风格特点\n");
@@ -46,6 +46,9 @@ public class VideoRelevanceScorer {
     private static final long DURATION_TOO_LONG_MS = 10 * 60 * 1000; // 10分钟
     private static final long DURATION_TOO_SHORT_MS = 30 * 1000;      // 30秒
     
+    // 探索加成上界（与 UserBehaviorFeedbackService 冷启动加成一致）
+    private static final int MAX_EXPLORATION_BONUS = 15;
+
     // 合集/串烧关键词
     private static final List<String> COLLECTION_KEYWORDS = Arrays.asList(
         "合集", "串烧", "歌单", "精选", "集锦",
@@ -189,6 +192,14 @@ public class VideoRelevanceScorer {
             }
         }
             
+        // 7.6 多个子查询命中（扇出检索来源）(+1 per extra query, max +2)
+        int multiQueryBonus = scoreMultiQuery(video.getSourceQueries());
+        if (multiQueryBonus > 0) {
+            totalScore += multiQueryBonus;
+            features.setMultiQueryBonus(multiQueryBonus);
+            reasons.add(String.format("多个查询命中: +%d", multiQueryBonus));
+        }
+            
         // 8. 合集/串烧 (-3)
         if (isCollection(video)) {
             totalScore -= 3;
@@ -235,6 +246,51 @@ public class VideoRelevanceScorer {
         return result;
     }
     
+    /**
+     * 详情字段（标签 / 简介 / 播放量 / 评论数）缺失时，补充详情后分数最多还能增加多少
+     *
+     * 用于懒加载详情：卡片分 + 最大增益仍达不到接受阈值的视频无需打开详情页。
+     *
+     * @param video 仅含搜索卡片字段的视频
+     * @param intent 用户意图
+     * @param keywordPrefs 关键词偏好权重
+     * @return 分数增益上界（详情字段已齐全时为 0）
+     */
+    public int maxDetailGain(VideoInfo video, UserIntent intent, Map<String, Integer> keywordPrefs) {
+        int gain = 0;
+        List<String> keywords = intent != null ? intent.getKeywords() : null;
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                int pref = 0;
+                if (keywordPrefs != null) {
+                    Integer prefWeight = keywordPrefs.get(keyword.toLowerCase());
+                    pref = prefWeight != null ? Math.max(prefWeight, 0) : 0;
+                }
+                if (video.getTags() == null) {
+                    gain += 3 + pref;
+                }
+                if (video.getDescription() == null) {
+                    gain += 1 + pref;
+                }
+            }
+        }
+        if (video.getPlayCount() == null) {
+            gain += 3;
+        }
+        if (video.getCommentCount() == null) {
+            gain += 2;
+        }
+        return gain;
+    }
+
+    /**
+     * 探索加成上界（冷启动探索模式下的最大加成，explore 模式再 ×1.5）
+     */
+    public int maxExplorationBonus(UserIntent intent) {
+        boolean explore = intent != null && parseModeTags(intent.getMode()).contains("explore");
+        return explore ? (int) (MAX_EXPLORATION_BONUS * 1.5) : MAX_EXPLORATION_BONUS;
+    }
+
     /**
      * 判断是否对该视频有偏好记录
      */
@@ -569,6 +625,23 @@ public class VideoRelevanceScorer {
         return 0;
     }
     
+    /**
+     * 多查询命中加分：同一视频被多个不同子查询检索到，相关性更可信
+     */
+    private int scoreMultiQuery(List<String> sourceQueries) {
+        if (sourceQueries == null || sourceQueries.size() < 2) {
+            return 0;
+        }
+        long distinctQueries = sourceQueries.stream()
+            .map(source -> {
+                int idx = source.lastIndexOf("#p");
+                return idx >= 0 ? source.substring(0, idx) : source;
+            })
+            .distinct()
+            .count();
+        return (int) Math.min(distinctQueries - 1, 2);
+    }
+    
     /**
      * 可信度评分（基于播放量和评论数）
      */
@@ -650,6 +723,9 @@ public class VideoRelevanceScorer {
         
         // 序列特征
         private int consecutiveNegativePenalty; // 连续负向行为惩罚（艺人维度）
+        
+        // 检索来源
+        private int multiQueryBonus;        // 多个子查询命中加分（0~2）
 
         // 其他辅助信息
         private boolean negativeKeywordHit; // 是否命中负关键词